@@ -0,0 +1,80 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.FriendAdjacencyCache;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Общие друзья двух пользователей с degree друзьями каждый, половина из них общая.
+// cold сбрасывает кэш списков друзей перед каждым запросом, warm отвечает из кэша
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class CommonFriendsBenchmark {
+
+    @Param({"1000", "10000", "50000"})
+    public int degree;
+
+    private SingleConnectionDataSource dataSource;
+    private FriendAdjacencyCache friendAdjacencyCache;
+    private UserService userService;
+    private long first;
+    private long second;
+
+    @Setup
+    public void createUsers() {
+        dataSource = Dataset.createDatabase();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        int users = degree * 3 / 2;
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", users + 2);
+        first = users + 1;
+        second = users + 2;
+        jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) " +
+                "SELECT ?, user_id FROM users WHERE user_id <= ?", first, degree);
+        jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) " +
+                "SELECT ?, user_id FROM users WHERE user_id > ? AND user_id <= ?", second, users - degree, users);
+
+        friendAdjacencyCache = new FriendAdjacencyCache(1_000_000);
+        userService = new UserService(new UserDbStorage(jdbcTemplate), friendAdjacencyCache,
+                new FriendSuggestionEngine(1000, 1000, 256));
+    }
+
+    @TearDown
+    public void closeDatabase() {
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<User> cold() {
+        friendAdjacencyCache.invalidateAll();
+        return userService.getCommonFriends(first, second);
+    }
+
+    @Benchmark
+    public List<User> warm() {
+        return userService.getCommonFriends(first, second);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Синтетический набор данных: size фильмов и size пользователей, у каждого пользователя
+// LIKES_PER_USER лайков (популярность по степенному закону) и FRIENDS_PER_USER друзей.
+// Набор детерминирован и одинаково загружается в H2 и в хранилища в памяти,
+// поэтому ID фильмов и пользователей в обоих вариантах совпадают и идут с 1
+final class Dataset {
+
+    static final int LIKES_PER_USER = 10;
+    static final int FRIENDS_PER_USER = 20;
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    final int size;
+    final long[][] likes;
+    final long[][] friends;
+
+    Dataset(int size, long seed) {
+        this.size = size;
+        Random random = new Random(seed);
+        likes = new long[size + 1][];
+        friends = new long[size + 1][];
+        for (int user = 1; user <= size; user++) {
+            likes[user] = distinct(Math.min(LIKES_PER_USER, size), () ->
+                    1 + (long) Math.min(size - 1, Math.pow(random.nextDouble(), 2) * size), 0);
+            friends[user] = distinct(Math.min(FRIENDS_PER_USER, size - 1), () ->
+                    1 + (long) random.nextInt(size), user);
+        }
+    }
+
+    // Встроенная H2 в памяти со схемой и справочниками приложения на одном соединении
+    static SingleConnectionDataSource createDatabase() {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:bench" + DATABASES.incrementAndGet(), "sa", "", true);
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"))
+                .execute(dataSource);
+        return dataSource;
+    }
+
+    void loadInto(JdbcTemplate jdbcTemplate, int extraUsers) {
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                "SELECT 'Фильм ' || X, 'Описание фильма ' || X, DATEADD('DAY', MOD(X, 30000), DATE '1940-01-01'), " +
+                "60 + MOD(X, 120), 1 + MOD(X, 5) FROM SYSTEM_RANGE(1, ?)", size);
+        jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) SELECT film_id, 1 + MOD(film_id, 6) FROM films");
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT 'Пользователь ' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", size + extraUsers);
+        jdbcTemplate.batchUpdate("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", pairs(likes));
+        jdbcTemplate.batchUpdate("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", pairs(friends));
+        jdbcTemplate.update("UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)");
+    }
+
+    void loadInto(InMemoryFilmStorage filmStorage, InMemoryUserStorage userStorage, int extraUsers) {
+        for (int i = 1; i <= size; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setDescription("Описание фильма " + i);
+            film.setReleaseDate(LocalDate.of(1940, 1, 1).plusDays(i % 30000));
+            film.setDuration(60 + i % 120);
+            filmStorage.addFilm(film);
+        }
+        for (int i = 1; i <= size + extraUsers; i++) {
+            User user = new User();
+            user.setName("Пользователь " + i);
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            userStorage.addUser(user);
+        }
+        for (int user = 1; user <= size; user++) {
+            for (long film : likes[user]) {
+                filmStorage.addLike(film, user);
+            }
+            for (long friend : friends[user]) {
+                userStorage.addFriend(user, friend);
+            }
+        }
+    }
+
+    // Пары пользователей, у которых точно есть общий друг: оба добавили одного и того же
+    long[][] pairsWithCommonFriend(int count, long seed) {
+        List<List<Long>> followers = new ArrayList<>(size + 1);
+        for (int i = 0; i <= size; i++) {
+            followers.add(new ArrayList<>());
+        }
+        for (int user = 1; user <= size; user++) {
+            for (long friend : friends[user]) {
+                followers.get((int) friend).add((long) user);
+            }
+        }
+        Random random = new Random(seed);
+        long[][] pairs = new long[count][];
+        for (int i = 0; i < count; ) {
+            List<Long> candidates = followers.get(1 + random.nextInt(size));
+            if (candidates.size() >= 2) {
+                long first = candidates.get(random.nextInt(candidates.size()));
+                long second = candidates.get(random.nextInt(candidates.size()));
+                if (first != second) {
+                    pairs[i++] = new long[]{first, second};
+                }
+            }
+        }
+        return pairs;
+    }
+
+    private static List<Object[]> pairs(long[][] lists) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int user = 1; user < lists.length; user++) {
+            for (long other : lists[user]) {
+                rows.add(new Object[]{user, other});
+            }
+        }
+        return rows;
+    }
+
+    private static long[] distinct(int count, LongSupplier next, long exclude) {
+        long[] values = new long[count];
+        int filled = 0;
+        while (filled < count) {
+            long value = next.getAsLong();
+            boolean seen = value == exclude;
+            for (int i = 0; i < filled && !seen; i++) {
+                seen = values[i] == value;
+            }
+            if (!seen) {
+                values[filled++] = value;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Основные пути FilmStorage на H2 в памяти (db) и в InMemoryFilmStorage (memory).
+// Хранилище создаётся напрямую, без Spring: @Transactional не действует, каждый
+// оператор фиксируется сам, как при autocommit
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class FilmStorageBenchmark {
+
+    // Пользователи без лайков в наборе: ими ставятся лайки в addLike, чтобы не было повторов
+    private static final int LIKING_USERS = 10_000;
+    private static final int ID_MASK = (1 << 16) - 1;
+    private static final int STREAM_CHUNK_SIZE = 1000;
+
+    @Param({"db", "memory"})
+    public String storage;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private FilmStorage filmStorage;
+    private final long[] filmIds = new long[ID_MASK + 1];
+    private int cursor;
+    private long likes;
+
+    @Setup(Level.Trial)
+    public void createStorage() {
+        Dataset dataset = new Dataset(size, 42);
+        if ("db".equals(storage)) {
+            dataSource = Dataset.createDatabase();
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            dataset.loadInto(jdbcTemplate, LIKING_USERS);
+            filmStorage = new FilmDbStorage(jdbcTemplate);
+        } else {
+            InMemoryFilmStorage films = new InMemoryFilmStorage();
+            dataset.loadInto(films, new InMemoryUserStorage(), LIKING_USERS);
+            filmStorage = films;
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < filmIds.length; i++) {
+            filmIds[i] = 1 + random.nextInt(size);
+        }
+    }
+
+    // Лайки прошлой итерации снимаются, чтобы addLike всегда вставлял новую пару
+    @Setup(Level.Iteration)
+    public void resetLikes() {
+        if (jdbcTemplate != null) {
+            jdbcTemplate.update("DELETE FROM likes WHERE user_id > ?", size);
+        } else {
+            for (long i = 0; i < likes; i++) {
+                filmStorage.removeLike(likedFilm(i), likingUser(i));
+            }
+        }
+        likes = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStorage() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    // Полный проход каталога порциями, в паре с getAllFilms; расход памяти виден с -prof gc
+    @Benchmark
+    public long streamAllFilms() {
+        long[] streamed = {0};
+        filmStorage.streamAllFilms(STREAM_CHUNK_SIZE, chunk -> streamed[0] += chunk.size());
+        return streamed[0];
+    }
+
+    @Benchmark
+    public Film getFilmById() {
+        return filmStorage.getFilmById(filmIds[cursor++ & ID_MASK]);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public void addLike() {
+        filmStorage.addLike(likedFilm(likes), likingUser(likes));
+        likes++;
+    }
+
+    private long likedFilm(long like) {
+        return 1 + like % size;
+    }
+
+    private long likingUser(long like) {
+        return size + 1 + (like / size) % LIKING_USERS;
+    }
+}
@@ -0,0 +1,97 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.storage.film.FilmFacets;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Популярные фильмы с фильтрами по жанру, году и MPA из индекса в памяти. Популярность
+// по степенному закону, свежие годы и первые жанры встречаются чаще; запросы перебирают
+// все семь сочетаний фильтров. Снятие лайка меряется на индексе, где у всех фильмов
+// поровну лайков: каждый снятый лайк выводит фильм из топа за границу из равных счётчиков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class PopularFilmsIndexBenchmark {
+
+    private static final int FILTER_MASK = (1 << 12) - 1;
+    private static final int MAX_K = 1000;
+
+    @Param({"10000", "200000"})
+    public int size;
+
+    private PopularFilmsIndex index;
+    private PopularFilmsIndex tiedIndex;
+    private final PopularFilmsFilter[] filters = new PopularFilmsFilter[FILTER_MASK + 1];
+    private int cursor;
+    private int likeCursor;
+
+    @Setup
+    public void buildIndex() {
+        Random random = new Random(1);
+        Map<Long, Long> counts = new HashMap<>();
+        List<FilmFacets> facets = new ArrayList<>(size);
+        for (long filmId = 1; filmId <= size; filmId++) {
+            counts.put(filmId, Math.min(5_000_000, (long) (10 * Math.pow(random.nextDouble(), -0.8))));
+            long[] genres = random.longs(1 + random.nextInt(3), 0, 1)
+                    .map(ignored -> 1 + (long) (20 * Math.pow(random.nextDouble(), 2)))
+                    .distinct().sorted().toArray();
+            facets.add(new FilmFacets(filmId, 2024 - (int) (100 * Math.pow(random.nextDouble(), 3)),
+                    1 + random.nextInt(5), genres));
+        }
+        index = new PopularFilmsIndex(new InMemoryFilmStorage(), MAX_K);
+        index.rebuild(counts);
+        index.rebuildFacets(facets);
+
+        Map<Long, Long> tied = new HashMap<>();
+        for (long filmId = 1; filmId <= size; filmId++) {
+            tied.put(filmId, 1L);
+        }
+        tiedIndex = new PopularFilmsIndex(new InMemoryFilmStorage(), MAX_K);
+        tiedIndex.rebuild(tied);
+
+        for (int i = 0; i < filters.length; i++) {
+            int combination = 1 + i % 7;
+            filters[i] = new PopularFilmsFilter(
+                    (combination & 1) != 0 ? 1L + random.nextInt(20) : null,
+                    (combination & 2) != 0 ? 1960 + random.nextInt(65) : null,
+                    (combination & 4) != 0 ? 1L + random.nextInt(5) : null);
+        }
+    }
+
+    @Benchmark
+    public List<Long> getTopFilmIdsWithFilter() {
+        return index.getTopFilmIds(10, filters[cursor++ & FILTER_MASK]);
+    }
+
+    // Лайк снимается у участника топа и ставится обратно: фильм уходит за границу и возвращается
+    @Benchmark
+    public long unlikeAtBoundary() {
+        long filmId = 1 + likeCursor;
+        likeCursor = (likeCursor + 1) % MAX_K;
+        tiedIndex.changeLikes(filmId, -1);
+        tiedIndex.changeLikes(filmId, 1);
+        return tiedIndex.getLikes(filmId);
+    }
+}
@@ -0,0 +1,89 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Списки друзей и общие друзья в UserDbStorage на H2 в памяти (db) и в InMemoryUserStorage (memory).
+// Общие друзья запрашиваются для пар, у которых есть хотя бы один общий друг
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class UserStorageBenchmark {
+
+    private static final int ID_MASK = (1 << 16) - 1;
+
+    @Param({"db", "memory"})
+    public String storage;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private SingleConnectionDataSource dataSource;
+    private UserStorage userStorage;
+    private final long[] userIds = new long[ID_MASK + 1];
+    private long[][] pairs;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void createStorage() {
+        Dataset dataset = new Dataset(size, 42);
+        if ("db".equals(storage)) {
+            dataSource = Dataset.createDatabase();
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            dataset.loadInto(jdbcTemplate, 0);
+            userStorage = new UserDbStorage(jdbcTemplate);
+        } else {
+            InMemoryUserStorage users = new InMemoryUserStorage();
+            dataset.loadInto(new InMemoryFilmStorage(), users, 0);
+            userStorage = users;
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = 1 + random.nextInt(size);
+        }
+        pairs = dataset.pairsWithCommonFriend(ID_MASK + 1, 11);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeStorage() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return userStorage.getFriends(userIds[cursor++ & ID_MASK]);
+    }
+
+    @Benchmark
+    public List<User> getCommonFriends() {
+        long[] pair = pairs[cursor++ & ID_MASK];
+        return userStorage.getCommonFriends(pair[0], pair[1]);
+    }
+}
@@ -1,13 +1,25 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeBatchResult;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
 import java.util.List;
 
@@ -17,12 +29,44 @@ import java.util.List;
 @RequestMapping("/films")
 public class FilmController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_SEARCH_RESULTS = 100;
+    private static final int MAX_AUTOCOMPLETE_RESULTS = 10;
+    private static final int MAX_TRENDING_RESULTS = 100;
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        log.info("Запрос на получение всех фильмов");
-        return filmService.getAllFilms();
+    public Collection<Film> getAllFilms(@RequestParam(required = false) Long after,
+                                        @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Запрос на получение всех фильмов");
+            return filmService.getAllFilms();
+        }
+        long afterId = after != null ? after : 0;
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        validatePage(afterId, pageSize);
+        log.info("Запрос страницы фильмов после ID {} размером {}", afterId, pageSize);
+        return filmService.getFilms(afterId, pageSize);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        log.info("Запрос на потоковую выгрузку всех фильмов");
+        // Каждый фильм пишется в ответ сразу после чтения, весь каталог в памяти не собирается
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                filmService.streamAllFilms(film -> writeFilm(generator, film));
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -34,17 +78,24 @@ public class FilmController {
     @PostMapping
     public Film addFilm(@RequestBody Film film) {
         log.info("Запрос на добавление фильма: {}", film.getName());
-        validateFilmBasic(film);
         return filmService.addFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<FilmBatchResult> addFilms(@RequestBody List<Film> films) {
+        log.info("Запрос на пакетное добавление {} фильмов", films.size());
+        if (films.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В одной пачке не больше " + MAX_BATCH_SIZE + " фильмов");
+        }
+        return filmService.addFilms(films);
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody Film film) {
         Film existingFilm = filmService.getFilmByIdPublic(film.getId());
         if (existingFilm == null) {
             throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
         }
-        validateFilmBasic(film);
         return filmService.updateFilm(film);
     }
 
@@ -60,27 +111,80 @@ public class FilmController {
         filmService.deleteLike(id, userId);
     }
 
+    @PostMapping("/likes/batch")
+    public List<LikeBatchResult> applyLikes(@RequestBody List<LikeBatchItem> items) {
+        log.info("Запрос на пакетное применение {} лайков", items.size());
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("В одной пачке не больше " + MAX_BATCH_SIZE + " операций");
+        }
+        return filmService.applyLikes(items);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("Запрос на получение {} популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                      @RequestParam(required = false) Long genreId,
+                                      @RequestParam(required = false) Integer year,
+                                      @RequestParam(required = false) Long mpaId) {
+        log.info("Запрос на получение {} популярных фильмов, жанр {}, год {}, рейтинг {}",
+                count, genreId, year, mpaId);
+        return filmService.getPopularFilms(count, new PopularFilmsFilter(genreId, year, mpaId));
+    }
+
+    // Фильмы по числу лайков, поставленных за последний час, сутки или неделю
+    @GetMapping("/trending")
+    public List<Film> getTrendingFilms(@RequestParam(defaultValue = "24h") String window,
+                                       @RequestParam(defaultValue = "10") int count) {
+        log.info("Запрос на получение {} трендовых фильмов за окно {}", count, window);
+        TrendingFilmsIndex.Window trendingWindow = TrendingFilmsIndex.Window.fromParam(window);
+        if (trendingWindow == null) {
+            throw new ValidationException("Параметр window должен быть одним из: 1h, 24h, 7d");
+        }
+        if (count <= 0 || count > MAX_TRENDING_RESULTS) {
+            throw new ValidationException("Параметр count должен быть от 1 до " + MAX_TRENDING_RESULTS);
+        }
+        return filmService.getTrendingFilms(trendingWindow, count);
     }
 
-    private void validateFilmBasic(Film film) {
-        if (film.getName() == null || film.getName().isBlank()) {
-            throw new ValidationException("Название не может быть пустым!");
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam String q,
+                                  @RequestParam(defaultValue = "10") int limit) {
+        log.info("Поиск фильмов по запросу '{}', не больше {}", q, limit);
+        if (q.isBlank()) {
+            throw new ValidationException("Параметр q не может быть пустым");
         }
-        if (film.getDescription() != null && film.getDescription().length() > 200) {
-            throw new ValidationException("Описание не может быть длиннее 200 символов!");
+        if (limit <= 0 || limit > MAX_SEARCH_RESULTS) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_SEARCH_RESULTS);
+        }
+        return filmService.searchFilms(q, limit);
+    }
+
+    @GetMapping("/autocomplete")
+    public List<Film> autocompleteFilms(@RequestParam String prefix,
+                                        @RequestParam(defaultValue = "10") int limit) {
+        log.debug("Автодополнение названия по префиксу '{}', не больше {}", prefix, limit);
+        if (prefix.isBlank()) {
+            throw new ValidationException("Параметр prefix не может быть пустым");
         }
-        if (film.getDuration() == null || film.getDuration() <= 0) {
-            throw new ValidationException("Продолжительность фильма должна быть положительной!");
+        if (limit <= 0 || limit > MAX_AUTOCOMPLETE_RESULTS) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_AUTOCOMPLETE_RESULTS);
         }
-        if (film.getReleaseDate() == null) {
-            throw new ValidationException("Дата релиза не может быть пустой!");
+        return filmService.autocompleteFilms(prefix, limit);
+    }
+
+    private void writeFilm(JsonGenerator generator, Film film) {
+        try {
+            generator.writeObject(film);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void validatePage(long afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("Параметр after не может быть отрицательным");
         }
-        if (film.getReleaseDate().isBefore(java.time.LocalDate.of(1895, 12, 28))) {
-            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
         }
     }
 }
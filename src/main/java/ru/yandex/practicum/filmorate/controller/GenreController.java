@@ -2,28 +2,50 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/genres")
 public class GenreController {
+    // Справочник почти не меняется: клиент может долго держать ответ и перепроверять его по ETag
+    private static final CacheControl REFERENCE_CACHE = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final GenreService genreService;
 
     @GetMapping
-    public List<Genre> getAllGenres() {
+    public ResponseEntity<List<Genre>> getAllGenres(WebRequest request) {
         log.info("Запрос на получение всех жанров");
-        return genreService.getAllGenres();
+        String etag = genreService.getGenresEtag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(REFERENCE_CACHE)
+                .eTag(etag)
+                .body(genreService.getAllGenres());
     }
 
     @GetMapping("/{id}")
-    public Genre getGenreById(@PathVariable long id) {
+    public ResponseEntity<Genre> getGenreById(@PathVariable long id, WebRequest request) {
         log.info("Запрос на получение жанра с ID {}", id);
-        return genreService.getGenreById(id);
+        Genre genre = genreService.getGenreById(id);
+        String etag = genreService.getGenresEtag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(REFERENCE_CACHE)
+                .eTag(etag)
+                .body(genre);
     }
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.LiveIdFilter;
+import ru.yandex.practicum.filmorate.storage.film.FilmAutocompleteIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendAdjacencyCache;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.List;
+
+// Служебные эндпоинты для эксплуатации: состояние кэшей и индексов, метрики задержек
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/internal")
+public class InternalController {
+
+    private final FilmService filmService;
+    private final UserService userService;
+    private final LatencyMetrics latencyMetrics;
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+
+    // Текстовый формат Prometheus: задержки эндпоинтов и SQL-запросов, буфер отложенной записи лайков
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() {
+        return latencyMetrics.toPrometheusText();
+    }
+
+    @GetMapping("/cache/films")
+    public FilmCache.Stats getFilmCacheStats() {
+        return filmService.getFilmCacheStats();
+    }
+
+    @GetMapping("/cache/friends")
+    public FriendAdjacencyCache.Stats getFriendsCacheStats() {
+        return userService.getFriendsCacheStats();
+    }
+
+    @GetMapping("/likes/buffer")
+    public LikeWriteBuffer.Stats getLikeBufferStats() {
+        return filmService.getLikeBufferStats();
+    }
+
+    @GetMapping("/recommendations")
+    public FilmRecommendationIndex.Stats getRecommendationStats() {
+        return filmService.getRecommendationStats();
+    }
+
+    @GetMapping("/autocomplete")
+    public FilmAutocompleteIndex.Stats getAutocompleteStats() {
+        return filmService.getAutocompleteStats();
+    }
+
+    @GetMapping("/trending")
+    public TrendingFilmsIndex.Stats getTrendingStats() {
+        return filmService.getTrendingStats();
+    }
+
+    // Фильтры Блума по ID фильмов и пользователей: размер, ожидаемая и наблюдаемая доля ложноположительных
+    @GetMapping("/id-filters")
+    public List<LiveIdFilter.Stats> getIdFilterStats() {
+        return List.of(filmDbStorage.getIdFilterStats(), userDbStorage.getIdFilterStats());
+    }
+
+    @PostMapping("/reference/refresh")
+    public void refreshReferenceData() {
+        log.info("Запрос на перечитывание справочников жанров и рейтингов MPA");
+        filmService.refreshReferenceData();
+    }
+}
@@ -2,28 +2,50 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.service.MpaRatingService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RequiredArgsConstructor
 @RestController
 @RequestMapping("/mpa")
 public class MpaRatingController {
+    // Справочник почти не меняется: клиент может долго держать ответ и перепроверять его по ETag
+    private static final CacheControl REFERENCE_CACHE = CacheControl.maxAge(1, TimeUnit.DAYS).cachePublic();
+
     private final MpaRatingService mpaService;
 
     @GetMapping
-    public List<Mpa> getAllMpa() {
+    public ResponseEntity<List<Mpa>> getAllMpa(WebRequest request) {
         log.info("Запрос на получение всех рейтингов");
-        return mpaService.getAllMpa();
+        String etag = mpaService.getMpaEtag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(REFERENCE_CACHE)
+                .eTag(etag)
+                .body(mpaService.getAllMpa());
     }
 
     @GetMapping("/{id}")
-    public Mpa getMpaById(@PathVariable long id) {
+    public ResponseEntity<Mpa> getMpaById(@PathVariable long id, WebRequest request) {
         log.info("Запрос на получение рейтинга с ID {}", id);
-        return mpaService.getMpaById(id);
+        Mpa mpa = mpaService.getMpaById(id);
+        String etag = mpaService.getMpaEtag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .cacheControl(REFERENCE_CACHE)
+                .eTag(etag)
+                .body(mpa);
     }
 }
\ No newline at end of file
@@ -0,0 +1,36 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+
+import java.util.List;
+
+// Рекомендации фильмов пользователю; живут под /users, но обслуживаются FilmService
+@Slf4j
+@RequiredArgsConstructor
+@RestController
+@RequestMapping("/users")
+public class RecommendationController {
+
+    private static final int MAX_RECOMMENDATIONS = 100;
+
+    private final FilmService filmService;
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable long id,
+                                         @RequestParam(defaultValue = "10") int limit) {
+        log.info("Запрос на рекомендации фильмов для пользователя {}, limit={}", id, limit);
+        if (limit <= 0 || limit > MAX_RECOMMENDATIONS) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_RECOMMENDATIONS);
+        }
+        return filmService.getRecommendations(id, limit);
+    }
+}
@@ -16,12 +16,24 @@ import java.util.List;
 @RequestMapping("/users")
 public class UserController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SUGGESTIONS = 1000;
+
     private final UserService userService;
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        log.info("Запрос на получение всех пользователей");
-        return userService.getAllUsers();
+    public Collection<User> getAllUsers(@RequestParam(required = false) Long after,
+                                        @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("Запрос на получение всех пользователей");
+            return userService.getAllUsers();
+        }
+        long afterId = after != null ? after : 0;
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        validatePage(afterId, pageSize);
+        log.info("Запрос страницы пользователей после ID {} размером {}", afterId, pageSize);
+        return userService.getUsers(afterId, pageSize);
     }
 
     @GetMapping("/{id}")
@@ -68,6 +80,25 @@ public class UserController {
         return userService.getCommonFriends(id, otherId);
     }
 
+    @GetMapping("/{id}/friends/suggestions")
+    public List<User> getFriendSuggestions(@PathVariable long id,
+                                           @RequestParam(defaultValue = "10") int limit) {
+        log.info("Запрос на рекомендации друзей для пользователя {}, limit={}", id, limit);
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_SUGGESTIONS);
+        }
+        return userService.getFriendSuggestions(id, limit);
+    }
+
+    private void validatePage(long afterId, int limit) {
+        if (afterId < 0) {
+            throw new ValidationException("Параметр after не может быть отрицательным");
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
     private void validateUser(User user) {
         if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
             throw new ValidationException("Электронная почта не может быть пустой и должна содержать символ @");
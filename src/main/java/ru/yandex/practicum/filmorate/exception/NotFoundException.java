@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.exception;
 
+// Без стека вызовов: 404 — обычный ответ, а не сбой, и на потоке запросов к случайным ID
+// заполнение стека стоило бы дороже самой проверки
 public class NotFoundException extends RuntimeException {
     public NotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,8 @@
+package ru.yandex.practicum.filmorate.exception;
+
+// Запрос не принят из-за перегрузки или недоступной БД; клиент может повторить его позже
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Замеряет обработку каждого HTTP-запроса. Ключ — шаблон пути из сопоставленного
+// эндпоинта (/films/{id}), а не сам путь, иначе на каждый ID заводилась бы своя гистограмма
+@Component
+@RequiredArgsConstructor
+public class EndpointMetricsFilter extends OncePerRequestFilter {
+
+    private final LatencyMetrics metrics;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            // Необработанное исключение уйдёт в контейнер и станет ответом 500
+            int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+            metrics.recordRequest(request.getMethod(),
+                    (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                    status, System.nanoTime() - start);
+        }
+    }
+}
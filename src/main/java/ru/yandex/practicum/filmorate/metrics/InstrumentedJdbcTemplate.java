@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.jdbc.support.KeyHolder;
+
+import javax.sql.DataSource;
+import java.util.concurrent.TimeUnit;
+
+// JdbcTemplate, который замеряет каждый запрос и пишет в лог медленные.
+// Переопределены методы, через которые проходят все вызовы хранилищ: каждый из них
+// сразу уходит в закрытый execute родителя, поэтому один запрос замеряется ровно один раз.
+// Текст SQL берётся из SqlProvider, как его и раздаёт сам JdbcTemplate
+@Slf4j
+public class InstrumentedJdbcTemplate extends JdbcTemplate {
+
+    private final LatencyMetrics metrics;
+    private final long slowQueryNanos;
+
+    public InstrumentedJdbcTemplate(DataSource dataSource, LatencyMetrics metrics, long slowQueryMillis) {
+        super(dataSource);
+        this.metrics = metrics;
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    @Override
+    public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+            throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.query(psc, pss, rse);
+        } finally {
+            record(psc, start);
+        }
+    }
+
+    @Override
+    protected int update(PreparedStatementCreator psc, PreparedStatementSetter pss) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.update(psc, pss);
+        } finally {
+            record(psc, start);
+        }
+    }
+
+    @Override
+    public int update(PreparedStatementCreator psc, KeyHolder generatedKeyHolder) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.update(psc, generatedKeyHolder);
+        } finally {
+            record(psc, start);
+        }
+    }
+
+    @Override
+    public <T> T execute(PreparedStatementCreator psc, PreparedStatementCallback<T> action)
+            throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.execute(psc, action);
+        } finally {
+            record(psc, start);
+        }
+    }
+
+    // Пакетные вставки и обновления
+    @Override
+    public <T> T execute(String sql, PreparedStatementCallback<T> action) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.execute(sql, action);
+        } finally {
+            record(sql, start);
+        }
+    }
+
+    // Запросы без параметров идут через обычный Statement
+    @Override
+    public <T> T query(String sql, ResultSetExtractor<T> rse) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.query(sql, rse);
+        } finally {
+            record(sql, start);
+        }
+    }
+
+    @Override
+    public int update(String sql) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.update(sql);
+        } finally {
+            record(sql, start);
+        }
+    }
+
+    @Override
+    public void execute(String sql) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            super.execute(sql);
+        } finally {
+            record(sql, start);
+        }
+    }
+
+    @Override
+    public <T> T execute(StatementCallback<T> action) throws DataAccessException {
+        long start = System.nanoTime();
+        try {
+            return super.execute(action);
+        } finally {
+            record(action, start);
+        }
+    }
+
+    private void record(Object statement, long start) {
+        record(statement instanceof SqlProvider provider ? provider.getSql() : null, start);
+    }
+
+    private void record(String sql, long start) {
+        long elapsed = System.nanoTime() - start;
+        metrics.recordSql(sql, elapsed);
+        if (elapsed >= slowQueryNanos) {
+            metrics.recordSlowQuery();
+            log.warn("Медленный SQL-запрос: {} мс, {}", TimeUnit.NANOSECONDS.toMillis(elapsed), sql);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Реестр гистограмм задержек по эндпоинтам и по SQL-запросам с выводом в текстовом формате Prometheus;
+// сюда же пишет буфер отложенной записи лайков.
+// Гистограмма ищется по ключу обычным get, новая создаётся один раз на ключ, так что запись
+// в уже известный ключ не выделяет память
+@Component
+public class LatencyMetrics {
+
+    // Предел различных текстов SQL: запросы со списком параметров переменной длины
+    // дают новый текст на каждую длину, всё сверх предела копится в одной гистограмме
+    static final int MAX_SQL_STATEMENTS = 500;
+    static final String OTHER_SQL = "other";
+    static final String UNKNOWN_SQL = "unknown";
+    // Запросы, не сопоставленные ни одному эндпоинту (404 на неизвестный путь)
+    static final String UNMATCHED_URI = "UNMATCHED";
+
+    static final String[] METHODS = {"GET", "POST", "PUT", "PATCH", "DELETE", "OTHER"};
+    static final String[] STATUSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.99", "0.999"};
+
+    private final ConcurrentHashMap<String, LatencyHistogram> sqlStatements = new ConcurrentHashMap<>();
+    private final LatencyHistogram otherSql = new LatencyHistogram();
+    private final LongAdder slowQueries = new LongAdder();
+    private final LatencyHistogram likeFlushes = new LatencyHistogram();
+    private final LongAdder failedLikeFlushes = new LongAdder();
+    private final LongAdder rejectedLikes = new LongAdder();
+    private volatile IntSupplier likeQueueDepth = () -> 0;
+    // Отдельная карта URI-шаблонов на каждую пару метод + класс статуса
+    private final List<ConcurrentHashMap<String, LatencyHistogram>> endpoints = new ArrayList<>();
+
+    public LatencyMetrics() {
+        for (int i = 0; i < METHODS.length * STATUSES.length; i++) {
+            endpoints.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    public void recordSql(String sql, long nanos) {
+        String key = sql != null ? sql : UNKNOWN_SQL;
+        LatencyHistogram histogram = sqlStatements.get(key);
+        if (histogram == null) {
+            histogram = sqlStatements.size() < MAX_SQL_STATEMENTS
+                    ? sqlStatements.computeIfAbsent(key, ignored -> new LatencyHistogram())
+                    : otherSql;
+        }
+        histogram.record(nanos);
+    }
+
+    public void recordSlowQuery() {
+        slowQueries.increment();
+    }
+
+    public void recordLikeFlush(long nanos, boolean failed) {
+        likeFlushes.record(nanos);
+        if (failed) {
+            failedLikeFlushes.increment();
+        }
+    }
+
+    public void recordRejectedLike() {
+        rejectedLikes.increment();
+    }
+
+    // Глубина очереди читается в момент выгрузки метрик
+    public void setLikeQueueDepth(IntSupplier likeQueueDepth) {
+        this.likeQueueDepth = likeQueueDepth;
+    }
+
+    public void recordRequest(String method, String uriPattern, int status, long nanos) {
+        int statusIndex = Math.min(Math.max(status / 100, 1), 5) - 1;
+        Map<String, LatencyHistogram> byUri = endpoints.get(methodIndex(method) * STATUSES.length + statusIndex);
+        String key = uriPattern != null ? uriPattern : UNMATCHED_URI;
+        LatencyHistogram histogram = byUri.get(key);
+        if (histogram == null) {
+            histogram = byUri.computeIfAbsent(key, ignored -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP filmorate_http_server_requests_seconds Время обработки HTTP-запросов\n");
+        out.append("# TYPE filmorate_http_server_requests_seconds summary\n");
+        for (int i = 0; i < endpoints.size(); i++) {
+            String method = METHODS[i / STATUSES.length];
+            String status = STATUSES[i % STATUSES.length];
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(endpoints.get(i)).entrySet()) {
+                String labels = "method=\"" + method + "\",uri=\"" + escapeLabel(entry.getKey()) +
+                        "\",status=\"" + status + "\"";
+                appendSummary(out, "filmorate_http_server_requests_seconds", labels, entry.getValue());
+            }
+        }
+
+        out.append("# HELP filmorate_sql_query_seconds Время выполнения SQL-запросов через JdbcTemplate\n");
+        out.append("# TYPE filmorate_sql_query_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(sqlStatements).entrySet()) {
+            appendSummary(out, "filmorate_sql_query_seconds",
+                    "sql=\"" + escapeLabel(entry.getKey()) + "\"", entry.getValue());
+        }
+        if (otherSql.getCount() > 0) {
+            appendSummary(out, "filmorate_sql_query_seconds", "sql=\"" + OTHER_SQL + "\"", otherSql);
+        }
+
+        out.append("# HELP filmorate_sql_slow_queries_total SQL-запросы дольше порога медленного запроса\n");
+        out.append("# TYPE filmorate_sql_slow_queries_total counter\n");
+        out.append("filmorate_sql_slow_queries_total ").append(slowQueries.sum()).append('\n');
+
+        out.append("# HELP filmorate_like_buffer_queue_depth Лайки в очереди отложенной записи\n");
+        out.append("# TYPE filmorate_like_buffer_queue_depth gauge\n");
+        out.append("filmorate_like_buffer_queue_depth ").append(likeQueueDepth.getAsInt()).append('\n');
+        out.append("# HELP filmorate_like_buffer_flush_seconds Время сброса пачки лайков в БД\n");
+        out.append("# TYPE filmorate_like_buffer_flush_seconds summary\n");
+        appendSummary(out, "filmorate_like_buffer_flush_seconds", "", likeFlushes);
+        out.append("# HELP filmorate_like_buffer_failed_flushes_total Сбросы пачки лайков, закончившиеся ошибкой\n");
+        out.append("# TYPE filmorate_like_buffer_failed_flushes_total counter\n");
+        out.append("filmorate_like_buffer_failed_flushes_total ").append(failedLikeFlushes.sum()).append('\n');
+        out.append("# HELP filmorate_like_buffer_rejected_total Лайки, отклонённые при заполненной очереди\n");
+        out.append("# TYPE filmorate_like_buffer_rejected_total counter\n");
+        out.append("filmorate_like_buffer_rejected_total ").append(rejectedLikes.sum()).append('\n');
+        return out.toString();
+    }
+
+    // Пустые labels — метрика без меток
+    private static void appendSummary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] values = histogram.quantiles(QUANTILES);
+        String quantilePrefix = labels.isEmpty() ? "{quantile=\"" : "{" + labels + ",quantile=\"";
+        String totals = labels.isEmpty() ? " " : "{" + labels + "} ";
+        for (int q = 0; q < QUANTILES.length; q++) {
+            out.append(name).append(quantilePrefix).append(QUANTILE_LABELS[q])
+                    .append("\"} ").append(seconds(values[q])).append('\n');
+        }
+        out.append(name).append("_count").append(totals).append(histogram.getCount()).append('\n');
+        out.append(name).append("_sum").append(totals)
+                .append(seconds(histogram.getTotalNanos())).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static int methodIndex(String method) {
+        return switch (method) {
+            case "GET" -> 0;
+            case "POST" -> 1;
+            case "PUT" -> 2;
+            case "PATCH" -> 3;
+            case "DELETE" -> 4;
+            default -> 5;
+        };
+    }
+
+    // Экранирование значения метки по правилам текстового формата Prometheus.
+    // Переводы строк в SQL заменяются пробелами, чтобы текст запроса читался в одну строку
+    static String escapeLabel(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '"' -> escaped.append("\\\"");
+                case '\n', '\r', '\t' -> escaped.append(' ');
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.JdbcProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+// Подменяет JdbcTemplate из автоконфигурации Spring Boot на замеряющий.
+// Настройки spring.jdbc.template.* переносятся так же, как это делает автоконфигурация
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource, JdbcProperties properties, LatencyMetrics metrics,
+                                     @Value("${filmorate.metrics.slow-query-ms:200}") long slowQueryMillis) {
+        JdbcTemplate jdbcTemplate = new InstrumentedJdbcTemplate(dataSource, metrics, slowQueryMillis);
+        JdbcProperties.Template template = properties.getTemplate();
+        jdbcTemplate.setFetchSize(template.getFetchSize());
+        jdbcTemplate.setMaxRows(template.getMaxRows());
+        if (template.getQueryTimeout() != null) {
+            jdbcTemplate.setQueryTimeout((int) template.getQueryTimeout().getSeconds());
+        }
+        return jdbcTemplate;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.SqlProvider;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// PreparedStatementCreator с известным текстом SQL. У лямбды-создателя текста нет,
+// и JdbcTemplate с метриками не смог бы отнести замер к конкретному запросу
+public record SqlStatementCreator(String sql, Builder builder) implements PreparedStatementCreator, SqlProvider {
+
+    @FunctionalInterface
+    public interface Builder {
+        PreparedStatement create(Connection connection, String sql) throws SQLException;
+    }
+
+    @Override
+    public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+        return builder.create(connection, sql);
+    }
+
+    @Override
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Результат пакетного добавления для одного фильма: index — позиция в запросе,
+// id заполнен у добавленных фильмов, error — у отклонённых
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmBatchResult {
+    private int index;
+    private Long id;
+    private String error;
+
+    public static FilmBatchResult created(int index, long id) {
+        return new FilmBatchResult(index, id, null);
+    }
+
+    public static FilmBatchResult failed(int index, String error) {
+        return new FilmBatchResult(index, null, error);
+    }
+}
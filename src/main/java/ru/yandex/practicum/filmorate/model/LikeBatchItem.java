@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Одна операция из пакета лайков: поставить или снять лайк пользователя userId фильму filmId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LikeBatchItem {
+    private Long filmId;
+    private Long userId;
+    private LikeOperation op;
+}
@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Результат одной операции из пакета лайков; index — позиция операции в запросе
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class LikeBatchResult {
+    private int index;
+    private Status status;
+    private String error;
+
+    public enum Status {
+        // Лайк поставлен или снят
+        APPLIED,
+        // Состояние уже было таким: повторный лайк или снятие отсутствующего
+        UNCHANGED,
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND,
+        INVALID
+    }
+}
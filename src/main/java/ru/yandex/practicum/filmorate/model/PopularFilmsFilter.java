@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Фильтр популярных фильмов; незаданное поле выборку не ограничивает
+@Data
+@AllArgsConstructor
+public class PopularFilmsFilter {
+    private Long genreId;
+    private Integer year;
+    private Long mpaId;
+
+    public boolean isEmpty() {
+        return genreId == null && year == null && mpaId == null;
+    }
+}
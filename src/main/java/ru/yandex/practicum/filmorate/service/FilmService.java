@@ -1,120 +1,426 @@
 package ru.yandex.practicum.filmorate.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeBatchResult;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmAutocompleteIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
-import ru.yandex.practicum.filmorate.storage.mpa_rating.MpaRatingStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
+@Slf4j
 @Service
 public class FilmService {
 
+    // Сколько фильмов гидрируется жанрами за раз при потоковой выгрузке каталога
+    private static final int STREAM_CHUNK_SIZE = 500;
+    private static final LocalDate MIN_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
-    private final GenreStorage genreStorage;
-    private final MpaRatingStorage mpaRatingStorage;
+    private final ReferenceDataCache referenceDataCache;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final FilmCache filmCache;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final FilmRecommendationIndex recommendationIndex;
+    private final FilmSearchIndex searchIndex;
+    private final FilmAutocompleteIndex autocompleteIndex;
+    private final TrendingFilmsIndex trendingIndex;
 
     @Autowired
     public FilmService(@Qualifier("dbFilmStorage") FilmStorage filmStorage,
                        @Qualifier("dbUserStorage") UserStorage userStorage,
-                       GenreStorage genreStorage,
-                       MpaRatingStorage mpaRatingStorage) {
+                       ReferenceDataCache referenceDataCache,
+                       PopularFilmsIndex popularFilmsIndex,
+                       FilmCache filmCache,
+                       LikeWriteBuffer likeWriteBuffer,
+                       FilmRecommendationIndex recommendationIndex,
+                       FilmSearchIndex searchIndex,
+                       FilmAutocompleteIndex autocompleteIndex,
+                       TrendingFilmsIndex trendingIndex) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
-        this.genreStorage = genreStorage;
-        this.mpaRatingStorage = mpaRatingStorage;
+        this.referenceDataCache = referenceDataCache;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.filmCache = filmCache;
+        this.likeWriteBuffer = likeWriteBuffer;
+        this.recommendationIndex = recommendationIndex;
+        this.searchIndex = searchIndex;
+        this.autocompleteIndex = autocompleteIndex;
+        this.trendingIndex = trendingIndex;
+        // Отложенные лайки применяются тем же путём, что и пакетный эндпоинт
+        likeWriteBuffer.setFlushHandler(this::applyLikes);
     }
 
     public Film addFilm(Film film) {
+        validateFilmFields(film);
         validateMpaAndGenres(film);
-        return filmStorage.addFilm(film);
+        Film added = filmStorage.addFilm(film);
+        filmCache.invalidate(added.getId());
+        popularFilmsIndex.addFilm(added);
+        searchIndex.addFilm(added);
+        autocompleteIndex.addFilm(added);
+        return added;
+    }
+
+    public List<FilmBatchResult> addFilms(List<Film> films) {
+        FilmBatchResult[] results = new FilmBatchResult[films.size()];
+        List<Film> accepted = new ArrayList<>(films.size());
+        List<Integer> acceptedPositions = new ArrayList<>(films.size());
+
+        // Ошибка в одном фильме не отменяет остальные: он попадает в ответ со своей причиной
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            try {
+                if (film == null) {
+                    throw new ValidationException("Фильм не может быть пустым");
+                }
+                validateFilmFields(film);
+                validateMpaAndGenres(film);
+                accepted.add(film);
+                acceptedPositions.add(i);
+            } catch (ValidationException | NotFoundException e) {
+                results[i] = FilmBatchResult.failed(i, e.getMessage());
+            }
+        }
+
+        filmStorage.addFilms(accepted);
+        for (int i = 0; i < accepted.size(); i++) {
+            Film film = accepted.get(i);
+            popularFilmsIndex.addFilm(film);
+            searchIndex.addFilm(film);
+            autocompleteIndex.addFilm(film);
+            results[acceptedPositions.get(i)] = FilmBatchResult.created(acceptedPositions.get(i), film.getId());
+        }
+        log.info("Пакетное добавление фильмов: добавлено {}, отклонено {}",
+                accepted.size(), films.size() - accepted.size());
+        return Arrays.asList(results);
     }
 
     public Film updateFilm(Film film) {
-        Film existingFilm = filmStorage.getFilmById(film.getId());
+        Film existingFilm = getCachedFilm(film.getId());
         if (existingFilm == null) {
             throw new RuntimeException("Фильм с ID " + film.getId() + " не найден");
         }
+        validateFilmFields(film);
         validateMpaAndGenres(film);
-        return filmStorage.updateFilm(film);
+        Film updated = filmStorage.updateFilm(film);
+        filmCache.invalidate(film.getId());
+        popularFilmsIndex.updateFilm(updated);
+        searchIndex.updateFilm(updated);
+        autocompleteIndex.updateFilm(updated);
+        return updated;
+    }
+
+    // Удаление через сервис, чтобы кэш и индексы не держали удалённый фильм. Публичного
+    // эндпоинта нет: удаление фильмов в API не входит
+    public Film deleteFilm(long filmId) {
+        Film deleted = filmStorage.deleteFilm(filmId);
+        if (deleted == null) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        filmCache.invalidate(filmId);
+        popularFilmsIndex.removeFilm(filmId);
+        recommendationIndex.removeFilm(filmId);
+        trendingIndex.removeFilm(filmId);
+        searchIndex.removeFilm(filmId);
+        autocompleteIndex.removeFilm(filmId);
+        return deleted;
     }
 
     public List<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public List<Film> getFilms(long afterId, int limit) {
+        return filmStorage.getFilms(afterId, limit);
+    }
+
+    public void streamAllFilms(Consumer<Film> consumer) {
+        filmStorage.streamAllFilms(STREAM_CHUNK_SIZE, chunk -> chunk.forEach(consumer));
+    }
+
     public Film getFilmByIdPublic(long filmId) {
-        Film film = filmStorage.getFilmById(filmId);
+        Film film = getCachedFilm(filmId);
         if (film == null) throw new NotFoundException("Фильм с ID " + filmId + " не найден");
         return film;
     }
 
+    // Фильм и пользователь не загружаются: хранилище пишет лайк условно и само сообщает,
+    // кого не нашлось. Отложенной записи проверка нужна заранее, до подтверждения
     public void addLike(long filmId, long userId) {
-        Film film = filmStorage.getFilmById(filmId);
-        if (film == null) {
-            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        if (likeWriteBuffer.isEnabled()) {
+            requireFilmAndUser(filmId, userId);
+            // Индекс популярности обновится при сбросе буфера по фактически записанным лайкам
+            likeWriteBuffer.submit(new LikeBatchItem(filmId, userId, LikeOperation.ADD));
+            return;
         }
+        filmStorage.addLike(filmId, userId);
+        popularFilmsIndex.changeLikes(filmId, 1);
+        autocompleteIndex.likesChanged(filmId);
+        recommendationIndex.addLike(filmId, userId);
+        trendingIndex.addLike(filmId, userId);
+    }
 
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
-            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+    public void deleteLike(long filmId, long userId) {
+        if (likeWriteBuffer.isEnabled()) {
+            requireFilmAndUser(filmId, userId);
+            likeWriteBuffer.submit(new LikeBatchItem(filmId, userId, LikeOperation.REMOVE));
+            return;
         }
+        filmStorage.removeLike(filmId, userId);
+        popularFilmsIndex.changeLikes(filmId, -1);
+        autocompleteIndex.likesChanged(filmId);
+        recommendationIndex.removeLike(filmId, userId);
+        trendingIndex.removeLike(filmId, userId);
+    }
 
-        filmStorage.addLike(filmId, userId);
+    public List<LikeBatchResult> applyLikes(List<LikeBatchItem> items) {
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (LikeBatchItem item : items) {
+            if (item != null) {
+                if (item.getFilmId() != null) filmIds.add(item.getFilmId());
+                if (item.getUserId() != null) userIds.add(item.getUserId());
+            }
+        }
+
+        // Существование всех фильмов и пользователей пакета проверяется двумя запросами
+        Set<Long> existingFilms = filmStorage.findExistingFilmIds(filmIds);
+        Set<Long> existingUsers = userStorage.findExistingUserIds(userIds);
+
+        LikeBatchResult[] results = new LikeBatchResult[items.size()];
+        List<LikeBatchItem> accepted = new ArrayList<>(items.size());
+        List<Integer> acceptedPositions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItem item = items.get(i);
+            if (item == null || item.getFilmId() == null || item.getUserId() == null || item.getOp() == null) {
+                results[i] = new LikeBatchResult(i, LikeBatchResult.Status.INVALID,
+                        "Нужно указать filmId, userId и op");
+            } else if (!existingFilms.contains(item.getFilmId())) {
+                results[i] = new LikeBatchResult(i, LikeBatchResult.Status.FILM_NOT_FOUND,
+                        "Фильм с ID " + item.getFilmId() + " не найден");
+            } else if (!existingUsers.contains(item.getUserId())) {
+                results[i] = new LikeBatchResult(i, LikeBatchResult.Status.USER_NOT_FOUND,
+                        "Пользователь с ID " + item.getUserId() + " не найден");
+            } else {
+                accepted.add(item);
+                acceptedPositions.add(i);
+            }
+        }
+
+        boolean[] changed = filmStorage.applyLikes(accepted);
+        Map<Long, Long> deltas = new HashMap<>();
+        for (int i = 0; i < accepted.size(); i++) {
+            LikeBatchItem item = accepted.get(i);
+            int position = acceptedPositions.get(i);
+            if (changed[i]) {
+                results[position] = new LikeBatchResult(position, LikeBatchResult.Status.APPLIED, null);
+                deltas.merge(item.getFilmId(), item.getOp() == LikeOperation.ADD ? 1L : -1L, Long::sum);
+                if (item.getOp() == LikeOperation.ADD) {
+                    recommendationIndex.addLike(item.getFilmId(), item.getUserId());
+                    trendingIndex.addLike(item.getFilmId(), item.getUserId());
+                } else {
+                    recommendationIndex.removeLike(item.getFilmId(), item.getUserId());
+                    trendingIndex.removeLike(item.getFilmId(), item.getUserId());
+                }
+            } else {
+                results[position] = new LikeBatchResult(position, LikeBatchResult.Status.UNCHANGED, null);
+            }
+        }
+        deltas.forEach((filmId, delta) -> {
+            if (delta != 0) {
+                popularFilmsIndex.changeLikes(filmId, delta);
+                autocompleteIndex.likesChanged(filmId);
+            }
+        });
+        log.info("Пакет лайков: принято {}, отклонено {}, фильмов с изменённым счётчиком {}",
+                accepted.size(), items.size() - accepted.size(), deltas.size());
+        return Arrays.asList(results);
     }
 
-    public void deleteLike(long filmId, long userId) {
-        Film film = filmStorage.getFilmById(filmId);
-        if (film == null) {
-            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+    public List<Film> getPopularFilms(int count) {
+        // Рейтинг берём из индекса в памяти, в БД идём только за карточками фильмов
+        List<Long> topIds = popularFilmsIndex.getTopFilmIds(count);
+        if (topIds == null) {
+            return filmStorage.getPopularFilms(count);
         }
+        return filmCache.getAll(topIds, filmStorage::getFilmsByIds);
+    }
 
-        User user = userStorage.getUserById(userId);
-        if (user == null) {
+    public List<Film> getPopularFilms(int count, PopularFilmsFilter filter) {
+        if (filter.isEmpty()) {
+            return getPopularFilms(count);
+        }
+        if (filter.getGenreId() != null && referenceDataCache.getGenreById(filter.getGenreId()) == null) {
+            throw new NotFoundException("Жанр с ID " + filter.getGenreId() + " не найден");
+        }
+        if (filter.getMpaId() != null && referenceDataCache.getMpaById(filter.getMpaId()) == null) {
+            throw new NotFoundException("Рейтинг MPA с ID " + filter.getMpaId() + " не найден");
+        }
+
+        List<Long> topIds = popularFilmsIndex.getTopFilmIds(count, filter);
+        if (topIds == null) {
+            return filmStorage.getPopularFilms(count, filter);
+        }
+        return filmCache.getAll(topIds, filmStorage::getFilmsByIds);
+    }
+
+    public List<Film> getTrendingFilms(TrendingFilmsIndex.Window window, int count) {
+        List<Long> ids = trendingIndex.getTopFilmIds(window, count);
+        if (ids == null) {
+            // Окна ещё заполняются после запуска: отдаём просто популярные фильмы
+            return getPopularFilms(count);
+        }
+        return filmCache.getAll(ids, filmStorage::getFilmsByIds);
+    }
+
+    public List<Film> getRecommendations(long userId, int limit) {
+        if (userStorage.findExistingUserIds(List.of(userId)).isEmpty()) {
             throw new NotFoundException("Пользователь с ID " + userId + " не найден");
         }
 
-        filmStorage.removeLike(filmId, userId);
+        long[] recommended = recommendationIndex.recommend(userId, limit);
+        if (recommended == null) {
+            // Индекс ещё строится после запуска: отдаём просто популярные фильмы
+            return getPopularFilms(limit);
+        }
+        List<Long> ids = new ArrayList<>(recommended.length);
+        for (long id : recommended) {
+            ids.add(id);
+        }
+        return filmCache.getAll(ids, filmStorage::getFilmsByIds);
     }
 
-    public List<Film> getPopularFilms(int count) {
-        return filmStorage.getPopularFilms(count);
+    public List<Film> searchFilms(String query, int limit) {
+        List<String> terms = FilmSearchIndex.queryTerms(query);
+        if (terms.isEmpty()) {
+            throw new ValidationException("Поисковый запрос должен содержать хотя бы одно слово");
+        }
+
+        List<Long> ids = searchIndex.search(terms, limit);
+        if (ids == null) {
+            // Индекс ещё строится после запуска: ищем в БД
+            return filmStorage.searchFilms(terms, limit);
+        }
+        return filmCache.getAll(ids, filmStorage::getFilmsByIds);
+    }
+
+    public List<Film> autocompleteFilms(String prefix, int limit) {
+        List<Long> ids = autocompleteIndex.complete(prefix, limit);
+        if (ids == null) {
+            // Индекс ещё строится после запуска: ищем в БД
+            return filmStorage.getFilmsByNamePrefix(prefix.strip(), limit);
+        }
+        return filmCache.getAll(ids, filmStorage::getFilmsByIds);
+    }
+
+    public FilmRecommendationIndex.Stats getRecommendationStats() {
+        return recommendationIndex.getStats();
+    }
+
+    public void refreshReferenceData() {
+        referenceDataCache.refresh();
+        // В закэшированных фильмах могли остаться старые названия жанров и рейтингов
+        filmCache.invalidateAll();
+    }
+
+    public TrendingFilmsIndex.Stats getTrendingStats() {
+        return trendingIndex.getStats();
+    }
+
+    public FilmAutocompleteIndex.Stats getAutocompleteStats() {
+        return autocompleteIndex.getStats();
+    }
+
+    public FilmCache.Stats getFilmCacheStats() {
+        return filmCache.getStats();
+    }
+
+    public LikeWriteBuffer.Stats getLikeBufferStats() {
+        return likeWriteBuffer.getStats();
+    }
+
+    private Film getCachedFilm(long filmId) {
+        return filmCache.get(filmId, filmStorage::getFilmById);
+    }
+
+    private void requireFilmAndUser(long filmId, long userId) {
+        if (!filmStorage.filmExists(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!userStorage.userExists(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
+
+    private void validateFilmFields(Film film) {
+        if (film.getName() == null || film.getName().isBlank()) {
+            throw new ValidationException("Название не может быть пустым!");
+        }
+        if (film.getDescription() != null && film.getDescription().length() > 200) {
+            throw new ValidationException("Описание не может быть длиннее 200 символов!");
+        }
+        if (film.getDuration() == null || film.getDuration() <= 0) {
+            throw new ValidationException("Продолжительность фильма должна быть положительной!");
+        }
+        if (film.getReleaseDate() == null) {
+            throw new ValidationException("Дата релиза не может быть пустой!");
+        }
+        if (film.getReleaseDate().isBefore(MIN_RELEASE_DATE)) {
+            throw new ValidationException("Дата релиза не может быть раньше 28 декабря 1895 года");
+        }
     }
 
     private void validateMpaAndGenres(Film film) {
+        // Проверка идёт по снимку справочников в памяти, без запросов к БД. Найденные рейтинг
+        // и жанры подставляются в фильм, чтобы хранилище вернуло их с именами без повторного чтения
         if (film.getMpa() != null) {
-            if (mpaRatingStorage.getMpaById(film.getMpa().getId()) == null) {
+            Mpa mpa = referenceDataCache.getMpaById(film.getMpa().getId());
+            if (mpa == null) {
                 throw new NotFoundException("Рейтинг MPA с ID " + film.getMpa().getId() + " не найден");
             }
+            film.setMpa(mpa);
         }
 
         if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            // Собираем все ID жанров
-            Set<Long> genreIds = film.getGenres().stream()
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
-
-            // Получаем все существующие жанры одним запросом
-            Set<Long> existingGenreIds = genreStorage.getAllGenres().stream()
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
-
-            // Проверяем, что все переданные жанры существуют
-            for (Long genreId : genreIds) {
-                if (!existingGenreIds.contains(genreId)) {
-                    throw new NotFoundException("Жанр с ID " + genreId + " не найден");
+            Set<Genre> genres = new HashSet<>();
+            for (Genre genre : film.getGenres()) {
+                Genre known = referenceDataCache.getGenreById(genre.getId());
+                if (known == null) {
+                    throw new NotFoundException("Жанр с ID " + genre.getId() + " не найден");
                 }
+                genres.add(known);
             }
+            film.setGenres(genres);
         }
     }
 
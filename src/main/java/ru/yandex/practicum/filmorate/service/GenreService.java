@@ -3,27 +3,31 @@ package ru.yandex.practicum.filmorate.service;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 
 import java.util.List;
 
 @Service
 public class GenreService {
-    private final GenreStorage genreStorage;
+    private final ReferenceDataCache referenceDataCache;
 
-    public GenreService(GenreStorage genreStorage) {
-        this.genreStorage = genreStorage;
+    public GenreService(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
     public List<Genre> getAllGenres() {
-        return genreStorage.getAllGenres();
+        return referenceDataCache.getAllGenres();
     }
 
     public Genre getGenreById(long id) {
-        Genre genre = genreStorage.getGenreById(id);
+        Genre genre = referenceDataCache.getGenreById(id);
         if (genre == null) {
             throw new NotFoundException("Жанр с ID " + id + " не найден");
         }
         return genre;
     }
+
+    public String getGenresEtag() {
+        return referenceDataCache.getGenresEtag();
+    }
 }
\ No newline at end of file
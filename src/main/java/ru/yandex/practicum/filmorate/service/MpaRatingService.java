@@ -1,30 +1,33 @@
 package ru.yandex.practicum.filmorate.service;
 
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Mpa;
-import ru.yandex.practicum.filmorate.storage.mpa_rating.MpaRatingStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 
 import java.util.List;
 
 @Service
 public class MpaRatingService {
-    private final MpaRatingStorage mpaRatingStorage;
+    private final ReferenceDataCache referenceDataCache;
 
-    public MpaRatingService(@Qualifier("mpaRatingDbStorage") MpaRatingStorage mpaRatingStorage) {
-        this.mpaRatingStorage = mpaRatingStorage;
+    public MpaRatingService(ReferenceDataCache referenceDataCache) {
+        this.referenceDataCache = referenceDataCache;
     }
 
     public List<Mpa> getAllMpa() {
-        return mpaRatingStorage.getAllMpa();
+        return referenceDataCache.getAllMpa();
     }
 
     public Mpa getMpaById(long id) {
-        Mpa mpa = mpaRatingStorage.getMpaById(id);
+        Mpa mpa = referenceDataCache.getMpaById(id);
         if (mpa == null) {
             throw new NotFoundException("Рейтинг MPA с ID " + id + " не найден");
         }
         return mpa;
     }
+
+    public String getMpaEtag() {
+        return referenceDataCache.getMpaEtag();
+    }
 }
\ No newline at end of file
@@ -6,35 +6,42 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.FriendAdjacencyCache;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggestionEngine;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.util.SortedLongArrays;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Service
 public class UserService {
     private final UserStorage userStorage;
+    private final FriendAdjacencyCache friendAdjacencyCache;
+    private final FriendSuggestionEngine friendSuggestionEngine;
 
     @Autowired
-    public UserService(@Qualifier("dbUserStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("dbUserStorage") UserStorage userStorage,
+                       FriendAdjacencyCache friendAdjacencyCache,
+                       FriendSuggestionEngine friendSuggestionEngine) {
         this.userStorage = userStorage;
+        this.friendAdjacencyCache = friendAdjacencyCache;
+        this.friendSuggestionEngine = friendSuggestionEngine;
     }
 
+    // Пользователи не загружаются: хранилище само сообщает, кого из двух нет
     public void addFriend(long userId, long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-
-        (userStorage).addFriend(userId, friendId);
+        userStorage.addFriend(userId, friendId);
+        friendAdjacencyCache.invalidate(userId);
 
         log.info("Односторонняя дружба: {} → {}", userId, friendId);
     }
 
     public void deleteFriend(long userId, long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-
-        (userStorage).removeFriend(userId, friendId);
+        userStorage.removeFriend(userId, friendId);
+        friendAdjacencyCache.invalidate(userId);
 
         log.info("Пользователь {} удалил из друзей {}", userId, friendId);
     }
@@ -46,10 +53,41 @@ public class UserService {
     }
 
     public List<User> getCommonFriends(long userId, long otherUserId) {
+        // Оба пользователя проверяются одним запросом, без загрузки их друзей
+        Set<Long> existing = userStorage.findExistingUserIds(List.of(userId, otherUserId));
+        for (long id : new long[]{userId, otherUserId}) {
+            if (!existing.contains(id)) {
+                throw new NotFoundException("Пользователь с ID " + id + " не найден");
+            }
+        }
+
+        long[] common = SortedLongArrays.intersect(getFriendIds(userId), getFriendIds(otherUserId));
+        return userStorage.getUsersByIds(toList(common));
+    }
+
+    public List<User> getFriendSuggestions(long userId, int limit) {
         getUserById(userId);
-        getUserById(otherUserId);
 
-        return (userStorage).getCommonFriends(userId, otherUserId);
+        // Списки друзей второго шага берутся из кэша, промахи догружаются одним запросом
+        long[] suggested = friendSuggestionEngine.suggest(userId, getFriendIds(userId), limit,
+                ids -> friendAdjacencyCache.getFriendIds(ids, userStorage::getFriendIdsByUserIds));
+        return userStorage.getUsersByIds(toList(suggested));
+    }
+
+    public FriendAdjacencyCache.Stats getFriendsCacheStats() {
+        return friendAdjacencyCache.getStats();
+    }
+
+    private long[] getFriendIds(long userId) {
+        return friendAdjacencyCache.getFriendIds(userId, userStorage::getFriendIds);
+    }
+
+    private static List<Long> toList(long[] ids) {
+        List<Long> list = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            list.add(id);
+        }
+        return list;
     }
 
     private User getUserById(long userId) {
@@ -68,14 +106,18 @@ public class UserService {
         return userStorage.addUser(user);
     }
 
+    // Отсутствие пользователя хранилище видит по числу обновлённых строк, отдельного чтения нет
     public User updateUser(User user) {
-        if (userStorage.getUserById(user.getId()) == null) {
-            throw new NotFoundException("Пользователь с ID " + user.getId() + " не найден");
-        }
-        return userStorage.updateUser(user);
+        User updated = userStorage.updateUser(user);
+        friendAdjacencyCache.invalidate(user.getId());
+        return updated;
     }
 
     public List<User> getAllUsers() {
         return new ArrayList<>(userStorage.getAllUsers());
     }
+
+    public List<User> getUsers(long afterId, int limit) {
+        return userStorage.getUsers(afterId, limit);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.util.LongBloomFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+// Фильтр Блума по ID живых записей таблицы: запрос к несуществующему ID отсекается без SQL.
+// Пока фильтр не построен, пропускается всё. Удалённые ID остаются в фильтре ложноположительными
+// до пересборки; пересборка нужна, когда удалений или добавлений стало слишком много для размера
+@Slf4j
+public class LiveIdFilter {
+
+    // Целевая доля ложноположительных и запас ёмкости на рост таблицы между пересборками
+    private static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+    private static final int CAPACITY_HEADROOM = 2;
+    private static final long MIN_CAPACITY = 1024;
+
+    private final String name;
+    private final Object lock = new Object();
+
+    private volatile LongBloomFilter filter;
+    private volatile long capacity;
+    // ID, добавленные во время пересборки: проигрываются в новый фильтр перед подменой
+    private List<Long> addedDuringRebuild;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicLong removedSinceRebuild = new AtomicLong();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private volatile long lastRebuildMillis;
+
+    public LiveIdFilter(String name) {
+        this.name = name;
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    // false — ID точно нет, SQL не нужен
+    public boolean mightContain(long id) {
+        LongBloomFilter current = filter;
+        if (current == null) {
+            return true;
+        }
+        lookups.increment();
+        if (current.mightContain(id)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    // Фильтр пропустил ID, а строки в таблице не оказалось
+    public void recordFalsePositive() {
+        if (filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    // ID нужен в фильтре сразу, чтобы та же транзакция нашла свою строку. Внутри транзакции
+    // он добавляется ещё раз после фиксации: пересборка, чья выборка не увидела незафиксированную
+    // строку, получит ID через addedDuringRebuild. Откаченная вставка оставляет лишь ложноположительный ID
+    public void add(long id) {
+        ids.incrementAndGet();
+        put(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(id);
+                }
+            });
+        }
+    }
+
+    public void remove(long id) {
+        removedSinceRebuild.incrementAndGet();
+        ids.decrementAndGet();
+    }
+
+    // Пересборка нужна, когда живых ID больше расчётной ёмкости или удалена четверть
+    // от числа ID на момент последней сборки
+    public boolean needsRebuild() {
+        long currentCapacity = capacity;
+        return filter != null &&
+                (ids.get() > currentCapacity || removedSinceRebuild.get() * 4 > currentCapacity / CAPACITY_HEADROOM);
+    }
+
+    // source отдаёт все живые ID таблицы, count — их примерное число для выбора размера
+    public synchronized void rebuild(long count, Consumer<LongConsumer> source) {
+        long start = System.currentTimeMillis();
+        long newCapacity = Math.max(MIN_CAPACITY, count * CAPACITY_HEADROOM);
+        LongBloomFilter rebuilt = new LongBloomFilter(newCapacity, TARGET_FALSE_POSITIVE_RATE);
+        synchronized (lock) {
+            addedDuringRebuild = new ArrayList<>();
+        }
+
+        long[] loaded = new long[1];
+        try {
+            source.accept(id -> {
+                rebuilt.put(id);
+                loaded[0]++;
+            });
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                addedDuringRebuild = null;
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            addedDuringRebuild.forEach(rebuilt::put);
+            addedDuringRebuild = null;
+            capacity = newCapacity;
+            ids.set(loaded[0]);
+            removedSinceRebuild.set(0);
+            filter = rebuilt;
+        }
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("Фильтр ID «{}» пересобран: {} ID, {} КБ, {} мс", name, loaded[0],
+                rebuilt.bitSize() / 8 / 1024, lastRebuildMillis);
+    }
+
+    public Stats getStats() {
+        LongBloomFilter current = filter;
+        long lookupCount = lookups.sum();
+        long passed = lookupCount - rejected.sum();
+        return new Stats(
+                name,
+                current != null,
+                ids.get(),
+                capacity,
+                current != null ? current.bitSize() / 8 : 0,
+                current != null ? current.hashCount() : 0,
+                current != null ? current.expectedFalsePositiveRate(ids.get() + removedSinceRebuild.get()) : 0,
+                lookupCount,
+                rejected.sum(),
+                falsePositives.sum(),
+                passed > 0 ? (double) falsePositives.sum() / passed : 0,
+                removedSinceRebuild.get(),
+                lastRebuildMillis);
+    }
+
+    // Под той же блокировкой, что и подмена фильтра: иначе ID мог бы попасть в старый фильтр
+    // уже после того, как пересборка проиграла addedDuringRebuild
+    private void put(long id) {
+        synchronized (lock) {
+            LongBloomFilter current = filter;
+            if (current != null) {
+                current.put(id);
+            }
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(id);
+            }
+        }
+    }
+
+    // observedFalsePositiveRate — доля пропущенных фильтром ID, которых не оказалось в таблице,
+    // включая удалённые после последней пересборки
+    public record Stats(String name, boolean ready, long ids, long capacity, long memoryBytes, int hashes,
+                        double expectedFalsePositiveRate, long lookups, long rejected, long falsePositives,
+                        double observedFalsePositiveRate, long removedSinceRebuild, long lastRebuildMillis) {
+    }
+}
@@ -0,0 +1,551 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.TextTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Автодополнение по началу названия фильма. Названия лежат в сжатом префиксном дереве:
+// цепочка узлов с одним потомком хранится одним ребром со строкой. Каждый узел держит
+// список лучших по лайкам фильмов своего поддерева длиной 2 * top-n, поэтому ответ —
+// это спуск по префиксу и копия начала списка. Пока в списке не меньше top-n фильмов,
+// обгоняющих лучший фильм снаружи, ответ точный; иначе список узла пересчитывается
+@Slf4j
+@Component
+public class FilmAutocompleteIndex {
+
+    // Дальше этой длины названия не различаются, более длинный префикс обрезается
+    private static final int MAX_TITLE_LENGTH = 64;
+    private static final int REBUILD_CHUNK_SIZE = 2000;
+
+    private static final long[] NO_IDS = new long[0];
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private final FilmStorage filmStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final int topSize;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Trie trie;
+    // Изменения, пришедшие во время пересборки; после неё применяются к новому дереву
+    private List<Change> changesDuringRebuild;
+    private volatile boolean ready;
+    private volatile long lastRebuildMillis;
+
+    public FilmAutocompleteIndex(@Qualifier("dbFilmStorage") FilmStorage filmStorage,
+                                 PopularFilmsIndex popularFilmsIndex,
+                                 @Value("${filmorate.autocomplete.top-n:10}") int topSize) {
+        if (topSize <= 0) {
+            throw new IllegalArgumentException("top-n должен быть положительным");
+        }
+        this.filmStorage = filmStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+        this.topSize = topSize;
+        this.trie = new Trie(topSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.autocomplete.rebuild-interval-ms:3600000}",
+            initialDelayString = "${filmorate.autocomplete.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Trie rebuilt = new Trie(topSize);
+        try {
+            Map<Long, Long> likes = filmStorage.getLikeCounts();
+            filmStorage.streamAllFilms(REBUILD_CHUNK_SIZE, chunk -> {
+                for (Film film : chunk) {
+                    rebuilt.add(film.getId(), key(film.getName()), likes.getOrDefault(film.getId(), 0L));
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Изменения несут итоговое состояние фильма, поэтому повтор безопасен
+            changesDuringRebuild.forEach(change -> change.applyTo(rebuilt));
+            changesDuringRebuild = null;
+            trie = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("Индекс автодополнения пересобран: фильмов {}, узлов {}, за {} мс",
+                rebuilt.titles.size(), rebuilt.nodes, lastRebuildMillis);
+    }
+
+    public void addFilm(Film film) {
+        record(new Change(ChangeType.PUT, film.getId(), key(film.getName()), 0));
+    }
+
+    public void updateFilm(Film film) {
+        record(new Change(ChangeType.PUT, film.getId(), key(film.getName()), 0));
+    }
+
+    public void removeFilm(long filmId) {
+        record(new Change(ChangeType.REMOVE, filmId, null, 0));
+    }
+
+    // Берёт новое число лайков из индекса популярности, пока тот не построен — ждёт пересборки.
+    // Число читается под блокировкой дерева: из двух параллельных лайков фильма последним
+    // записывается самое свежее значение, а не то, что прочитано раньше
+    public void likesChanged(long filmId) {
+        if (!popularFilmsIndex.isReady()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            apply(new Change(ChangeType.LIKES, filmId, null, popularFilmsIndex.getLikes(filmId)));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ID до limit самых популярных фильмов, название которых начинается с prefix,
+    // или null, если индекс ещё не построен
+    public List<Long> complete(String prefix, int limit) {
+        String key = key(prefix);
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return null;
+            }
+            Node node = trie.find(key);
+            List<Long> result = new ArrayList<>();
+            if (node == null) {
+                return result;
+            }
+            for (int i = 0; i < Math.min(Math.min(limit, topSize), node.size); i++) {
+                result.add(node.ids[i]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            return new Stats(ready, trie.titles.size(), trie.nodes, lastRebuildMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void record(Change change) {
+        lock.writeLock().lock();
+        try {
+            apply(change);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Вызывается под блокировкой записи
+    private void apply(Change change) {
+        change.applyTo(trie);
+        if (changesDuringRebuild != null) {
+            changesDuringRebuild.add(change);
+        }
+    }
+
+    // Название в том виде, в котором оно хранится в дереве
+    private static String key(String text) {
+        String key = text == null ? "" : TextTokenizer.normalize(text.strip());
+        return key.length() > MAX_TITLE_LENGTH ? key.substring(0, MAX_TITLE_LENGTH) : key;
+    }
+
+    // Порядок списков: больше лайков раньше, при равенстве меньший ID раньше
+    private static boolean before(long likes, long filmId, long otherLikes, long otherId) {
+        return likes > otherLikes || (likes == otherLikes && filmId < otherId);
+    }
+
+    private static final class Trie {
+        private final int topSize;
+        private final int capacity;
+        private final Node root = new Node(NO_KEYS);
+        private final Map<Long, Title> titles = new HashMap<>();
+        private int nodes = 1;
+
+        private Trie(int topSize) {
+            this.topSize = topSize;
+            this.capacity = topSize * 2;
+        }
+
+        private void put(long filmId, String key) {
+            Title old = titles.get(filmId);
+            if (old != null && old.key.equals(key)) {
+                return;
+            }
+            long likes = old == null ? 0 : old.likes;
+            remove(filmId);
+            add(filmId, key, likes);
+        }
+
+        private void add(long filmId, String key, long likes) {
+            if (titles.containsKey(filmId)) {
+                return;
+            }
+            titles.put(filmId, new Title(key, likes));
+            Node node = root;
+            node.films++;
+            node.offer(filmId, likes, capacity);
+            int pos = 0;
+            while (pos < key.length()) {
+                Node child = node.child(key.charAt(pos));
+                if (child == null) {
+                    child = new Node(key.substring(pos).toCharArray());
+                    node.addChild(child);
+                    nodes++;
+                } else {
+                    int common = commonLength(child.label, key, pos);
+                    if (common < child.label.length) {
+                        child = split(node, child, common);
+                    }
+                }
+                node = child;
+                pos += node.label.length;
+                node.films++;
+                node.offer(filmId, likes, capacity);
+            }
+            node.addEnd(filmId);
+        }
+
+        private void remove(long filmId) {
+            Title title = titles.remove(filmId);
+            if (title == null) {
+                return;
+            }
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            node.films--;
+            path.add(node);
+            int pos = 0;
+            while (pos < title.key.length()) {
+                Node child = node.child(title.key.charAt(pos));
+                child.films--;
+                if (child.films == 0) {
+                    // Ниже остался только удаляемый фильм: ветка отрезается целиком
+                    node.removeChild(child);
+                    nodes -= countNodes(child);
+                    break;
+                }
+                node = child;
+                pos += node.label.length;
+                path.add(node);
+            }
+            if (pos == title.key.length()) {
+                node.removeEnd(filmId);
+            }
+            // Снизу вверх: пересчёт родителя берёт уже исправленные списки потомков
+            for (int i = path.size() - 1; i >= 0; i--) {
+                dropEntry(path.get(i), filmId);
+            }
+        }
+
+        private void setLikes(long filmId, long likes) {
+            Title title = titles.get(filmId);
+            if (title == null || title.likes == likes) {
+                return;
+            }
+            title.likes = likes;
+            List<Node> path = new ArrayList<>();
+            Node node = root;
+            int pos = 0;
+            while (true) {
+                int index = node.indexOf(filmId);
+                if (index >= 0) {
+                    node.removeEntry(index);
+                }
+                node.offer(filmId, likes, capacity);
+                path.add(node);
+                if (pos == title.key.length()) {
+                    break;
+                }
+                node = node.child(title.key.charAt(pos));
+                pos += node.label.length;
+            }
+            for (int i = path.size() - 1; i >= 0; i--) {
+                if (!path.get(i).isExact(topSize)) {
+                    refill(path.get(i));
+                }
+            }
+        }
+
+        // Узел, в поддереве которого все названия начинаются с key, или null
+        private Node find(String key) {
+            Node node = root;
+            int pos = 0;
+            while (pos < key.length()) {
+                Node child = node.child(key.charAt(pos));
+                if (child == null) {
+                    return null;
+                }
+                int common = commonLength(child.label, key, pos);
+                if (pos + common == key.length()) {
+                    return child;
+                }
+                if (common < child.label.length) {
+                    return null;
+                }
+                node = child;
+                pos += common;
+            }
+            return node;
+        }
+
+        private void dropEntry(Node node, long filmId) {
+            int index = node.indexOf(filmId);
+            if (index >= 0) {
+                node.removeEntry(index);
+                if (!node.isExact(topSize)) {
+                    refill(node);
+                }
+            }
+        }
+
+        // Делит ребро: новый узел получает первые length символов и список лучших целиком,
+        // так как его поддерево совпадает с поддеревом прежнего узла
+        private Node split(Node parent, Node child, int length) {
+            Node middle = new Node(Arrays.copyOf(child.label, length));
+            middle.films = child.films;
+            middle.ids = Arrays.copyOf(child.ids, child.ids.length);
+            middle.likes = Arrays.copyOf(child.likes, child.likes.length);
+            middle.size = child.size;
+            middle.outsideLikes = child.outsideLikes;
+            middle.outsideId = child.outsideId;
+            parent.replaceChild(child, middle);
+            child.label = Arrays.copyOfRange(child.label, length, child.label.length);
+            middle.addChild(child);
+            nodes++;
+            return middle;
+        }
+
+        // Пересчитывает список узла из названий, заканчивающихся в нём, и списков потомков;
+        // нужен, когда участники списка опустились ниже фильма, который в список не попал.
+        // Списки потомков точны для их поддеревьев, поэтому обход всего поддерева не нужен
+        private void refill(Node node) {
+            node.size = 0;
+            node.outsideLikes = -1;
+            for (int i = 0; i < node.endCount; i++) {
+                node.offer(node.ends[i], titles.get(node.ends[i]).likes, capacity);
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                Node child = node.children[i];
+                for (int j = 0; j < child.size; j++) {
+                    node.offer(child.ids[j], child.likes[j], capacity);
+                }
+                // Оценка потомка нужна, только если в его список вошли не все его фильмы
+                if (child.size < child.films && child.outsideLikes >= 0) {
+                    node.raiseOutside(child.outsideLikes, child.outsideId);
+                }
+            }
+        }
+
+        private static int countNodes(Node node) {
+            int count = 1;
+            for (int i = 0; i < node.childCount; i++) {
+                count += countNodes(node.children[i]);
+            }
+            return count;
+        }
+
+        private static int commonLength(char[] label, String key, int pos) {
+            int length = 0;
+            while (length < label.length && pos + length < key.length()
+                    && label[length] == key.charAt(pos + length)) {
+                length++;
+            }
+            return length;
+        }
+    }
+
+    private static final class Node {
+        private char[] label;
+        // Потомки упорядочены по первому символу ребра
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int childCount;
+        // Лучшие фильмы поддерева по порядку before
+        private long[] ids = NO_IDS;
+        private long[] likes = NO_IDS;
+        private int size;
+        // Верхняя оценка лучшего фильма поддерева вне списка; -1, если таких нет
+        private long outsideLikes = -1;
+        private long outsideId;
+        private int films;
+        // Фильмы, название которых заканчивается в этом узле
+        private long[] ends = NO_IDS;
+        private int endCount;
+
+        private Node(char[] label) {
+            this.label = label;
+        }
+
+        private Node child(char key) {
+            int index = Arrays.binarySearch(keys, 0, childCount, key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private void addChild(Node child) {
+            int index = -Arrays.binarySearch(keys, 0, childCount, child.label[0]) - 1;
+            if (childCount == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(2, childCount * 2));
+                children = Arrays.copyOf(children, keys.length);
+            }
+            System.arraycopy(keys, index, keys, index + 1, childCount - index);
+            System.arraycopy(children, index, children, index + 1, childCount - index);
+            keys[index] = child.label[0];
+            children[index] = child;
+            childCount++;
+        }
+
+        private void replaceChild(Node child, Node replacement) {
+            children[Arrays.binarySearch(keys, 0, childCount, child.label[0])] = replacement;
+        }
+
+        private void removeChild(Node child) {
+            int index = Arrays.binarySearch(keys, 0, childCount, child.label[0]);
+            System.arraycopy(keys, index + 1, keys, index, childCount - index - 1);
+            System.arraycopy(children, index + 1, children, index, childCount - index - 1);
+            children[--childCount] = null;
+        }
+
+        private void addEnd(long filmId) {
+            if (endCount == ends.length) {
+                ends = Arrays.copyOf(ends, Math.max(1, endCount * 2));
+            }
+            ends[endCount++] = filmId;
+        }
+
+        private void removeEnd(long filmId) {
+            for (int i = 0; i < endCount; i++) {
+                if (ends[i] == filmId) {
+                    ends[i] = ends[--endCount];
+                    return;
+                }
+            }
+        }
+
+        private int indexOf(long filmId) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == filmId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removeEntry(int index) {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(likes, index + 1, likes, index, size - index - 1);
+            size--;
+        }
+
+        // Вставляет фильм в список; вытесненный или не попавший фильм поднимает оценку снаружи
+        private void offer(long filmId, long filmLikes, int capacity) {
+            if (size == capacity) {
+                if (!before(filmLikes, filmId, likes[size - 1], ids[size - 1])) {
+                    raiseOutside(filmLikes, filmId);
+                    return;
+                }
+                raiseOutside(likes[size - 1], ids[size - 1]);
+                size--;
+            }
+            if (size == ids.length) {
+                int grown = Math.min(capacity, Math.max(1, size * 2));
+                ids = Arrays.copyOf(ids, grown);
+                likes = Arrays.copyOf(likes, grown);
+            }
+            int index = size;
+            while (index > 0 && before(filmLikes, filmId, likes[index - 1], ids[index - 1])) {
+                ids[index] = ids[index - 1];
+                likes[index] = likes[index - 1];
+                index--;
+            }
+            ids[index] = filmId;
+            likes[index] = filmLikes;
+            size++;
+        }
+
+        private void raiseOutside(long filmLikes, long filmId) {
+            if (outsideLikes < 0 || before(filmLikes, filmId, outsideLikes, outsideId)) {
+                outsideLikes = filmLikes;
+                outsideId = filmId;
+            }
+        }
+
+        // Первые topSize элементов списка гарантированно лучше любого фильма снаружи
+        private boolean isExact(int topSize) {
+            if (outsideLikes < 0 || films == 0) {
+                return true;
+            }
+            int last = Math.min(topSize, films) - 1;
+            return last < size && before(likes[last], ids[last], outsideLikes, outsideId);
+        }
+    }
+
+    private static final class Title {
+        private final String key;
+        private long likes;
+
+        private Title(String key, long likes) {
+            this.key = key;
+            this.likes = likes;
+        }
+    }
+
+    private enum ChangeType {
+        PUT, REMOVE, LIKES
+    }
+
+    private record Change(ChangeType type, long filmId, String key, long likes) {
+        private void applyTo(Trie target) {
+            switch (type) {
+                case PUT -> target.put(filmId, key);
+                case REMOVE -> target.remove(filmId);
+                case LIKES -> target.setLikes(filmId, likes);
+            }
+        }
+    }
+
+    public record Stats(boolean ready, int films, int nodes, long lastRebuildMillis) {
+    }
+}
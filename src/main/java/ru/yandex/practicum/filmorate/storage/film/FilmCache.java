@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+// Read-through кэш гидрированных фильмов перед FilmStorage: LRU по размеру плюс TTL.
+// Возвращаемые фильмы общие для всех читателей, изменять их нельзя
+@Component
+public class FilmCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final Object lock = new Object();
+    private final LinkedHashMap<Long, CachedFilm> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Растёт при каждой инвалидации. Загрузка, начавшаяся до инвалидации, не кладёт
+    // результат в кэш, поэтому устаревший фильм не может вернуться после записи
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public FilmCache(@Value("${filmorate.film-cache.max-size:10000}") int maxSize,
+                     @Value("${filmorate.film-cache.ttl-seconds:300}") long ttlSeconds) {
+        this(maxSize, ttlSeconds * 1_000_000_000L, System::nanoTime);
+    }
+
+    public FilmCache(int maxSize, long ttlNanos, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlNanos;
+        this.nanoClock = nanoClock;
+    }
+
+    public Film get(long filmId, LongFunction<Film> loader) {
+        long loadEpoch;
+        synchronized (lock) {
+            Film cached = lookup(filmId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            loadEpoch = epoch;
+        }
+
+        Film film = loader.apply(filmId);
+        if (film != null) {
+            synchronized (lock) {
+                store(loadEpoch, film);
+            }
+        }
+        return film;
+    }
+
+    // Фильмы в порядке ids; промахи догружаются одним вызовом batchLoader
+    public List<Film> getAll(List<Long> ids, Function<List<Long>, List<Film>> batchLoader) {
+        Map<Long, Film> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadEpoch;
+        synchronized (lock) {
+            for (Long id : ids) {
+                Film cached = lookup(id);
+                if (cached != null) {
+                    hits.increment();
+                    found.put(id, cached);
+                } else {
+                    misses.increment();
+                    missing.add(id);
+                }
+            }
+            loadEpoch = epoch;
+        }
+
+        if (!missing.isEmpty()) {
+            List<Film> loaded = batchLoader.apply(missing);
+            synchronized (lock) {
+                for (Film film : loaded) {
+                    found.put(film.getId(), film);
+                    store(loadEpoch, film);
+                }
+            }
+        }
+
+        List<Film> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Film film = found.get(id);
+            if (film != null) {
+                result.add(film);
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(long filmId) {
+        synchronized (lock) {
+            epoch++;
+            entries.remove(filmId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            epoch++;
+            entries.clear();
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(entries.size(), maxSize, hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    private Film lookup(long filmId) {
+        CachedFilm cached = entries.get(filmId);
+        if (cached == null) {
+            return null;
+        }
+        if (nanoClock.getAsLong() - cached.loadedAt() > ttlNanos) {
+            entries.remove(filmId);
+            evictions.increment();
+            return null;
+        }
+        return cached.film();
+    }
+
+    private void store(long loadEpoch, Film film) {
+        if (loadEpoch != epoch || maxSize <= 0) {
+            return;
+        }
+        entries.put(film.getId(), new CachedFilm(film, nanoClock.getAsLong()));
+        if (entries.size() > maxSize) {
+            Iterator<Long> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private record CachedFilm(Film film, long loadedAt) {
+    }
+
+    public record Stats(int size, int maxSize, long hits, long misses, long evictions) {
+    }
+}
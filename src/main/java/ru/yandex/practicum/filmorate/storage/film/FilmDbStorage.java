@@ -1,24 +1,39 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementCreator;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.storage.LiveIdFilter;
+import ru.yandex.practicum.filmorate.util.TextTokenizer;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
@@ -26,14 +41,56 @@ import java.util.stream.Collectors;
 @Qualifier("dbFilmStorage")
 public class FilmDbStorage implements FilmStorage {
 
+    // Строк в одном многострочном INSERT при пакетном добавлении фильмов
+    private static final int BATCH_INSERT_ROWS = 500;
+    // Сколько строк драйвер держит в памяти при потоковом обходе таблицы
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<Film> filmRowMapper;
     private final RowMapper<Genre> genreRowMapper;
+    // ID живых фильмов: запросы к несуществующим отсекаются до SQL
+    private final LiveIdFilter filmIds = new LiveIdFilter("films");
+    private final boolean idFilterEnabled;
 
+    // Без фильтра ID: для хранилищ, созданных вручную, например в замерах
     public FilmDbStorage(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, false);
+    }
+
+    // Фильтр ID верен, только пока все вставки идут через это хранилище. Если в ту же БД
+    // пишут другие экземпляры приложения или внешние процессы, фильтр нужно выключить
+    @Autowired
+    public FilmDbStorage(JdbcTemplate jdbcTemplate,
+                         @Value("${filmorate.id-filter.enabled:true}") boolean idFilterEnabled) {
         this.jdbcTemplate = jdbcTemplate;
         this.filmRowMapper = createFilmRowMapper();
         this.genreRowMapper = createGenreRowMapper();
+        this.idFilterEnabled = idFilterEnabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIdFilter() {
+        if (!idFilterEnabled) {
+            return;
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Long.class);
+        filmIds.rebuild(count != null ? count : 0, consumer ->
+                jdbcTemplate.query("SELECT film_id FROM films", ps -> ps.setFetchSize(STREAM_FETCH_SIZE), rs -> {
+                    consumer.accept(rs.getLong(1));
+                }));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.id-filter.check-interval-ms:60000}",
+            initialDelayString = "${filmorate.id-filter.check-interval-ms:60000}")
+    public void rebuildIdFilterIfNeeded() {
+        if (filmIds.needsRebuild()) {
+            rebuildIdFilter();
+        }
+    }
+
+    public LiveIdFilter.Stats getIdFilterStats() {
+        return filmIds.getStats();
     }
 
     private RowMapper<Film> createFilmRowMapper() {
@@ -78,8 +135,57 @@ public class FilmDbStorage implements FilmStorage {
         return films;
     }
 
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        // Keyset-пагинация: страница читается по первичному ключу без OFFSET
+        String filmsSql = "SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
+                "WHERE f.film_id > ? " +
+                "ORDER BY f.film_id " +
+                "LIMIT ?";
+        List<Film> films = jdbcTemplate.query(filmsSql, filmRowMapper, afterId, limit);
+
+        if (!films.isEmpty()) {
+            loadGenresForFilms(films);
+        }
+
+        return films;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllFilms(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+        String filmsSql = "SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
+                "ORDER BY f.film_id";
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        List<Film> chunkView = Collections.unmodifiableList(chunk);
+
+        // Курсор только вперёд (по умолчанию) с fetch size: драйвер держит в памяти не больше одной порции строк.
+        // SQL передаётся строкой, чтобы запрос попадал в метрики под своим текстом
+        jdbcTemplate.query(filmsSql, ps -> ps.setFetchSize(chunkSize), rs -> {
+            chunk.add(filmRowMapper.mapRow(rs, chunk.size()));
+            if (chunk.size() == chunkSize) {
+                emitChunk(chunk, chunkView, chunkConsumer);
+            }
+        });
+
+        if (!chunk.isEmpty()) {
+            emitChunk(chunk, chunkView, chunkConsumer);
+        }
+    }
+
+    private void emitChunk(List<Film> chunk, List<Film> chunkView, Consumer<List<Film>> chunkConsumer) {
+        loadGenresForFilms(chunk);
+        chunkConsumer.accept(chunkView);
+        chunk.clear();
+    }
+
     @Override
     public Film getFilmById(long id) {
+        if (!filmIds.mightContain(id)) {
+            return null;
+        }
         String filmSql = "SELECT f.*, m.rating_name FROM films f " +
                 "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
                 "WHERE f.film_id = ?";
@@ -88,20 +194,48 @@ public class FilmDbStorage implements FilmStorage {
 
         if (film != null) {
             loadGenresForFilms(Collections.singletonList(film));
+        } else {
+            filmIds.recordFalsePositive();
         }
 
         return film;
     }
 
+    @Override
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String inClause = ids.stream()
+                .map(id -> "?")
+                .collect(Collectors.joining(","));
+
+        String filmsSql = "SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
+                "WHERE f.film_id IN (" + inClause + ")";
+        Map<Long, Film> filmsById = jdbcTemplate.query(filmsSql, filmRowMapper, ids.toArray()).stream()
+                .collect(Collectors.toMap(Film::getId, film -> film));
+
+        // Сохраняем порядок, в котором были переданы ID
+        List<Film> films = ids.stream()
+                .map(filmsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        if (!films.isEmpty()) {
+            loadGenresForFilms(films);
+        }
+
+        return films;
+    }
+
     @Override
     public List<Film> getPopularFilms(int count) {
-        String filmsSql = "SELECT f.*, m.rating_name, " +
-                "COUNT(l.user_id) as likes_count " +
-                "FROM films f " +
-                "LEFT JOIN likes l ON f.film_id = l.film_id " +
+        // Сортировка по материализованному счётчику идёт по индексу idx_films_likes_count
+        String filmsSql = "SELECT f.*, m.rating_name FROM films f " +
                 "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
-                "GROUP BY f.film_id, m.rating_name " +
-                "ORDER BY likes_count DESC " +
+                "ORDER BY f.likes_count DESC, f.film_id " +
                 "LIMIT ?";
 
         List<Film> films = jdbcTemplate.query(filmsSql, filmRowMapper, count);
@@ -113,6 +247,167 @@ public class FilmDbStorage implements FilmStorage {
         return films;
     }
 
+    @Override
+    public List<Film> getPopularFilms(int count, PopularFilmsFilter filter) {
+        // Текст запроса зависит только от набора заданных полей: не больше восьми вариантов
+        StringBuilder sql = new StringBuilder("SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (filter.getMpaId() != null) {
+            sql.append(" AND f.mpa_rating_id = ?");
+            params.add(filter.getMpaId());
+        }
+        if (filter.getYear() != null) {
+            // Диапазон дат, а не EXTRACT(YEAR ...), чтобы работал индекс по release_date
+            sql.append(" AND f.release_date >= ? AND f.release_date < ?");
+            params.add(LocalDate.of(filter.getYear(), 1, 1));
+            params.add(LocalDate.of(filter.getYear() + 1, 1, 1));
+        }
+        if (filter.getGenreId() != null) {
+            sql.append(" AND EXISTS (SELECT 1 FROM film_genres fg WHERE fg.film_id = f.film_id AND fg.genre_id = ?)");
+            params.add(filter.getGenreId());
+        }
+        sql.append(" ORDER BY f.likes_count DESC, f.film_id LIMIT ?");
+        params.add(count);
+
+        List<Film> films = jdbcTemplate.query(sql.toString(), filmRowMapper, params.toArray());
+        if (!films.isEmpty()) {
+            loadGenresForFilms(films);
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> searchFilms(List<String> terms, int limit) {
+        if (terms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        // Запасной путь без индекса: подстрока вместо целого слова и полный просмотр таблицы.
+        // Слова состоят только из букв и цифр, поэтому экранировать % и _ не нужно
+        StringBuilder sql = new StringBuilder("SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        for (String term : terms) {
+            sql.append(" AND (REPLACE(LOWER(f.name), 'ё', 'е') LIKE ?" +
+                    " OR REPLACE(LOWER(f.description), 'ё', 'е') LIKE ?)");
+            params.add("%" + term + "%");
+            params.add("%" + term + "%");
+        }
+        sql.append(" ORDER BY f.likes_count DESC, f.film_id LIMIT ?");
+        params.add(limit);
+
+        List<Film> films = jdbcTemplate.query(sql.toString(), filmRowMapper, params.toArray());
+        if (!films.isEmpty()) {
+            loadGenresForFilms(films);
+        }
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilmsByNamePrefix(String prefix, int limit) {
+        String pattern = TextTokenizer.normalize(prefix)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        String sql = "SELECT f.*, m.rating_name FROM films f " +
+                "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id " +
+                "WHERE REPLACE(LOWER(TRIM(f.name)), 'ё', 'е') LIKE ? ESCAPE '\\' " +
+                "ORDER BY f.likes_count DESC, f.film_id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, filmRowMapper, pattern, limit);
+        if (!films.isEmpty()) {
+            loadGenresForFilms(films);
+        }
+        return films;
+    }
+
+    @Override
+    public void streamFilmFacets(Consumer<FilmFacets> consumer) {
+        String sql = "SELECT f.film_id, f.release_date, f.mpa_rating_id, fg.genre_id FROM films f " +
+                "LEFT JOIN film_genres fg ON fg.film_id = f.film_id " +
+                "ORDER BY f.film_id, fg.genre_id";
+        jdbcTemplate.query(sql, ps -> ps.setFetchSize(STREAM_FETCH_SIZE), rs -> {
+            // Строки одного фильма идут подряд, по строке на жанр
+            long filmId = 0;
+            int year = 0;
+            long mpaId = 0;
+            long[] genreIds = new long[4];
+            int genres = 0;
+            while (rs.next()) {
+                long rowFilmId = rs.getLong(1);
+                if (rowFilmId != filmId) {
+                    if (filmId != 0) {
+                        consumer.accept(new FilmFacets(filmId, year, mpaId, Arrays.copyOf(genreIds, genres)));
+                    }
+                    filmId = rowFilmId;
+                    java.sql.Date releaseDate = rs.getDate(2);
+                    year = releaseDate != null ? releaseDate.toLocalDate().getYear() : 0;
+                    mpaId = rs.getLong(3);
+                    genres = 0;
+                }
+                long genreId = rs.getLong(4);
+                if (!rs.wasNull()) {
+                    if (genres == genreIds.length) {
+                        genreIds = Arrays.copyOf(genreIds, genres * 2);
+                    }
+                    genreIds[genres++] = genreId;
+                }
+            }
+            if (filmId != 0) {
+                consumer.accept(new FilmFacets(filmId, year, mpaId, Arrays.copyOf(genreIds, genres)));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        return jdbcTemplate.query("SELECT film_id, likes_count FROM films", rs -> {
+            Map<Long, Long> result = new HashMap<>();
+            while (rs.next()) {
+                result.put(rs.getLong("film_id"), rs.getLong("likes_count"));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void streamLikes(LikeVisitor visitor) {
+        // Порядок совпадает с уникальным индексом (user_id, film_id), сортировка не нужна
+        String sql = "SELECT user_id, film_id FROM likes ORDER BY user_id, film_id";
+        jdbcTemplate.query(sql, ps -> ps.setFetchSize(STREAM_FETCH_SIZE), rs -> {
+            visitor.accept(rs.getLong(1), rs.getLong(2));
+        });
+    }
+
+    @Override
+    public void streamLikesSince(long sinceMillis, TimedLikeVisitor visitor) {
+        String sql = "SELECT film_id, user_id, created_at FROM likes WHERE created_at >= ?";
+        jdbcTemplate.query(sql, ps -> {
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setTimestamp(1, new Timestamp(sinceMillis));
+        }, rs -> {
+            visitor.accept(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).getTime());
+        });
+    }
+
+    // Пересчитывает likes_count по строкам likes, возвращает число исправленных фильмов
+    public int reconcileLikeCounts() {
+        String sql = "UPDATE films f SET likes_count = " +
+                "(SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id) " +
+                "WHERE likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)";
+        return jdbcTemplate.update(sql);
+    }
+
+    // ID фильмов, у которых likes_count расходится с количеством строк в likes
+    public List<Long> findLikeCountMismatches() {
+        String sql = "SELECT f.film_id FROM films f " +
+                "LEFT JOIN (SELECT film_id, COUNT(*) AS cnt FROM likes GROUP BY film_id) l " +
+                "ON f.film_id = l.film_id " +
+                "WHERE f.likes_count <> COALESCE(l.cnt, 0) " +
+                "ORDER BY f.film_id";
+        return jdbcTemplate.queryForList(sql, Long.class);
+    }
+
     private void loadGenresForFilms(List<Film> films) {
         List<Long> filmIds = films.stream()
                 .map(Film::getId)
@@ -150,37 +445,37 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
-    private void saveFilmGenres(long filmId, Set<Genre> genres) {
-        jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", filmId);
-
-        if (genres == null || genres.isEmpty()) {
-            return;
+    // Пишется только разница с текущими строками, вставки и удаления — пакетами.
+    // Если жанры не изменились, в film_genres не уходит ни одной записи.
+    // У нового фильма строк ещё нет, поэтому чтение пропускается
+    private void saveFilmGenres(long filmId, Set<Genre> genres, boolean newFilm) {
+        Set<Long> target = new TreeSet<>();
+        if (genres != null) {
+            genres.stream().filter(Objects::nonNull).forEach(genre -> target.add(genre.getId()));
         }
+        Set<Long> current = newFilm ? Set.of() : new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genres WHERE film_id = ?", Long.class, filmId));
 
-        List<Genre> sortedGenres = genres.stream()
-                .filter(Objects::nonNull)
-                .sorted(Comparator.comparing(Genre::getId))
-                .toList();
-
-        String insertGenreSql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
-
-        jdbcTemplate.batchUpdate(insertGenreSql, new BatchPreparedStatementSetter() {
-            @Override
-            public void setValues(PreparedStatement ps, int i) throws SQLException {
-                Genre genre = sortedGenres.get(i);
-                ps.setLong(1, filmId);
-                ps.setLong(2, genre.getId());
-            }
+        List<Long> toDelete = current.stream().filter(id -> !target.contains(id)).toList();
+        List<Long> toInsert = target.stream().filter(id -> !current.contains(id)).toList();
+        batchFilmGenres("DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?", filmId, toDelete);
+        batchFilmGenres("INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)", filmId, toInsert);
+    }
 
-            @Override
-            public int getBatchSize() {
-                return sortedGenres.size();
-            }
+    private void batchFilmGenres(String sql, long filmId, List<Long> genreIds) {
+        if (genreIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, genreIds, BATCH_INSERT_ROWS, (ps, genreId) -> {
+            ps.setLong(1, filmId);
+            ps.setLong(2, genreId);
         });
     }
 
     private void saveFilmLikes(long filmId, Set<Long> likes) {
         jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", filmId);
+        jdbcTemplate.update("UPDATE films SET likes_count = ? WHERE film_id = ?",
+                likes == null ? 0 : likes.size(), filmId);
         if (likes == null || likes.isEmpty()) return;
 
         String insertLikeSql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
@@ -201,31 +496,110 @@ public class FilmDbStorage implements FilmStorage {
         });
     }
 
+    // Запись фильма — одна транзакция из 1–2 запросов: INSERT и пакет жанров, если они есть.
+    // Возвращается записанный фильм без повторного чтения; имена рейтинга и жанров
+    // берутся из переданных объектов, сервис подставляет их из справочников
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         String sql = "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
                 "VALUES (?, ?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        jdbcTemplate.update(new SqlStatementCreator(sql, (connection, insertSql) -> {
+            PreparedStatement ps = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, film.getName());
             ps.setString(2, film.getDescription());
             ps.setObject(3, film.getReleaseDate());
             ps.setInt(4, film.getDuration());
             ps.setObject(5, film.getMpa() != null ? film.getMpa().getId() : null);
             return ps;
-        }, keyHolder);
+        }), keyHolder);
 
         long generatedId = keyHolder.getKey().longValue();
         film.setId(generatedId);
+        filmIds.add(generatedId);
 
-        saveFilmGenres(generatedId, film.getGenres());
+        film.setGenres(normalizeGenres(film.getGenres()));
+        film.setLikes(new HashSet<>());
+        saveFilmGenres(generatedId, film.getGenres(), true);
 
-        return getFilmById(generatedId);
+        return film;
+    }
+
+    @Override
+    @Transactional
+    public List<Film> addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        // Фильмы вставляются многострочными INSERT по BATCH_INSERT_ROWS строк,
+        // ID всей порции приходят одним набором generated keys
+        for (int from = 0; from < films.size(); from += BATCH_INSERT_ROWS) {
+            insertFilmRows(films.subList(from, Math.min(from + BATCH_INSERT_ROWS, films.size())));
+        }
+
+        // Жанры всех фильмов пачки тоже многострочными INSERT
+        List<long[]> filmGenres = new ArrayList<>();
+        for (Film film : films) {
+            if (film.getGenres() == null) {
+                continue;
+            }
+            film.getGenres().stream()
+                    .filter(Objects::nonNull)
+                    .mapToLong(Genre::getId)
+                    .distinct()
+                    .sorted()
+                    .forEach(genreId -> filmGenres.add(new long[]{film.getId(), genreId}));
+        }
+        for (int from = 0; from < filmGenres.size(); from += BATCH_INSERT_ROWS) {
+            insertFilmGenreRows(filmGenres.subList(from, Math.min(from + BATCH_INSERT_ROWS, filmGenres.size())));
+        }
+
+        return films;
+    }
+
+    private void insertFilmRows(List<Film> rows) {
+        String sql = "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) VALUES " +
+                String.join(",", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?)"));
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.update(new SqlStatementCreator(sql, (connection, insertSql) -> {
+            PreparedStatement ps = connection.prepareStatement(insertSql, new String[]{"film_id"});
+            int param = 1;
+            for (Film film : rows) {
+                ps.setString(param++, film.getName());
+                ps.setString(param++, film.getDescription());
+                ps.setObject(param++, film.getReleaseDate());
+                ps.setInt(param++, film.getDuration());
+                ps.setObject(param++, film.getMpa() != null ? film.getMpa().getId() : null);
+            }
+            return ps;
+        }), keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < rows.size(); i++) {
+            rows.get(i).setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            filmIds.add(rows.get(i).getId());
+        }
+    }
+
+    private void insertFilmGenreRows(List<long[]> rows) {
+        String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES " +
+                String.join(",", Collections.nCopies(rows.size(), "(?, ?)"));
+        Object[] params = new Object[rows.size() * 2];
+        for (int i = 0; i < rows.size(); i++) {
+            params[2 * i] = rows.get(i)[0];
+            params[2 * i + 1] = rows.get(i)[1];
+        }
+        jdbcTemplate.update(sql, params);
     }
 
+    // 2–4 запроса в одной транзакции: UPDATE, чтение текущих жанров и пакеты их удаления и вставки,
+    // если набор изменился. Лайки в ответе не заполняются, как и при чтении фильма
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, duration = ?, mpa_rating_id = ? " +
                 "WHERE film_id = ?";
@@ -242,38 +616,208 @@ public class FilmDbStorage implements FilmStorage {
             throw new NotFoundException("Фильм с id " + film.getId() + " не найден");
         }
 
-        saveFilmGenres(film.getId(), film.getGenres());
+        film.setGenres(normalizeGenres(film.getGenres()));
+        film.setLikes(new HashSet<>());
+        saveFilmGenres(film.getId(), film.getGenres(), false);
 
-        return getFilmById(film.getId());
+        return film;
     }
 
+    // 2 запроса в одной транзакции: жанры фильма и DELETE, который сам отдаёт удалённую строку.
+    // Лайки и жанры удаляет каскад внешних ключей
     @Override
+    @Transactional
     public Film deleteFilm(long id) {
-        Film film = getFilmById(id);
-        if (film != null) {
-            jdbcTemplate.update("DELETE FROM likes WHERE film_id = ?", id);
-            jdbcTemplate.update("DELETE FROM film_genres WHERE film_id = ?", id);
-            jdbcTemplate.update("DELETE FROM films WHERE film_id = ?", id);
+        if (!filmIds.mightContain(id)) {
+            return null;
         }
+        List<Genre> genres = jdbcTemplate.query("SELECT g.genre_id, g.genre_name FROM film_genres fg " +
+                "JOIN genres g ON fg.genre_id = g.genre_id WHERE fg.film_id = ? ORDER BY g.genre_id",
+                genreRowMapper, id);
+        Film film = jdbcTemplate.query("SELECT f.*, m.rating_name " +
+                        "FROM OLD TABLE (DELETE FROM films WHERE film_id = ?) f " +
+                        "LEFT JOIN mpa_ratings m ON f.mpa_rating_id = m.rating_id", filmRowMapper, id)
+                .stream().findFirst().orElse(null);
+
+        if (film == null) {
+            filmIds.recordFalsePositive();
+            return null;
+        }
+        film.setGenres(new LinkedHashSet<>(genres));
+        filmIds.remove(id);
         return film;
     }
 
+    // Жанры в том же виде, в каком их отдаёт чтение: по возрастанию ID, без повторов
+    private static Set<Genre> normalizeGenres(Set<Genre> genres) {
+        Set<Genre> normalized = new LinkedHashSet<>();
+        if (genres != null) {
+            genres.stream()
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingLong(Genre::getId))
+                    .forEach(normalized::add);
+        }
+        return normalized;
+    }
+
+    @Override
+    public Set<Long> findExistingFilmIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        String inClause = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT film_id FROM films WHERE film_id IN (" + inClause + ")";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Long.class, ids.toArray()));
+    }
+
     @Override
+    public boolean filmExists(long id) {
+        return filmIds.mightContain(id) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM films WHERE film_id = ?)", Boolean.class, id));
+    }
+
+    // Вставка идёт только при существующих фильме и пользователе, поэтому на успешном пути
+    // два запроса: вставка и счётчик. Кого не хватило, выясняется отдельно и только при промахе
+    @Override
+    @Transactional
     public void addLike(long filmId, long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
+        requireKnownFilm(filmId);
+        String sql = "INSERT INTO likes (film_id, user_id) " +
+                "SELECT f.film_id, u.user_id FROM films f JOIN users u ON u.user_id = ? WHERE f.film_id = ?";
+        int inserted;
         try {
-            jdbcTemplate.update(sql, filmId, userId);
+            inserted = jdbcTemplate.update(sql, userId, filmId);
         } catch (DataIntegrityViolationException e) {
             throw new ValidationException("Пользователь уже поставил лайк этому фильму");
         }
+        if (inserted == 0) {
+            requireLikeTargets(filmId, userId);
+            // Обе строки нашлись уже после вставки: её не было видно параллельной транзакции.
+            // Счётчик без строки лайка не увеличивается
+            throw new NotFoundException("Фильм с ID " + filmId + " или пользователь с ID " + userId + " не найден");
+        }
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?", filmId);
     }
 
     @Override
+    @Transactional
     public void removeLike(long filmId, long userId) {
+        requireKnownFilm(filmId);
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
         int rowsAffected = jdbcTemplate.update(sql, filmId, userId);
         if (rowsAffected == 0) {
+            requireLikeTargets(filmId, userId);
             throw new NotFoundException("Лайк не найден");
         }
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE film_id = ?", filmId);
+    }
+
+    private void requireKnownFilm(long filmId) {
+        if (!filmIds.mightContain(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+    }
+
+    // Один запрос на обе проверки; вызывается, когда запись лайка не затронула ни одной строки
+    private void requireLikeTargets(long filmId, long userId) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM films WHERE film_id = ?) AS film_found, " +
+                "EXISTS (SELECT 1 FROM users WHERE user_id = ?) AS user_found";
+        jdbcTemplate.query(sql, rs -> {
+            if (!rs.getBoolean("film_found")) {
+                throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+            }
+            if (!rs.getBoolean("user_found")) {
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+        }, filmId, userId);
+    }
+
+    @Override
+    @Transactional
+    public boolean[] applyLikes(List<LikeBatchItem> items) {
+        if (items.isEmpty()) {
+            return new boolean[0];
+        }
+
+        // Текущее состояние всех пар пакета одним запросом
+        Set<LikeKey> keys = new LinkedHashSet<>();
+        for (LikeBatchItem item : items) {
+            keys.add(new LikeKey(item.getFilmId(), item.getUserId()));
+        }
+        Set<LikeKey> initiallyLiked = findExistingLikes(keys);
+
+        // Операции проигрываются по порядку в памяти, в БД уходит только итоговое состояние пары
+        Map<LikeKey, Boolean> finalState = new HashMap<>();
+        boolean[] changed = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItem item = items.get(i);
+            LikeKey key = new LikeKey(item.getFilmId(), item.getUserId());
+            boolean liked = finalState.getOrDefault(key, initiallyLiked.contains(key));
+            boolean target = item.getOp() == LikeOperation.ADD;
+            changed[i] = liked != target;
+            finalState.put(key, target);
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Map.Entry<LikeKey, Boolean> entry : finalState.entrySet()) {
+            LikeKey key = entry.getKey();
+            boolean liked = initiallyLiked.contains(key);
+            if (entry.getValue() && !liked) {
+                inserts.add(new Object[]{key.filmId(), key.userId(), key.filmId(), key.userId()});
+            } else if (!entry.getValue() && liked) {
+                deletes.add(new Object[]{key.filmId(), key.userId()});
+            }
+        }
+
+        // Счётчики меняются по реально затронутым строкам, а не по прочитанному выше состоянию:
+        // параллельный запрос мог успеть поставить или снять тот же лайк
+        Map<Long, Long> deltas = new HashMap<>();
+        if (!inserts.isEmpty()) {
+            int[] inserted = jdbcTemplate.batchUpdate("INSERT INTO likes (film_id, user_id) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM likes WHERE film_id = ? AND user_id = ?)", inserts);
+            collectDeltas(inserts, inserted, 1, deltas);
+        }
+        if (!deletes.isEmpty()) {
+            int[] deleted = jdbcTemplate.batchUpdate("DELETE FROM likes WHERE film_id = ? AND user_id = ?", deletes);
+            collectDeltas(deletes, deleted, -1, deltas);
+        }
+
+        List<Object[]> counterUpdates = new ArrayList<>();
+        deltas.forEach((filmId, delta) -> {
+            if (delta != 0) {
+                counterUpdates.add(new Object[]{delta, filmId});
+            }
+        });
+        if (!counterUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE films SET likes_count = likes_count + ? WHERE film_id = ?",
+                    counterUpdates);
+        }
+
+        return changed;
+    }
+
+    private Set<LikeKey> findExistingLikes(Set<LikeKey> keys) {
+        String inClause = String.join(",", Collections.nCopies(keys.size(), "(?, ?)"));
+        Object[] params = new Object[keys.size() * 2];
+        int param = 0;
+        for (LikeKey key : keys) {
+            params[param++] = key.filmId();
+            params[param++] = key.userId();
+        }
+        String sql = "SELECT film_id, user_id FROM likes WHERE (film_id, user_id) IN (" + inClause + ")";
+        return new HashSet<>(jdbcTemplate.query(sql,
+                (rs, rowNum) -> new LikeKey(rs.getLong("film_id"), rs.getLong("user_id")), params));
+    }
+
+    private void collectDeltas(List<Object[]> rows, int[] affected, long sign, Map<Long, Long> deltas) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (affected[i] > 0) {
+                deltas.merge((Long) rows.get(i)[0], sign, Long::sum);
+            }
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
     }
-}
\ No newline at end of file
+}
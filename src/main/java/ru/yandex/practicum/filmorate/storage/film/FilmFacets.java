@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.Arrays;
+
+// Признаки фильма, по которым фильтруется популярность: год выпуска, рейтинг MPA
+// (0, если не задан) и отсортированные ID жанров
+public record FilmFacets(long filmId, int year, long mpaId, long[] genreIds) {
+
+    public static FilmFacets of(Film film) {
+        long[] genreIds = film.getGenres() == null ? new long[0] : film.getGenres().stream()
+                .mapToLong(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray();
+        return new FilmFacets(film.getId(),
+                film.getReleaseDate() != null ? film.getReleaseDate().getYear() : 0,
+                film.getMpa() != null ? film.getMpa().getId() : 0,
+                genreIds);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FilmFacets other && filmId == other.filmId && year == other.year
+                && mpaId == other.mpaId && Arrays.equals(genreIds, other.genreIds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(filmId) + Arrays.hashCode(genreIds);
+    }
+}
@@ -0,0 +1,273 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+import ru.yandex.practicum.filmorate.util.SortedLongArrays;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Рекомендации фильмов по совместным лайкам (item-based). Для каждого фильма хранится,
+// сколько пользователей лайкнули его вместе с каждым другим фильмом. Кандидат получает
+// сумму косинусных близостей co(F, G) / sqrt(likes(F) * likes(G)) с лайкнутыми фильмами F.
+// Индекс меняется на каждом лайке и периодически пересобирается из таблицы likes.
+// Пары пользователя строятся только по первым maxPairedLikes его лайкам: иначе лайк
+// пользователя с тысячами лайков обходил бы их все, а матрица росла бы как квадрат их числа
+@Slf4j
+@Component
+public class FilmRecommendationIndex {
+
+    // Близость хранится в фиксированной точке, чтобы считать суммы в LongIntHashMap
+    private static final int SCORE_SCALE = 1 << 20;
+    // При таком числе опорных фильмов сумма близостей ещё помещается в int
+    private static final int MAX_SEED_FILMS_LIMIT = 2000;
+
+    private final FilmStorage filmStorage;
+    private final int maxSeedFilms;
+    private final int maxPairedLikes;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state;
+    // Изменения, пришедшие во время пересборки; после неё применяются к новому состоянию
+    private List<Change> changesDuringRebuild;
+    private volatile boolean ready;
+    private volatile long lastRebuildMillis;
+
+    public FilmRecommendationIndex(@Qualifier("dbFilmStorage") FilmStorage filmStorage,
+                                   @Value("${filmorate.recommendations.max-seed-films:500}") int maxSeedFilms,
+                                   @Value("${filmorate.recommendations.max-paired-likes:500}") int maxPairedLikes) {
+        if (maxSeedFilms <= 0 || maxSeedFilms > MAX_SEED_FILMS_LIMIT) {
+            throw new IllegalArgumentException("max-seed-films должен быть от 1 до " + MAX_SEED_FILMS_LIMIT);
+        }
+        if (maxPairedLikes <= 0) {
+            throw new IllegalArgumentException("max-paired-likes должен быть положительным");
+        }
+        this.filmStorage = filmStorage;
+        this.maxSeedFilms = maxSeedFilms;
+        this.maxPairedLikes = maxPairedLikes;
+        this.state = new State(maxPairedLikes);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.rebuild-interval-ms:3600000}",
+            initialDelayString = "${filmorate.recommendations.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // Новое состояние собирается без блокировки: чтение и запись лайков продолжаются
+        State rebuilt = new State(maxPairedLikes);
+        try {
+            filmStorage.streamLikes((userId, filmId) -> rebuilt.addLike(filmId, userId));
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            // Операции идемпотентны, поэтому уже попавшие в выборку изменения безопасно применить повторно
+            replayed = changesDuringRebuild.size();
+            changesDuringRebuild.forEach(change -> change.applyTo(rebuilt));
+            changesDuringRebuild = null;
+            state = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastRebuildMillis = System.currentTimeMillis() - start;
+        log.info("Индекс рекомендаций пересобран: пользователей {}, фильмов {}, повторено изменений {}, за {} мс",
+                rebuilt.userLikes.size(), rebuilt.coLikes.size(), replayed, lastRebuildMillis);
+    }
+
+    public void addLike(long filmId, long userId) {
+        record(new Change(ChangeType.ADD_LIKE, filmId, userId));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        record(new Change(ChangeType.REMOVE_LIKE, filmId, userId));
+    }
+
+    public void removeFilm(long filmId) {
+        record(new Change(ChangeType.REMOVE_FILM, filmId, 0));
+    }
+
+    // ID до limit рекомендованных фильмов по убыванию оценки или null, если индекс ещё не построен
+    public long[] recommend(long userId, int limit) {
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return null;
+            }
+            State current = state;
+            SortedLongSet liked = current.userLikes.get(userId);
+            if (liked == null || liked.size() == 0) {
+                return new long[0];
+            }
+
+            LongIntHashMap scores = new LongIntHashMap(256);
+            for (long seed : SortedLongArrays.sample(liked.toArray(), maxSeedFilms)) {
+                LongIntHashMap coLiked = current.coLikes.get(seed);
+                int seedLikes = current.likeCounts.get(seed);
+                if (coLiked == null || seedLikes <= 0) {
+                    continue;
+                }
+                coLiked.forEach((filmId, together) -> {
+                    int filmLikes = current.likeCounts.get(filmId);
+                    // Нулевые пары и удалённые фильмы остаются в карте до следующей пересборки
+                    if (together > 0 && filmLikes > 0 && !liked.contains(filmId)) {
+                        scores.add(filmId, (int) (SCORE_SCALE * together / Math.sqrt((double) seedLikes * filmLikes)));
+                    }
+                });
+            }
+            return scores.topKeys(limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Stats getStats() {
+        lock.readLock().lock();
+        try {
+            long pairs = 0;
+            for (LongIntHashMap coLiked : state.coLikes.values()) {
+                pairs += coLiked.size();
+            }
+            return new Stats(ready, state.userLikes.size(), state.coLikes.size(), pairs,
+                    state.pairedLikes.size(), lastRebuildMillis);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void record(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class State {
+        private final int maxPairedLikes;
+        private final Map<Long, SortedLongSet> userLikes = new HashMap<>();
+        // Лайки, участвующие в парах, для пользователей, у которых лайков больше maxPairedLikes;
+        // у остальных в парах участвуют все лайки из userLikes
+        private final Map<Long, SortedLongSet> pairedLikes = new HashMap<>();
+        private final Map<Long, LongIntHashMap> coLikes = new HashMap<>();
+        private final LongIntHashMap likeCounts = new LongIntHashMap(1024);
+
+        private State(int maxPairedLikes) {
+            this.maxPairedLikes = maxPairedLikes;
+        }
+
+        private void addLike(long filmId, long userId) {
+            SortedLongSet films = userLikes.computeIfAbsent(userId, id -> new SortedLongSet());
+            if (!films.add(filmId)) {
+                return;
+            }
+            likeCounts.add(filmId, 1);
+            SortedLongSet paired = pairedLikes.get(userId);
+            if (paired == null) {
+                if (films.size() <= maxPairedLikes) {
+                    changePairs(films, filmId, 1);
+                    return;
+                }
+                // Предел превышен впервые: в парах остаются уже учтённые лайки, новый в них не идёт
+                paired = new SortedLongSet();
+                for (int i = 0; i < films.size(); i++) {
+                    if (films.get(i) != filmId) {
+                        paired.add(films.get(i));
+                    }
+                }
+                pairedLikes.put(userId, paired);
+                return;
+            }
+            if (paired.size() < maxPairedLikes) {
+                paired.add(filmId);
+                changePairs(paired, filmId, 1);
+            }
+        }
+
+        private void removeLike(long filmId, long userId) {
+            SortedLongSet films = userLikes.get(userId);
+            if (films == null || !films.remove(filmId)) {
+                return;
+            }
+            likeCounts.add(filmId, -1);
+            SortedLongSet paired = pairedLikes.get(userId);
+            if (paired == null) {
+                changePairs(films, filmId, -1);
+            } else if (paired.remove(filmId)) {
+                changePairs(paired, filmId, -1);
+            }
+        }
+
+        private void removeFilm(long filmId) {
+            // Пары с другими фильмами отсекаются по нулевому счётчику лайков
+            coLikes.remove(filmId);
+            likeCounts.add(filmId, -likeCounts.get(filmId));
+        }
+
+        private void changePairs(SortedLongSet films, long filmId, int delta) {
+            LongIntHashMap coLiked = coLikes.computeIfAbsent(filmId, id -> new LongIntHashMap(16));
+            for (int i = 0; i < films.size(); i++) {
+                long other = films.get(i);
+                if (other != filmId) {
+                    coLiked.add(other, delta);
+                    coLikes.computeIfAbsent(other, id -> new LongIntHashMap(16)).add(filmId, delta);
+                }
+            }
+        }
+    }
+
+    private enum ChangeType {
+        ADD_LIKE, REMOVE_LIKE, REMOVE_FILM
+    }
+
+    private record Change(ChangeType type, long filmId, long userId) {
+        private void applyTo(State target) {
+            switch (type) {
+                case ADD_LIKE -> target.addLike(filmId, userId);
+                case REMOVE_LIKE -> target.removeLike(filmId, userId);
+                case REMOVE_FILM -> target.removeFilm(filmId);
+            }
+        }
+    }
+
+    public record Stats(boolean ready, int users, int films, long pairs, int cappedUsers, long lastRebuildMillis) {
+    }
+}
@@ -0,0 +1,285 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.util.TextTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Обратный индекс по словам названий и описаний фильмов. Для каждого слова хранится
+// отсортированный список ID фильмов с весом: вхождение в название считается за три,
+// в описание — за одно. Найденный фильм должен содержать все слова запроса, оценка —
+// сумма вес * idf по словам, умноженная на логарифм числа лайков
+@Slf4j
+@Component
+public class FilmSearchIndex {
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    // Фильмов в порции при пересборке; порции разбираются на слова параллельно
+    private static final int REBUILD_CHUNK_SIZE = 2000;
+    private static final int MAX_QUERY_TERMS = 10;
+
+    private static final Comparator<Hit> ORDER = Comparator
+            .comparingDouble(Hit::score).reversed()
+            .thenComparingLong(Hit::filmId);
+
+    private final FilmStorage filmStorage;
+    private final PopularFilmsIndex popularFilmsIndex;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state = new State();
+    // Изменения, пришедшие во время пересборки; после неё применяются к новому состоянию
+    private List<Change> changesDuringRebuild;
+    private volatile boolean ready;
+
+    public FilmSearchIndex(@Qualifier("dbFilmStorage") FilmStorage filmStorage,
+                           PopularFilmsIndex popularFilmsIndex) {
+        this.filmStorage = filmStorage;
+        this.popularFilmsIndex = popularFilmsIndex;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    // Пересборка сверяет индекс с БД и освобождает лишнюю ёмкость списков
+    @Scheduled(fixedDelayString = "${filmorate.search.rebuild-interval-ms:3600000}",
+            initialDelayString = "${filmorate.search.rebuild-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        State rebuilt = new State();
+        try {
+            // Чтение из БД последовательное, разбор текста идёт в общем пуле параллельно с ним
+            List<CompletableFuture<List<Change>>> parts = new ArrayList<>();
+            filmStorage.streamAllFilms(REBUILD_CHUNK_SIZE, chunk -> {
+                List<Film> films = new ArrayList<>(chunk);
+                parts.add(CompletableFuture.supplyAsync(() -> films.stream().map(Change::index).toList()));
+            });
+            // Порции идут по возрастанию ID, поэтому слияние только дописывает в конец списков
+            for (CompletableFuture<List<Change>> part : parts) {
+                part.join().forEach(change -> change.applyTo(rebuilt));
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Применение изменения идемпотентно, повтор уже учтённого в выборке безопасен
+            changesDuringRebuild.forEach(change -> change.applyTo(rebuilt));
+            changesDuringRebuild = null;
+            state = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Поисковый индекс пересобран: фильмов {}, слов {}, за {} мс",
+                rebuilt.termsByFilm.size(), rebuilt.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public void addFilm(Film film) {
+        record(Change.index(film));
+    }
+
+    public void updateFilm(Film film) {
+        record(Change.index(film));
+    }
+
+    public void removeFilm(long filmId) {
+        record(new Change(filmId, null));
+    }
+
+    // Слова запроса без повторов, не больше MAX_QUERY_TERMS
+    public static List<String> queryTerms(String query) {
+        return new ArrayList<>(new LinkedHashSet<>(TextTokenizer.tokenize(query))).stream()
+                .limit(MAX_QUERY_TERMS)
+                .toList();
+    }
+
+    // ID до limit найденных фильмов по убыванию оценки или null, если индекс ещё не построен
+    public List<Long> search(List<String> terms, int limit) {
+        if (!ready) {
+            return null;
+        }
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            State current = state;
+            List<Postings> lists = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                Postings list = current.postings.get(term);
+                if (list == null) {
+                    return new ArrayList<>();
+                }
+                lists.add(list);
+            }
+            // Обходим самый короткий список, по остальным ищем двоичным поиском
+            lists.sort(Comparator.comparingInt(list -> list.size));
+            double[] idf = new double[lists.size()];
+            for (int i = 0; i < idf.length; i++) {
+                idf[i] = Math.log(1 + (double) current.termsByFilm.size() / lists.get(i).size);
+            }
+
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, ORDER.reversed());
+            Postings driver = lists.get(0);
+            candidates:
+            for (int i = 0; i < driver.size; i++) {
+                long filmId = driver.filmIds[i];
+                double textScore = driver.weights[i] * idf[0];
+                for (int j = 1; j < lists.size(); j++) {
+                    int weight = lists.get(j).weight(filmId);
+                    if (weight == 0) {
+                        continue candidates;
+                    }
+                    textScore += weight * idf[j];
+                }
+                Hit hit = new Hit(textScore * Math.log(Math.E + popularFilmsIndex.getLikes(filmId)), filmId);
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (ORDER.compare(hit, best.peek()) < 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+
+            List<Hit> ranked = new ArrayList<>(best);
+            ranked.sort(ORDER);
+            return ranked.stream().map(Hit::filmId).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private void record(Change change) {
+        lock.writeLock().lock();
+        try {
+            change.applyTo(state);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static final class State {
+        private final Map<String, Postings> postings = new HashMap<>();
+        private final Map<Long, String[]> termsByFilm = new HashMap<>();
+    }
+
+    // Новые слова фильма или null, если фильм удалён
+    private record Change(long filmId, Map<String, Integer> weights) {
+
+        private static Change index(Film film) {
+            Map<String, Integer> weights = new HashMap<>();
+            for (String term : TextTokenizer.tokenize(film.getName())) {
+                weights.merge(term, NAME_WEIGHT, Integer::sum);
+            }
+            for (String term : TextTokenizer.tokenize(film.getDescription())) {
+                weights.merge(term, DESCRIPTION_WEIGHT, Integer::sum);
+            }
+            return new Change(film.getId(), weights);
+        }
+
+        private void applyTo(State target) {
+            String[] oldTerms = target.termsByFilm.remove(filmId);
+            if (oldTerms != null) {
+                for (String term : oldTerms) {
+                    Postings list = target.postings.get(term);
+                    list.remove(filmId);
+                    if (list.size == 0) {
+                        target.postings.remove(term);
+                    }
+                }
+            }
+            if (weights == null || weights.isEmpty()) {
+                return;
+            }
+            weights.forEach((term, weight) ->
+                    target.postings.computeIfAbsent(term, t -> new Postings()).put(filmId, weight));
+            target.termsByFilm.put(filmId, weights.keySet().toArray(new String[0]));
+        }
+    }
+
+    // Отсортированные ID фильмов с весами слова в параллельных массивах
+    private static final class Postings {
+        private long[] filmIds = new long[2];
+        private int[] weights = new int[2];
+        private int size;
+
+        private void put(long filmId, int weight) {
+            // Новые фильмы обычно получают наибольший ID и дописываются в конец
+            int index = size > 0 && filmIds[size - 1] < filmId
+                    ? -size - 1
+                    : Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (index >= 0) {
+                weights[index] = weight;
+                return;
+            }
+            index = -index - 1;
+            if (size == filmIds.length) {
+                filmIds = Arrays.copyOf(filmIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(filmIds, index, filmIds, index + 1, size - index);
+            System.arraycopy(weights, index, weights, index + 1, size - index);
+            filmIds[index] = filmId;
+            weights[index] = weight;
+            size++;
+        }
+
+        private void remove(long filmId) {
+            int index = Arrays.binarySearch(filmIds, 0, size, filmId);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(filmIds, index + 1, filmIds, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+        }
+
+        private int weight(long filmId) {
+            int index = Arrays.binarySearch(filmIds, 0, size, filmId);
+            return index >= 0 ? weights[index] : 0;
+        }
+    }
+
+    private record Hit(double score, long filmId) {
+    }
+}
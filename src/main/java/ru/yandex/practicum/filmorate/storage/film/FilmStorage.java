@@ -1,24 +1,82 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
 
     Film addFilm(Film film);
 
+    // Добавляет фильмы одной пачкой и проставляет им ID; возвращает те же объекты
+    List<Film> addFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     Film deleteFilm(long id);
 
     List<Film> getAllFilms();
 
+    List<Film> getFilms(long afterId, int limit);
+
+    // Отдаёт все фильмы по порядку ID порциями не больше chunkSize; порцию нельзя хранить после вызова
+    void streamAllFilms(int chunkSize, Consumer<List<Film>> chunkConsumer);
+
     Film getFilmById(long id);
 
+    List<Film> getFilmsByIds(List<Long> ids);
+
+    // ID из переданных, для которых фильм существует
+    Set<Long> findExistingFilmIds(Collection<Long> ids);
+
+    boolean filmExists(long id);
+
+    // NotFoundException с указанием, кого не нашлось: фильма, пользователя или самого лайка при снятии.
+    // Хранилище в памяти не знает пользователей и проверяет только фильм
     void addLike(long filmId, long userId);
 
     void removeLike(long filmId, long userId);
 
+    // Применяет операции по порядку; повторный лайк и снятие отсутствующего не ошибка.
+    // Элемент результата true, если операция изменила состояние лайка
+    boolean[] applyLikes(List<LikeBatchItem> items);
+
     List<Film> getPopularFilms(int count);
+
+    // Самые популярные фильмы среди подходящих под фильтр
+    List<Film> getPopularFilms(int count, PopularFilmsFilter filter);
+
+    // Фильмы, в названии или описании которых есть все слова, по убыванию популярности.
+    // Слова уже разобраны TextTokenizer; используется, пока поисковый индекс не построен
+    List<Film> searchFilms(List<String> terms, int limit);
+
+    // Самые популярные фильмы, название которых начинается с prefix без учёта регистра и «ё»
+    List<Film> getFilmsByNamePrefix(String prefix, int limit);
+
+    Map<Long, Long> getLikeCounts();
+
+    // Год, рейтинг и жанры всех фильмов по порядку ID для индекса популярности
+    void streamFilmFacets(Consumer<FilmFacets> consumer);
+
+    // Обходит все лайки по порядку (user_id, film_id), не загружая таблицу в память целиком
+    void streamLikes(LikeVisitor visitor);
+
+    // Обходит лайки, поставленные не раньше sinceMillis, одним потоковым проходом
+    void streamLikesSince(long sinceMillis, TimedLikeVisitor visitor);
+
+    @FunctionalInterface
+    interface LikeVisitor {
+        void accept(long userId, long filmId);
+    }
+
+    @FunctionalInterface
+    interface TimedLikeVisitor {
+        void accept(long filmId, long userId, long createdAtMillis);
+    }
 }
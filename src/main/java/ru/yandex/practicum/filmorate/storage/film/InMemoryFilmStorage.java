@@ -5,17 +5,28 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.util.TextTokenizer;
 
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+// Потокобезопасное хранилище фильмов в памяти: фильмы в ConcurrentHashMap, лайки каждого фильма
+// в своём конкурентном множестве со счётчиком LongAdder, без общей блокировки на запись
 @Slf4j
 @Component
 public class InMemoryFilmStorage implements FilmStorage {
-    private Map<Long, Film> films = new HashMap<>();
-    private Map<Long, Set<Long>> likes = new HashMap<>();
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    private final Map<Long, LongAdder> likeCounts = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
     private static final int MAX_DESCRIPTION_LENGTH = 200;
     private static final LocalDate MIN_DATE = LocalDate.of(1895, Month.DECEMBER, 28);
     private static final int MIN_TIME = 1;
@@ -50,7 +61,7 @@ public class InMemoryFilmStorage implements FilmStorage {
         }
 
         // Валидация длины описания
-        if (film.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+        if (film.getDescription() != null && film.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
             log.error("Превышена длина описания у фильма '{}': {} символов > {}",
                     film.getName(), film.getDescription().length(), MAX_DESCRIPTION_LENGTH);
             throw new ValidationException("Максимальная длина описания — 200 символов!");
@@ -64,64 +75,77 @@ public class InMemoryFilmStorage implements FilmStorage {
         }
 
         // Генерация ID и сохранение
-        film.setId(getNextId());
+        film.setId(lastId.incrementAndGet());
         log.debug("Фильму присвоен ID: {}", film.getId());
 
+        Set<Long> filmLikes = ConcurrentHashMap.newKeySet();
+        if (film.getLikes() != null) {
+            filmLikes.addAll(film.getLikes());
+        }
+        film.setLikes(filmLikes);
+        LongAdder counter = new LongAdder();
+        counter.add(filmLikes.size());
+        likeCounts.put(film.getId(), counter);
         films.put(film.getId(), film);
         log.info("Фильм успешно добавлен: ID {}, название '{}'", film.getId(), film.getName());
         return film;
     }
 
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        films.forEach(this::addFilm);
+        return films;
+    }
+
     @Override
     public Film updateFilm(Film film) {
         log.info("Попытка обновления фильма: {}", film.getName());
 
-        Film existingFilm = films.get(film.getId());
-        if (existingFilm == null) {
-            log.error("Фильм с ID {} не найден", film.getId());
-            throw new NotFoundException("Фильм не найден");
+        // Все поля проверяются до изменения: отклонённое обновление не оставляет фильм наполовину изменённым
+        if (film.getName() != null && film.getName().isBlank()) {
+            log.error("Пустое название при обновлении фильма ID: {}", film.getId());
+            throw new ValidationException("Название не может быть пустым");
         }
-
-        if (film.getName() != null) {
-            if (film.getName().isBlank()) {
-                log.error("Пустое название при обновлении фильма ID: {}", film.getId());
-                throw new ValidationException("Название не может быть пустым");
-            }
-            existingFilm.setName(film.getName());
+        if (film.getDescription() != null && film.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            log.error("Слишком длинное описание при обновлении");
+            throw new ValidationException("Описание слишком длинное");
         }
-
-        if (film.getDescription() != null) {
-            if (film.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
-                log.error("Слишком длинное описание при обновлении");
-                throw new ValidationException("Описание слишком длинное");
-            }
-            existingFilm.setDescription(film.getDescription());
+        if (film.getReleaseDate() != null && film.getReleaseDate().isBefore(MIN_DATE)) {
+            log.error("Некорректная дата релиза при обновлении");
+            throw new ValidationException("Дата релиза некорректна");
         }
-
-        if (film.getReleaseDate() != null) {
-            if (film.getReleaseDate().isBefore(MIN_DATE)) {
-                log.error("Некорректная дата релиза при обновлении");
-                throw new ValidationException("Дата релиза некорректна");
-            }
-            existingFilm.setReleaseDate(film.getReleaseDate());
+        if (film.getDuration() != null && film.getDuration() < MIN_TIME) {
+            log.error("Некорректная продолжительность при обновлении");
+            throw new ValidationException("Продолжительность некорректна");
         }
 
-        if (film.getDuration() != null) {
-            if (film.getDuration() < MIN_TIME) {
-                log.error("Некорректная продолжительность при обновлении");
-                throw new ValidationException("Продолжительность некорректна");
-            }
-            existingFilm.setDuration(film.getDuration());
+        // Читатели получают фильмы без блокировки, поэтому общий экземпляр не меняется:
+        // compute подменяет его новой копией целиком, параллельные обновления не смешиваются
+        Film updated = films.computeIfPresent(film.getId(), (id, existingFilm) -> {
+            Film copy = new Film();
+            copy.setId(id);
+            copy.setName(film.getName() != null ? film.getName() : existingFilm.getName());
+            copy.setDescription(film.getDescription() != null ? film.getDescription() : existingFilm.getDescription());
+            copy.setReleaseDate(film.getReleaseDate() != null ? film.getReleaseDate() : existingFilm.getReleaseDate());
+            copy.setDuration(film.getDuration() != null ? film.getDuration() : existingFilm.getDuration());
+            copy.setMpa(existingFilm.getMpa());
+            copy.setGenres(existingFilm.getGenres());
+            // Конкурентное множество лайков общее у всех версий фильма
+            copy.setLikes(existingFilm.getLikes());
+            return copy;
+        });
+        if (updated == null) {
+            log.error("Фильм с ID {} не найден", film.getId());
+            throw new NotFoundException("Фильм не найден");
         }
-
-        films.put(existingFilm.getId(), existingFilm);
         log.info("Фильм обновлен: {}", film.getName());
-        return existingFilm;
+        return updated;
     }
 
     @Override
     public Film deleteFilm(long id) {
         Film deletedFilm = films.remove(id);
+        likeCounts.remove(id);
         if (deletedFilm == null) {
             log.error("Фильм с ID {} не найден для удаления", id);
             throw new NotFoundException("Фильм не найден");
@@ -135,6 +159,26 @@ public class InMemoryFilmStorage implements FilmStorage {
         return new ArrayList<>(films.values());
     }
 
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingLong(Film::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamAllFilms(int chunkSize, Consumer<List<Film>> chunkConsumer) {
+        List<Film> sorted = films.values().stream()
+                .sorted(Comparator.comparingLong(Film::getId))
+                .collect(Collectors.toList());
+        for (int from = 0; from < sorted.size(); from += chunkSize) {
+            chunkConsumer.accept(Collections.unmodifiableList(
+                    sorted.subList(from, Math.min(from + chunkSize, sorted.size()))));
+        }
+    }
+
     @Override
     public Film getFilmById(long id) {
         Film film = films.get(id);
@@ -145,46 +189,181 @@ public class InMemoryFilmStorage implements FilmStorage {
     }
 
     @Override
-    public void addLike(long filmId, long userId) {
-        log.info("Попытка добавления лайка фильму ID {} от пользователя ID {}", filmId, userId);
+    public List<Film> getFilmsByIds(List<Long> ids) {
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
 
-        Film film = getFilmById(filmId);
-        film.getLikes().add(userId);
+    @Override
+    public Set<Long> findExistingFilmIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(films::containsKey)
+                .collect(Collectors.toSet());
+    }
 
-        log.info("Лайк добавлен фильму ID {} от пользователя ID {}", filmId, userId);
+    @Override
+    public boolean filmExists(long id) {
+        return films.containsKey(id);
     }
 
     @Override
-    public void removeLike(long filmId, long userId) {
-        log.info("Попытка удаления лайка фильму ID {} от пользователя ID {}", filmId, userId);
+    public void addLike(long filmId, long userId) {
+        Film film = getFilmById(filmId);
+        if (film.getLikes().add(userId)) {
+            incrementLikes(filmId, 1);
+        }
+        log.debug("Лайк добавлен фильму ID {} от пользователя ID {}", filmId, userId);
+    }
 
+    @Override
+    public void removeLike(long filmId, long userId) {
         Film film = getFilmById(filmId);
         if (!film.getLikes().remove(userId)) {
             log.warn("Лайк от пользователя ID {} не найден у фильма ID {}", userId, filmId);
             throw new NotFoundException("Лайк не найден");
         }
+        incrementLikes(filmId, -1);
+        log.debug("Лайк удален фильму ID {} от пользователя ID {}", filmId, userId);
+    }
 
-        log.info("Лайк удален фильму ID {} от пользователя ID {}", filmId, userId);
+    @Override
+    public boolean[] applyLikes(List<LikeBatchItem> items) {
+        boolean[] changed = new boolean[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            LikeBatchItem item = items.get(i);
+            Set<Long> filmLikes = getFilmById(item.getFilmId()).getLikes();
+            if (item.getOp() == LikeOperation.ADD) {
+                changed[i] = filmLikes.add(item.getUserId());
+                if (changed[i]) {
+                    incrementLikes(item.getFilmId(), 1);
+                }
+            } else {
+                changed[i] = filmLikes.remove(item.getUserId());
+                if (changed[i]) {
+                    incrementLikes(item.getFilmId(), -1);
+                }
+            }
+        }
+        return changed;
     }
 
     @Override
     public List<Film> getPopularFilms(int count) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        // Куча на count элементов вместо сортировки всех фильмов: в корне худший из отобранных
+        Comparator<Map.Entry<Long, Long>> order = Comparator
+                .comparingLong((Map.Entry<Long, Long> entry) -> entry.getValue())
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Long, Long>> top = new PriorityQueue<>(count + 1, order);
+        for (Map.Entry<Long, LongAdder> counter : likeCounts.entrySet()) {
+            Map.Entry<Long, Long> entry = Map.entry(counter.getKey(), counter.getValue().sum());
+            if (top.size() < count) {
+                top.add(entry);
+            } else if (order.compare(entry, top.peek()) > 0) {
+                top.poll();
+                top.add(entry);
+            }
+        }
+
+        List<Map.Entry<Long, Long>> ranked = new ArrayList<>(top);
+        ranked.sort(order.reversed());
+        return ranked.stream()
+                .map(entry -> films.get(entry.getKey()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, PopularFilmsFilter filter) {
         return films.values().stream()
-                .sorted((f1, f2) -> {
-                    int likes1 = likes.getOrDefault(f1.getId(), Collections.emptySet()).size();
-                    int likes2 = likes.getOrDefault(f2.getId(), Collections.emptySet()).size();
-                    return Integer.compare(likes2, likes1);
-                })
-                .limit(count)
+                .filter(film -> matches(film, filter))
+                .sorted(Comparator.comparingLong((Film film) -> likeCount(film.getId())).reversed()
+                        .thenComparingLong(Film::getId))
+                .limit(Math.max(count, 0))
                 .collect(Collectors.toList());
     }
 
-    private long getNextId() {
-        long currentMaxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    @Override
+    public List<Film> searchFilms(List<String> terms, int limit) {
+        return films.values().stream()
+                .filter(film -> containsAll(film, terms))
+                .sorted(Comparator.comparingLong((Film film) -> likeCount(film.getId())).reversed()
+                        .thenComparingLong(Film::getId))
+                .limit(Math.max(limit, 0))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> getFilmsByNamePrefix(String prefix, int limit) {
+        String normalized = TextTokenizer.normalize(prefix);
+        return films.values().stream()
+                .filter(film -> film.getName() != null
+                        && TextTokenizer.normalize(film.getName().strip()).startsWith(normalized))
+                .sorted(Comparator.comparingLong((Film film) -> likeCount(film.getId())).reversed()
+                        .thenComparingLong(Film::getId))
+                .limit(Math.max(limit, 0))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamFilmFacets(Consumer<FilmFacets> consumer) {
+        films.values().stream()
+                .sorted(Comparator.comparingLong(Film::getId))
+                .forEach(film -> consumer.accept(FilmFacets.of(film)));
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts() {
+        Map<Long, Long> result = new HashMap<>();
+        likeCounts.forEach((filmId, counter) -> result.put(filmId, counter.sum()));
+        return result;
+    }
+
+    @Override
+    public void streamLikes(LikeVisitor visitor) {
+        List<long[]> likes = new ArrayList<>();
+        for (Film film : films.values()) {
+            for (Long userId : film.getLikes()) {
+                likes.add(new long[]{userId, film.getId()});
+            }
+        }
+        likes.sort(Comparator.<long[]>comparingLong(like -> like[0]).thenComparingLong(like -> like[1]));
+        for (long[] like : likes) {
+            visitor.accept(like[0], like[1]);
+        }
+    }
+
+    // Время лайков в памяти не хранится, поэтому окна трендов заполняются только новыми лайками
+    @Override
+    public void streamLikesSince(long sinceMillis, TimedLikeVisitor visitor) {
+    }
+
+    private static boolean containsAll(Film film, List<String> terms) {
+        Set<String> words = new HashSet<>(TextTokenizer.tokenize(film.getName()));
+        words.addAll(TextTokenizer.tokenize(film.getDescription()));
+        return words.containsAll(terms);
+    }
+
+    private static boolean matches(Film film, PopularFilmsFilter filter) {
+        FilmFacets facets = FilmFacets.of(film);
+        return (filter.getGenreId() == null || Arrays.binarySearch(facets.genreIds(), filter.getGenreId()) >= 0)
+                && (filter.getYear() == null || facets.year() == filter.getYear())
+                && (filter.getMpaId() == null || facets.mpaId() == filter.getMpaId());
+    }
+
+    private long likeCount(long filmId) {
+        LongAdder counter = likeCounts.get(filmId);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    private void incrementLikes(long filmId, long delta) {
+        LongAdder counter = likeCounts.get(filmId);
+        if (counter != null) {
+            counter.add(delta);
+        }
     }
 }
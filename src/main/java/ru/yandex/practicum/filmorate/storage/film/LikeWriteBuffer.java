@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Write-behind буфер лайков: операция подтверждается сразу после попадания в очередь,
+// в БД уходит пачкой по размеру очереди или по таймеру. Для одной пары (фильм, пользователь)
+// в очереди хранится только последняя операция, поэтому лайк и его снятие схлопываются.
+// При аварийной остановке теряется не больше flush-interval-ms последних операций.
+// Штатная остановка идёт через SmartLifecycle: после веб-сервера, но до уничтожения бинов,
+// поэтому последний сброс ещё застаёт живой DataSource
+@Slf4j
+@Component
+public class LikeWriteBuffer implements SmartLifecycle {
+
+    // Фаза ниже, чем у веб-сервера: буфер останавливается, когда новые запросы уже не приходят
+    private static final int STOP_PHASE = Integer.MAX_VALUE - 2048;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    // Сколько раз запрос при заполненной очереди сбрасывает её сам, прежде чем получить отказ
+    private static final int FULL_QUEUE_FLUSH_ATTEMPTS = 3;
+
+    private final boolean enabled;
+    private final int maxPending;
+    private final int flushSize;
+    private final Executor flushExecutor;
+    private final LatencyMetrics metrics;
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean running;
+    private LinkedHashMap<LikeKey, LikeBatchItem> pending = new LinkedHashMap<>();
+    private volatile Consumer<List<LikeBatchItem>> flushHandler;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private long flushes;
+    private long flushedOperations;
+    private long failedFlushes;
+    private long lastFlushMillis;
+    private long maxFlushMillis;
+
+    @Autowired
+    public LikeWriteBuffer(@Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                           @Value("${filmorate.likes.write-behind.max-pending:10000}") int maxPending,
+                           @Value("${filmorate.likes.write-behind.flush-size:500}") int flushSize,
+                           LatencyMetrics metrics) {
+        this(enabled, maxPending, flushSize, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "like-write-buffer");
+            thread.setDaemon(true);
+            return thread;
+        }), metrics);
+    }
+
+    public LikeWriteBuffer(boolean enabled, int maxPending, int flushSize, Executor flushExecutor,
+                           LatencyMetrics metrics) {
+        this.enabled = enabled;
+        this.maxPending = maxPending;
+        this.flushSize = flushSize;
+        this.flushExecutor = flushExecutor;
+        this.metrics = metrics;
+        metrics.setLikeQueueDepth(this::queueDepth);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Куда уходят накопленные операции; обработчик применяет пачку к хранилищу и индексам
+    public void setFlushHandler(Consumer<List<LikeBatchItem>> flushHandler) {
+        this.flushHandler = flushHandler;
+    }
+
+    public void submit(LikeBatchItem item) {
+        submitted.increment();
+        LikeKey key = new LikeKey(item.getFilmId(), item.getUserId());
+        int size;
+        int flushAttempts = 0;
+        while (true) {
+            synchronized (lock) {
+                if (pending.containsKey(key) || pending.size() < maxPending) {
+                    if (pending.put(key, item) != null) {
+                        coalesced.increment();
+                    }
+                    size = pending.size();
+                    break;
+                }
+            }
+            // Очередь заполнена: запрос сам сбрасывает накопленное в БД. Если БД не принимает
+            // пачку или очередь снова заполняют быстрее, чем она уходит, лайк отклоняется,
+            // а не ждёт без предела
+            if (flushAttempts++ == FULL_QUEUE_FLUSH_ATTEMPTS || !flush()) {
+                rejected.increment();
+                metrics.recordRejectedLike();
+                throw new ServiceUnavailableException("Очередь записи лайков заполнена, повторите позже");
+            }
+        }
+
+        if (size >= flushSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:1000}")
+    public void flushOnTimer() {
+        if (enabled) {
+            flush();
+        }
+    }
+
+    // false, если пачку не удалось записать и она вернулась в очередь
+    public boolean flush() {
+        synchronized (flushLock) {
+            List<LikeBatchItem> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return true;
+                }
+                batch = new ArrayList<>(pending.values());
+                pending = new LinkedHashMap<>();
+            }
+
+            long start = System.nanoTime();
+            boolean written = true;
+            try {
+                flushHandler.accept(batch);
+                flushedOperations += batch.size();
+            } catch (RuntimeException e) {
+                written = false;
+                failedFlushes++;
+                requeue(batch);
+                log.error("Не удалось записать {} лайков из буфера, повтор при следующем сбросе",
+                        batch.size(), e);
+            }
+            long nanos = System.nanoTime() - start;
+            metrics.recordLikeFlush(nanos, !written);
+            flushes++;
+            lastFlushMillis = nanos / 1_000_000;
+            maxFlushMillis = Math.max(maxFlushMillis, lastFlushMillis);
+            return written;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        shutdown();
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return STOP_PHASE;
+    }
+
+    // Дожидается начатого сброса по размеру и записывает остаток очереди
+    public void shutdown() {
+        if (flushExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn("Сброс буфера лайков не завершился за {} с", SHUTDOWN_TIMEOUT_SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (!enabled) {
+            return;
+        }
+        flush();
+        int dropped = queueDepth();
+        if (dropped > 0) {
+            log.error("При остановке не записано {} лайков из буфера, они потеряны", dropped);
+        } else {
+            log.info("Буфер лайков сброшен при остановке");
+        }
+    }
+
+    public Stats getStats() {
+        int depth = queueDepth();
+        synchronized (flushLock) {
+            return new Stats(enabled, depth, maxPending, submitted.sum(), coalesced.sum(), rejected.sum(),
+                    flushes, flushedOperations, failedFlushes, lastFlushMillis, maxFlushMillis);
+        }
+    }
+
+    private int queueDepth() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void requeue(List<LikeBatchItem> batch) {
+        synchronized (lock) {
+            // Операции, пришедшие во время сброса, новее возвращаемых и остаются в силе
+            LinkedHashMap<LikeKey, LikeBatchItem> merged = new LinkedHashMap<>();
+            for (LikeBatchItem item : batch) {
+                merged.put(new LikeKey(item.getFilmId(), item.getUserId()), item);
+            }
+            for (Map.Entry<LikeKey, LikeBatchItem> entry : pending.entrySet()) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+            pending = merged;
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    public record Stats(boolean enabled, int queueDepth, int maxPending, long submitted, long coalesced,
+                        long rejected, long flushes, long flushedOperations, long failedFlushes,
+                        long lastFlushMillis, long maxFlushMillis) {
+    }
+}
@@ -0,0 +1,394 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Топ-K фильмов по лайкам в памяти: счётчики всех фильмов, упорядоченный skip list лучших K
+// для читателей и упорядоченный остаток для записи. Место, освобождённое в топе, занимает
+// первый фильм остатка за O(log N), без обхода всех счётчиков.
+// Для фильтров по жанру, году и рейтингу MPA хранятся отсортированные списки ID фильмов
+// каждого значения; запрос с фильтром пересекает списки, начиная с самого короткого.
+// Снимок из БД читается без блокировки; фильмы, изменённые за это время, после чтения
+// сохраняют значения из памяти, а не из снимка
+@Slf4j
+@Component
+public class PopularFilmsIndex {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final FilmStorage filmStorage;
+    private final int maxK;
+    private final Map<Long, Long> likeCounts = new ConcurrentHashMap<>();
+    private volatile ConcurrentSkipListSet<Entry> top = new ConcurrentSkipListSet<>(ORDER);
+    // size() у ConcurrentSkipListSet линейный, поэтому размер топа ведём отдельно
+    private int topSize;
+    // Фильмы, не попавшие в top; непуст, только когда top заполнен. Читается и меняется
+    // только под монитором индекса
+    private TreeSet<Entry> rest = new TreeSet<>(ORDER);
+    private volatile boolean ready;
+
+    private final ReadWriteLock facetLock = new ReentrantReadWriteLock();
+    private final Map<Long, FilmFacets> facetsByFilm = new HashMap<>();
+    private final Map<Long, SortedLongSet> filmsByGenre = new HashMap<>();
+    private final Map<Integer, SortedLongSet> filmsByYear = new HashMap<>();
+    private final Map<Long, SortedLongSet> filmsByMpa = new HashMap<>();
+    private volatile boolean facetsReady;
+
+    // Фильмы, изменённые во время пересборки; null, когда пересборки нет
+    private volatile ChangedFilms changedDuringResync;
+
+    public PopularFilmsIndex(@Qualifier("dbFilmStorage") FilmStorage filmStorage,
+                             @Value("${filmorate.popular.max-k:1000}") int maxK) {
+        this.filmStorage = filmStorage;
+        this.maxK = maxK;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        resync();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.popular.resync-interval-ms:600000}",
+            initialDelayString = "${filmorate.popular.resync-interval-ms:600000}")
+    public void resync() {
+        long start = System.currentTimeMillis();
+        ChangedFilms changed = new ChangedFilms(ConcurrentHashMap.newKeySet(), ConcurrentHashMap.newKeySet());
+        changedDuringResync = changed;
+        Map<Long, Long> counts;
+        List<FilmFacets> facets;
+        try {
+            counts = filmStorage.getLikeCounts();
+            facets = new ArrayList<>(counts.size());
+            filmStorage.streamFilmFacets(facets::add);
+        } catch (RuntimeException e) {
+            changedDuringResync = null;
+            throw e;
+        }
+        rebuild(counts, changed.likes());
+        rebuildFacets(facets, changed.facets());
+        changedDuringResync = null;
+        log.info("Индекс популярных фильмов пересобран: фильмов {}, в топе {}, сохранено изменений {}, за {} мс",
+                counts.size(), topSize, changed.likes().size() + changed.facets().size(),
+                System.currentTimeMillis() - start);
+    }
+
+    public void rebuildFacets(Collection<FilmFacets> facets) {
+        rebuildFacets(facets, Set.of());
+    }
+
+    private void rebuildFacets(Collection<FilmFacets> facets, Set<Long> changed) {
+        facetLock.writeLock().lock();
+        try {
+            List<FilmFacets> live = new ArrayList<>(changed.size());
+            for (long filmId : changed) {
+                FilmFacets current = facetsByFilm.get(filmId);
+                if (current != null) {
+                    live.add(current);
+                }
+            }
+            facetsByFilm.clear();
+            filmsByGenre.clear();
+            filmsByYear.clear();
+            filmsByMpa.clear();
+            for (FilmFacets filmFacets : facets) {
+                if (!changed.contains(filmFacets.filmId())) {
+                    indexFacets(filmFacets);
+                }
+            }
+            live.forEach(this::indexFacets);
+            filmsByGenre.values().forEach(SortedLongSet::trimToSize);
+            filmsByYear.values().forEach(SortedLongSet::trimToSize);
+            filmsByMpa.values().forEach(SortedLongSet::trimToSize);
+            facetsReady = true;
+        } finally {
+            facetLock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(Map<Long, Long> counts) {
+        rebuild(counts, Set.of());
+    }
+
+    private synchronized void rebuild(Map<Long, Long> counts, Set<Long> changed) {
+        Map<Long, Long> merged = new HashMap<>(counts);
+        for (long filmId : changed) {
+            Long live = likeCounts.get(filmId);
+            if (live == null) {
+                merged.remove(filmId);
+            } else {
+                merged.put(filmId, live);
+            }
+        }
+        // Без clear(): читатели getLikes не видят промежуточных нулей
+        likeCounts.keySet().retainAll(merged.keySet());
+        likeCounts.putAll(merged);
+        rebuildTop();
+        ready = true;
+    }
+
+    public synchronized void addFilm(long filmId) {
+        if (likeCounts.putIfAbsent(filmId, 0L) == null) {
+            markChanged(filmId, false);
+            place(new Entry(0, filmId));
+        }
+    }
+
+    public void addFilm(Film film) {
+        addFilm(film.getId());
+        updateFilm(film);
+    }
+
+    // Переносит фильм в списки новых жанра, года и рейтинга, если они изменились
+    public void updateFilm(Film film) {
+        FilmFacets facets = FilmFacets.of(film);
+        facetLock.writeLock().lock();
+        try {
+            markChanged(film.getId(), true);
+            FilmFacets old = facetsByFilm.get(film.getId());
+            if (!facets.equals(old)) {
+                unindexFacets(old);
+                indexFacets(facets);
+            }
+        } finally {
+            facetLock.writeLock().unlock();
+        }
+    }
+
+    public synchronized void removeFilm(long filmId) {
+        facetLock.writeLock().lock();
+        try {
+            markChanged(filmId, true);
+            unindexFacets(facetsByFilm.get(filmId));
+        } finally {
+            facetLock.writeLock().unlock();
+        }
+        markChanged(filmId, false);
+        Long likes = likeCounts.remove(filmId);
+        if (likes != null) {
+            unplace(new Entry(likes, filmId));
+            if (topSize < maxK && !rest.isEmpty()) {
+                // Освободившееся место в топе занимает лучший фильм снаружи
+                top.add(rest.pollFirst());
+                topSize++;
+            }
+        }
+    }
+
+    public synchronized void changeLikes(long filmId, long delta) {
+        Long oldLikes = likeCounts.get(filmId);
+        if (oldLikes == null) {
+            return;
+        }
+        long newLikes = oldLikes + delta;
+        markChanged(filmId, false);
+        likeCounts.put(filmId, newLikes);
+        unplace(new Entry(oldLikes, filmId));
+        place(new Entry(newLikes, filmId));
+    }
+
+    // ID первых count фильмов по популярности или null, если индекс не может ответить сам
+    public List<Long> getTopFilmIds(int count) {
+        if (!ready || count > maxK) {
+            return null;
+        }
+        List<Long> result = new ArrayList<>(Math.max(count, 0));
+        Set<Long> seen = new HashSet<>();
+        Iterator<Entry> iterator = top.iterator();
+        while (result.size() < count && iterator.hasNext()) {
+            long filmId = iterator.next().filmId();
+            // Во время перестановки записи фильм может кратко встретиться дважды
+            if (seen.add(filmId)) {
+                result.add(filmId);
+            }
+        }
+        return result;
+    }
+
+    // ID первых count подходящих под фильтр фильмов или null, если индекс ещё не построен.
+    // Ответ точный при любом count: списки значений фильтра пересекаются, по пересечению
+    // лучшие count отбираются кучей
+    public List<Long> getTopFilmIds(int count, PopularFilmsFilter filter) {
+        if (filter.isEmpty()) {
+            return getTopFilmIds(count);
+        }
+        if (!ready || !facetsReady) {
+            return null;
+        }
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+
+        facetLock.readLock().lock();
+        try {
+            List<SortedLongSet> sets = new ArrayList<>(3);
+            if (filter.getGenreId() != null) {
+                sets.add(filmsByGenre.get(filter.getGenreId()));
+            }
+            if (filter.getYear() != null) {
+                sets.add(filmsByYear.get(filter.getYear()));
+            }
+            if (filter.getMpaId() != null) {
+                sets.add(filmsByMpa.get(filter.getMpaId()));
+            }
+            if (sets.contains(null)) {
+                return new ArrayList<>();
+            }
+            sets.sort(Comparator.comparingInt(SortedLongSet::size));
+
+            // Слияние отсортированных списков последовательно читает память и обгоняет
+            // двоичный поиск по остальным спискам для каждого кандидата
+            long[] candidates = sets.size() == 1 ? sets.get(0).toArray() : sets.get(0).intersect(sets.get(1));
+            for (int i = 2; i < sets.size(); i++) {
+                candidates = sets.get(i).intersect(candidates);
+            }
+
+            PriorityQueue<Entry> best = new PriorityQueue<>(count + 1, ORDER.reversed());
+            for (long filmId : candidates) {
+                Long counted = likeCounts.get(filmId);
+                if (counted == null) {
+                    continue;
+                }
+                long likes = counted;
+                if (best.size() < count) {
+                    best.add(new Entry(likes, filmId));
+                } else {
+                    Entry worst = best.peek();
+                    if (likes > worst.likes() || (likes == worst.likes() && filmId < worst.filmId())) {
+                        best.poll();
+                        best.add(new Entry(likes, filmId));
+                    }
+                }
+            }
+
+            List<Entry> ranked = new ArrayList<>(best);
+            ranked.sort(ORDER);
+            List<Long> result = new ArrayList<>(ranked.size());
+            for (Entry entry : ranked) {
+                result.add(entry.filmId());
+            }
+            return result;
+        } finally {
+            facetLock.readLock().unlock();
+        }
+    }
+
+    // Текущее число лайков фильма по индексу; 0 для неизвестного фильма
+    public long getLikes(long filmId) {
+        return likeCounts.getOrDefault(filmId, 0L);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getMaxK() {
+        return maxK;
+    }
+
+    // Ставит запись в top или в остаток так, чтобы top оставался лучшими min(K, N) записями.
+    // Если в top есть свободное место, а лучший фильм остатка обгоняет запись, место занимает
+    // он, а запись уходит в остаток
+    private void place(Entry entry) {
+        if (topSize < maxK) {
+            Entry best = rest.isEmpty() ? null : rest.first();
+            if (best != null && ORDER.compare(best, entry) < 0) {
+                rest.pollFirst();
+                rest.add(entry);
+                entry = best;
+            }
+            top.add(entry);
+            topSize++;
+            return;
+        }
+        Entry last = top.last();
+        if (ORDER.compare(entry, last) < 0) {
+            // Сначала вставка, потом вытеснение: читатели не видят топ короче K
+            top.add(entry);
+            top.remove(last);
+            rest.add(last);
+        } else {
+            rest.add(entry);
+        }
+    }
+
+    private void unplace(Entry entry) {
+        if (top.remove(entry)) {
+            topSize--;
+        } else {
+            rest.remove(entry);
+        }
+    }
+
+    // Вызывается под той же блокировкой, что и само изменение: пересборка не может проскочить между ними
+    private void markChanged(long filmId, boolean facets) {
+        ChangedFilms changed = changedDuringResync;
+        if (changed != null) {
+            (facets ? changed.facets() : changed.likes()).add(filmId);
+        }
+    }
+
+    private void indexFacets(FilmFacets facets) {
+        facetsByFilm.put(facets.filmId(), facets);
+        for (long genreId : facets.genreIds()) {
+            filmsByGenre.computeIfAbsent(genreId, id -> new SortedLongSet()).add(facets.filmId());
+        }
+        filmsByYear.computeIfAbsent(facets.year(), year -> new SortedLongSet()).add(facets.filmId());
+        filmsByMpa.computeIfAbsent(facets.mpaId(), id -> new SortedLongSet()).add(facets.filmId());
+    }
+
+    private void unindexFacets(FilmFacets facets) {
+        if (facets == null) {
+            return;
+        }
+        facetsByFilm.remove(facets.filmId());
+        for (long genreId : facets.genreIds()) {
+            removeFrom(filmsByGenre.get(genreId), facets.filmId());
+        }
+        removeFrom(filmsByYear.get(facets.year()), facets.filmId());
+        removeFrom(filmsByMpa.get(facets.mpaId()), facets.filmId());
+    }
+
+    private static void removeFrom(SortedLongSet set, long filmId) {
+        if (set != null) {
+            set.remove(filmId);
+        }
+    }
+
+    private void rebuildTop() {
+        List<Entry> entries = new ArrayList<>(likeCounts.size());
+        for (Map.Entry<Long, Long> count : likeCounts.entrySet()) {
+            entries.add(new Entry(count.getValue(), count.getKey()));
+        }
+        entries.sort(ORDER);
+        int size = Math.min(maxK, entries.size());
+        // Новый набор собирается отдельно, чтобы читатели не видели пустой топ
+        ConcurrentSkipListSet<Entry> rebuilt = new ConcurrentSkipListSet<>(ORDER);
+        rebuilt.addAll(entries.subList(0, size));
+        rest = new TreeSet<>(ORDER);
+        rest.addAll(entries.subList(size, entries.size()));
+        top = rebuilt;
+        topSize = size;
+    }
+
+    private record Entry(long likes, long filmId) {
+    }
+
+    private record ChangedFilms(Set<Long> likes, Set<Long> facets) {
+    }
+}
@@ -0,0 +1,342 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Лайки за последний час, сутки и неделю в скользящих окнах. Время разбито на корзины
+// по BUCKET_MILLIS, кольцо корзин покрывает самое длинное окно; в корзине — число лайков
+// по фильмам, только для фильмов с лайками в ней. Для каждого окна сумма по его корзинам
+// ведётся отдельно и меняется на каждом лайке, поэтому топ не требует обхода корзин.
+// Окно сдвигается по таймеру и при каждом обращении: из суммы вычитается только корзина,
+// вышедшая из окна, так что сдвиг стоит одну корзину на окно. Граница окна точна до одной корзины
+@Slf4j
+@Component
+public class TrendingFilmsIndex {
+
+    static final long BUCKET_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    public enum Window {
+        HOUR("1h", TimeUnit.HOURS.toMillis(1)),
+        DAY("24h", TimeUnit.DAYS.toMillis(1)),
+        WEEK("7d", TimeUnit.DAYS.toMillis(7));
+
+        private final String param;
+        private final int buckets;
+
+        Window(String param, long millis) {
+            this.param = param;
+            this.buckets = (int) (millis / BUCKET_MILLIS);
+        }
+
+        public String getParam() {
+            return param;
+        }
+
+        // null, если такого окна нет
+        public static Window fromParam(String param) {
+            for (Window window : values()) {
+                if (window.param.equals(param)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int RING_SIZE = Window.WEEK.buckets;
+
+    private final FilmStorage filmStorage;
+    private final LongSupplier clock;
+    private final Object lock = new Object();
+
+    private final Bucket[] ring = new Bucket[RING_SIZE];
+    private final LongIntHashMap[] totals = new LongIntHashMap[Window.values().length];
+    // Корзина каждого лайка в кольце: снятие лайка вычитается из той корзины, куда он попал
+    private final Map<LikeKey, Long> likeBuckets = new HashMap<>();
+    private long currentBucket;
+    // Изменения, пришедшие во время начальной загрузки; после неё применяются повторно
+    private List<Change> changesDuringSeed;
+    private volatile boolean ready;
+    private volatile long lastSeedMillis;
+
+    @Autowired
+    public TrendingFilmsIndex(@Qualifier("dbFilmStorage") FilmStorage filmStorage) {
+        this(filmStorage, System::currentTimeMillis);
+    }
+
+    public TrendingFilmsIndex(FilmStorage filmStorage, LongSupplier clock) {
+        this.filmStorage = filmStorage;
+        this.clock = clock;
+        this.currentBucket = clock.getAsLong() / BUCKET_MILLIS;
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new LongIntHashMap(1024);
+        }
+    }
+
+    // Один потоковый проход по лайкам за самое длинное окно
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        long start = System.currentTimeMillis();
+        synchronized (lock) {
+            changesDuringSeed = new ArrayList<>();
+        }
+
+        long since = (clock.getAsLong() / BUCKET_MILLIS - RING_SIZE + 1) * BUCKET_MILLIS;
+        long[] loaded = new long[1];
+        try {
+            filmStorage.streamLikesSince(since, (filmId, userId, createdAtMillis) -> {
+                synchronized (lock) {
+                    addLikeAt(filmId, userId, createdAtMillis);
+                }
+                loaded[0]++;
+            });
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                changesDuringSeed = null;
+            }
+            throw e;
+        }
+
+        int replayed;
+        synchronized (lock) {
+            // Лайк, попавший и в выборку, и в список изменений, второй раз не считается
+            replayed = changesDuringSeed.size();
+            changesDuringSeed.forEach(this::apply);
+            changesDuringSeed = null;
+            ready = true;
+        }
+        lastSeedMillis = System.currentTimeMillis() - start;
+        log.info("Окна трендов заполнены: лайков {}, повторено изменений {}, за {} мс",
+                loaded[0], replayed, lastSeedMillis);
+    }
+
+    // Сдвигает окна, даже если лайков и запросов нет: истёкшие корзины освобождают память
+    @Scheduled(fixedDelayString = "${filmorate.trending.roll-interval-ms:60000}",
+            initialDelayString = "${filmorate.trending.roll-interval-ms:60000}")
+    public void roll() {
+        synchronized (lock) {
+            advance();
+        }
+    }
+
+    public void addLike(long filmId, long userId) {
+        record(new Change(ChangeType.ADD_LIKE, filmId, userId, clock.getAsLong()));
+    }
+
+    public void removeLike(long filmId, long userId) {
+        record(new Change(ChangeType.REMOVE_LIKE, filmId, userId, clock.getAsLong()));
+    }
+
+    public void removeFilm(long filmId) {
+        record(new Change(ChangeType.REMOVE_FILM, filmId, 0, clock.getAsLong()));
+    }
+
+    // ID до count фильмов с наибольшим числом лайков в окне или null, если окна ещё не заполнены
+    public List<Long> getTopFilmIds(Window window, int count) {
+        synchronized (lock) {
+            if (!ready) {
+                return null;
+            }
+            advance();
+            List<Long> ids = new ArrayList<>(count);
+            for (long filmId : totals[window.ordinal()].topKeys(count)) {
+                ids.add(filmId);
+            }
+            return ids;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            int buckets = 0;
+            for (Bucket bucket : ring) {
+                if (bucket != null) {
+                    buckets++;
+                }
+            }
+            return new Stats(ready, buckets, likeBuckets.size(), totals[Window.HOUR.ordinal()].size(),
+                    totals[Window.DAY.ordinal()].size(), totals[Window.WEEK.ordinal()].size(), lastSeedMillis);
+        }
+    }
+
+    private void record(Change change) {
+        synchronized (lock) {
+            apply(change);
+            if (changesDuringSeed != null) {
+                changesDuringSeed.add(change);
+            }
+        }
+    }
+
+    private void apply(Change change) {
+        switch (change.type()) {
+            case ADD_LIKE -> addLikeAt(change.filmId(), change.userId(), change.timeMillis());
+            case REMOVE_LIKE -> removeLikeAt(change.filmId(), change.userId());
+            case REMOVE_FILM -> removeFilmAt(change.filmId());
+        }
+    }
+
+    private void addLikeAt(long filmId, long userId, long timeMillis) {
+        advance();
+        // Лайк с часами из будущего относится к текущей корзине
+        long bucketNumber = Math.min(timeMillis / BUCKET_MILLIS, currentBucket);
+        LikeKey key = new LikeKey(filmId, userId);
+        if (bucketNumber <= currentBucket - RING_SIZE || likeBuckets.containsKey(key)) {
+            return;
+        }
+        Bucket bucket = ring[slot(bucketNumber)];
+        if (bucket == null) {
+            bucket = new Bucket(bucketNumber);
+            ring[slot(bucketNumber)] = bucket;
+        }
+        bucket.counts.add(filmId, 1);
+        bucket.likes.add(key);
+        likeBuckets.put(key, bucketNumber);
+        changeTotals(filmId, bucketNumber, 1);
+    }
+
+    private void removeLikeAt(long filmId, long userId) {
+        advance();
+        Long bucketNumber = likeBuckets.remove(new LikeKey(filmId, userId));
+        if (bucketNumber == null) {
+            // Лайк старше самого длинного окна
+            return;
+        }
+        ring[slot(bucketNumber)].counts.add(filmId, -1);
+        changeTotals(filmId, bucketNumber, -1);
+    }
+
+    private void removeFilmAt(long filmId) {
+        for (Bucket bucket : ring) {
+            if (bucket != null) {
+                bucket.counts.add(filmId, -bucket.counts.get(filmId));
+            }
+        }
+        // Снятие лайка удалённого фильма не должно увести счётчики в минус
+        likeBuckets.keySet().removeIf(key -> key.filmId() == filmId);
+        for (LongIntHashMap windowTotals : totals) {
+            windowTotals.remove(filmId);
+        }
+    }
+
+    private void changeTotals(long filmId, long bucketNumber, int delta) {
+        for (Window window : Window.values()) {
+            if (bucketNumber > currentBucket - window.buckets) {
+                addToTotal(totals[window.ordinal()], filmId, delta);
+            }
+        }
+    }
+
+    // Фильм с нулевой суммой уходит из карты окна, чтобы топ состоял только из фильмов с лайками
+    private static void addToTotal(LongIntHashMap windowTotals, long filmId, int delta) {
+        windowTotals.add(filmId, delta);
+        if (windowTotals.get(filmId) <= 0) {
+            windowTotals.remove(filmId);
+        }
+    }
+
+    // Из суммы каждого окна вычитаются корзины, вышедшие из него, затем истёкшие корзины
+    // освобождаются. Полный пересчёт нужен, только если простой длиннее всего кольца
+    private void advance() {
+        long now = clock.getAsLong() / BUCKET_MILLIS;
+        if (now <= currentBucket) {
+            return;
+        }
+        boolean wholeRingExpired = now - currentBucket >= RING_SIZE;
+        if (!wholeRingExpired) {
+            for (Window window : Window.values()) {
+                LongIntHashMap windowTotals = totals[window.ordinal()];
+                // Корзины новее currentBucket ещё пусты: из окна выходят только существующие
+                long last = Math.min(now - window.buckets, currentBucket);
+                for (long number = currentBucket - window.buckets + 1; number <= last; number++) {
+                    Bucket bucket = ring[slot(number)];
+                    if (bucket != null && bucket.number == number) {
+                        bucket.counts.forEach((filmId, likes) -> {
+                            if (likes != 0) {
+                                addToTotal(windowTotals, filmId, -likes);
+                            }
+                        });
+                    }
+                }
+            }
+        }
+
+        // В ячейках новых корзин лежат корзины на круг старше; после долгого простоя это всё кольцо
+        for (long number = Math.max(currentBucket + 1, now - RING_SIZE + 1); number <= now; number++) {
+            Bucket expired = ring[slot(number)];
+            if (expired != null) {
+                for (LikeKey key : expired.likes) {
+                    // Снятый и поставленный заново лайк числится уже в другой корзине
+                    likeBuckets.remove(key, expired.number);
+                }
+                ring[slot(number)] = null;
+            }
+        }
+        currentBucket = now;
+        if (wholeRingExpired) {
+            recomputeTotals();
+        }
+    }
+
+    private void recomputeTotals() {
+        for (Window window : Window.values()) {
+            LongIntHashMap windowTotals = new LongIntHashMap(16);
+            for (long number = currentBucket - window.buckets + 1; number <= currentBucket; number++) {
+                Bucket bucket = ring[slot(number)];
+                if (bucket != null) {
+                    bucket.counts.forEach((filmId, likes) -> {
+                        if (likes != 0) {
+                            windowTotals.add(filmId, likes);
+                        }
+                    });
+                }
+            }
+            totals[window.ordinal()] = windowTotals;
+        }
+    }
+
+    private static int slot(long bucketNumber) {
+        return (int) Math.floorMod(bucketNumber, (long) RING_SIZE);
+    }
+
+    private static final class Bucket {
+        private final long number;
+        private final LongIntHashMap counts = new LongIntHashMap(16);
+        private final List<LikeKey> likes = new ArrayList<>();
+
+        private Bucket(long number) {
+            this.number = number;
+        }
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+
+    private enum ChangeType {
+        ADD_LIKE, REMOVE_LIKE, REMOVE_FILM
+    }
+
+    private record Change(ChangeType type, long filmId, long userId, long timeMillis) {
+    }
+
+    public record Stats(boolean ready, int buckets, int trackedLikes, int hourFilms, int dayFilms, int weekFilms,
+                        long lastSeedMillis) {
+    }
+}
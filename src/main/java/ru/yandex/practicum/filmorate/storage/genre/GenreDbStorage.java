@@ -32,11 +32,7 @@ public class GenreDbStorage implements GenreStorage {
         String sql = "SELECT * FROM genres ORDER BY genre_id";
         List<Genre> genres = jdbcTemplate.query(sql, genreRowMapper);
 
-        log.info("Загружено жанров: {}", genres.size());
-        for (Genre genre : genres) {
-            log.info("Жанр: id={}, name={}", genre.getId(), genre.getName());
-        }
-
+        log.debug("Загружено жанров: {}", genres.size());
         return genres;
     }
 
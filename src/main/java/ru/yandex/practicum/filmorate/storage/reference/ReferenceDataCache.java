@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.reference;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.mpa_rating.MpaRatingStorage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+// Жанры и рейтинги MPA меняются только вместе с data.sql, поэтому читаются один раз
+// в неизменяемый снимок с массивами по ID и перечитываются только через refresh()
+@Slf4j
+@Component
+public class ReferenceDataCache {
+
+    private final GenreStorage genreStorage;
+    private final MpaRatingStorage mpaRatingStorage;
+    private volatile Snapshot snapshot;
+
+    public ReferenceDataCache(GenreStorage genreStorage, MpaRatingStorage mpaRatingStorage) {
+        this.genreStorage = genreStorage;
+        this.mpaRatingStorage = mpaRatingStorage;
+    }
+
+    public List<Genre> getAllGenres() {
+        return snapshot().genres();
+    }
+
+    public Genre getGenreById(long id) {
+        return byId(snapshot().genresById(), id);
+    }
+
+    public List<Mpa> getAllMpa() {
+        return snapshot().mpa();
+    }
+
+    public Mpa getMpaById(long id) {
+        return byId(snapshot().mpaById(), id);
+    }
+
+    public String getGenresEtag() {
+        return snapshot().genresEtag();
+    }
+
+    public String getMpaEtag() {
+        return snapshot().mpaEtag();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void refresh() {
+        List<Genre> genres = genreStorage.getAllGenres().stream()
+                .sorted(Comparator.comparingLong(Genre::getId))
+                .toList();
+        List<Mpa> mpa = mpaRatingStorage.getAllMpa().stream()
+                .sorted(Comparator.comparingLong(Mpa::getId))
+                .toList();
+
+        snapshot = new Snapshot(
+                genres, toArray(genres, Genre::getId, Genre[]::new), etag(genres, Genre::getId, Genre::getName),
+                mpa, toArray(mpa, Mpa::getId, Mpa[]::new), etag(mpa, Mpa::getId, Mpa::getName));
+        log.info("Справочники загружены: жанров {}, рейтингов MPA {}", genres.size(), mpa.size());
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    refresh();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static <T> T byId(T[] byId, long id) {
+        return id >= 0 && id < byId.length ? byId[(int) id] : null;
+    }
+
+    private static <T> T[] toArray(List<T> items, ToLongFunction<T> idGetter,
+                                   IntFunction<T[]> arrayFactory) {
+        long maxId = items.stream().mapToLong(idGetter).max().orElse(-1);
+        T[] byId = arrayFactory.apply((int) maxId + 1);
+        for (T item : items) {
+            byId[(int) idGetter.applyAsLong(item)] = item;
+        }
+        return byId;
+    }
+
+    // Сильный ETag: хэш всех пар id/название, меняется при любом изменении справочника
+    private static <T> String etag(List<T> items, ToLongFunction<T> idGetter,
+                                   Function<T, String> nameGetter) {
+        StringBuilder content = new StringBuilder();
+        for (T item : items) {
+            content.append(idGetter.applyAsLong(item)).append(':').append(nameGetter.apply(item)).append('\n');
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(content.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Snapshot(List<Genre> genres, Genre[] genresById, String genresEtag,
+                            List<Mpa> mpa, Mpa[] mpaById, String mpaEtag) {
+    }
+}
@@ -0,0 +1,130 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+// Кэш списков друзей в виде отсортированных long[] для пересечений без SQL.
+// Ограничен суммарным числом ID во всех списках, вытесняются давно не читавшиеся пользователи.
+// Возвращаемые массивы общие для всех читателей, изменять их нельзя
+@Component
+public class FriendAdjacencyCache {
+
+    private final long maxIds;
+    private final Object lock = new Object();
+    private final LinkedHashMap<Long, long[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedIds;
+
+    // Растёт при каждой инвалидации, как в FilmCache: загрузка, начатая до записи, в кэш не попадёт
+    private long epoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public FriendAdjacencyCache(@Value("${filmorate.friends-cache.max-ids:5000000}") long maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    public long[] getFriendIds(long userId, LongFunction<long[]> loader) {
+        long loadEpoch;
+        synchronized (lock) {
+            long[] cached = entries.get(userId);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            misses.increment();
+            loadEpoch = epoch;
+        }
+
+        long[] friendIds = loader.apply(userId);
+        synchronized (lock) {
+            store(loadEpoch, userId, friendIds);
+        }
+        return friendIds;
+    }
+
+    // Списки нескольких пользователей; промахи догружаются одним вызовом batchLoader
+    public Map<Long, long[]> getFriendIds(List<Long> userIds,
+                                          Function<List<Long>, Map<Long, long[]>> batchLoader) {
+        Map<Long, long[]> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        long loadEpoch;
+        synchronized (lock) {
+            for (Long userId : userIds) {
+                long[] cached = entries.get(userId);
+                if (cached != null) {
+                    hits.increment();
+                    result.put(userId, cached);
+                } else {
+                    misses.increment();
+                    missing.add(userId);
+                }
+            }
+            loadEpoch = epoch;
+        }
+
+        if (!missing.isEmpty()) {
+            Map<Long, long[]> loaded = batchLoader.apply(missing);
+            synchronized (lock) {
+                for (Map.Entry<Long, long[]> entry : loaded.entrySet()) {
+                    result.put(entry.getKey(), entry.getValue());
+                    store(loadEpoch, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    public void invalidate(long userId) {
+        synchronized (lock) {
+            epoch++;
+            long[] removed = entries.remove(userId);
+            if (removed != null) {
+                cachedIds -= removed.length;
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (lock) {
+            epoch++;
+            entries.clear();
+            cachedIds = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (lock) {
+            return new Stats(entries.size(), cachedIds, maxIds, hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    private void store(long loadEpoch, long userId, long[] friendIds) {
+        if (loadEpoch != epoch || friendIds.length > maxIds) {
+            return;
+        }
+        long[] replaced = entries.put(userId, friendIds);
+        cachedIds += friendIds.length - (replaced != null ? replaced.length : 0);
+
+        Iterator<Map.Entry<Long, long[]>> eldest = entries.entrySet().iterator();
+        while (cachedIds > maxIds && eldest.hasNext()) {
+            cachedIds -= eldest.next().getValue().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    public record Stats(int users, long cachedIds, long maxIds, long hits, long misses, long evictions) {
+    }
+}
@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+import ru.yandex.practicum.filmorate.util.SortedLongArrays;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+// Рекомендации друзей: обход на два шага по спискам друзей с ограничением ветвления.
+// Кандидат получает по очку за каждого друга пользователя, у которого он в друзьях.
+// Слишком длинные списки прореживаются равномерно, поэтому у популярных пользователей
+// счёт приблизительный, но время ответа ограничено max-first-hop * max-second-hop шагами
+@Component
+public class FriendSuggestionEngine {
+
+    private final int maxFirstHop;
+    private final int maxSecondHop;
+    private final int parallelThreshold;
+
+    public FriendSuggestionEngine(@Value("${filmorate.suggestions.max-first-hop:1000}") int maxFirstHop,
+                                  @Value("${filmorate.suggestions.max-second-hop:1000}") int maxSecondHop,
+                                  @Value("${filmorate.suggestions.parallel-threshold:256}") int parallelThreshold) {
+        this.maxFirstHop = maxFirstHop;
+        this.maxSecondHop = maxSecondHop;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // friendIds — отсортированные друзья пользователя, loader отдаёт списки друзей пачкой
+    public long[] suggest(long userId, long[] friendIds, int limit,
+                          Function<List<Long>, Map<Long, long[]>> loader) {
+        long[] firstHop = SortedLongArrays.sample(friendIds, maxFirstHop);
+        if (firstHop.length == 0) {
+            return new long[0];
+        }
+
+        List<Long> firstHopIds = new ArrayList<>(firstHop.length);
+        for (long id : firstHop) {
+            firstHopIds.add(id);
+        }
+        Map<Long, long[]> secondHop = loader.apply(firstHopIds);
+
+        LongIntHashMap scores;
+        if (firstHop.length < parallelThreshold) {
+            scores = score(userId, friendIds, firstHop, 0, firstHop.length, secondHop);
+        } else {
+            // Каждая часть считает в свою карту, затем карты складываются
+            int parts = Math.min(Runtime.getRuntime().availableProcessors() * 4, firstHop.length);
+            scores = IntStream.range(0, parts).parallel()
+                    .mapToObj(part -> score(userId, friendIds, firstHop,
+                            (int) ((long) firstHop.length * part / parts),
+                            (int) ((long) firstHop.length * (part + 1) / parts), secondHop))
+                    .reduce((left, right) -> {
+                        left.addAll(right);
+                        return left;
+                    })
+                    .orElseGet(() -> new LongIntHashMap(0));
+        }
+        return scores.topKeys(limit);
+    }
+
+    private LongIntHashMap score(long userId, long[] friendIds, long[] firstHop, int from, int to,
+                                 Map<Long, long[]> secondHop) {
+        LongIntHashMap scores = new LongIntHashMap(Math.min(1 << 16, (to - from) * 16));
+        for (int i = from; i < to; i++) {
+            long[] candidates = secondHop.get(firstHop[i]);
+            if (candidates == null) {
+                continue;
+            }
+            for (long candidate : SortedLongArrays.sample(candidates, maxSecondHop)) {
+                if (candidate != userId && Arrays.binarySearch(friendIds, candidate) < 0) {
+                    scores.add(candidate, 1);
+                }
+            }
+        }
+        return scores;
+    }
+}
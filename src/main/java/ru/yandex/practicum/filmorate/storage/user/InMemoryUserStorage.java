@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -14,12 +15,15 @@ import java.util.stream.Collectors;
 @Component
 public class InMemoryUserStorage implements UserStorage {
     public Map<Long, User> users = new HashMap<>();
+    // Друзья каждого пользователя в отсортированном long[]; User.friends — живое представление поверх него
+    private final Map<Long, SortedLongSet> friends = new HashMap<>();
+    private long lastId;
 
     @Override
     public User addUser(User user) {
         log.info("Попытка создания пользователя: login={}, email={}", user.getLogin(), user.getEmail());
 
-        user.setId(getNextId());
+        user.setId(++lastId);
         log.debug("Юзеру присвоен ID: {}", user.getId());
 
         if (user.getEmail() == null || user.getEmail().isBlank()) {
@@ -52,10 +56,12 @@ public class InMemoryUserStorage implements UserStorage {
             user.setName(user.getLogin());
         }
 
-        // Инициализируем множество друзей, если оно null
-        if (user.getFriends() == null) {
-            user.setFriends(new HashSet<>());
+        SortedLongSet userFriends = new SortedLongSet();
+        if (user.getFriends() != null) {
+            user.getFriends().forEach(userFriends::add);
         }
+        user.setFriends(userFriends.asSet());
+        friends.put(user.getId(), userFriends);
 
         users.put(user.getId(), user);
         log.info("Пользователь создан успешно. ID: {}, login: {}, email: {}",
@@ -99,7 +105,12 @@ public class InMemoryUserStorage implements UserStorage {
 
         // Обновляем друзей, если они переданы
         if (user.getFriends() != null) {
-            existingUser.setFriends(user.getFriends());
+            long[] newFriends = user.getFriends().stream().mapToLong(Long::longValue).toArray();
+            SortedLongSet userFriends = friends.get(existingUser.getId());
+            userFriends.clear();
+            for (long friendId : newFriends) {
+                userFriends.add(friendId);
+            }
         }
 
         log.info("Пользователь обновлен. login: {}", user.getLogin());
@@ -115,8 +126,9 @@ public class InMemoryUserStorage implements UserStorage {
         }
 
         // Удаляем пользователя из списков друзей других пользователей
-        for (User user : users.values()) {
-            user.getFriends().remove(id);
+        friends.remove(id);
+        for (SortedLongSet userFriends : friends.values()) {
+            userFriends.remove(id);
         }
 
         log.info("Пользователь удален: ID {}, логин '{}'", id, deletedUser.getLogin());
@@ -128,6 +140,15 @@ public class InMemoryUserStorage implements UserStorage {
         return new ArrayList<>(users.values());
     }
 
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingLong(User::getId))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public User getUserById(long id) {
         User user = users.get(id);
@@ -142,6 +163,26 @@ public class InMemoryUserStorage implements UserStorage {
         return Optional.ofNullable(users.get(id));
     }
 
+    @Override
+    public List<User> getUsersByIds(List<Long> ids) {
+        return ids.stream()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Set<Long> findExistingUserIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public boolean userExists(long id) {
+        return users.containsKey(id);
+    }
+
     @Override
     public void addFriend(long userId, long friendId) {
         log.info("Попытка добавления друга: {} -> {}", userId, friendId);
@@ -149,7 +190,7 @@ public class InMemoryUserStorage implements UserStorage {
         User user = getUserById(userId);
         User friend = getUserById(friendId);
 
-        user.getFriends().add(friendId);
+        friends.get(user.getId()).add(friend.getId());
         log.info("Друг добавлен: {} -> {}", userId, friendId);
     }
 
@@ -160,7 +201,7 @@ public class InMemoryUserStorage implements UserStorage {
         User user = getUserById(userId);
         User friend = getUserById(friendId);
 
-        if (!user.getFriends().remove(friendId)) {
+        if (!friends.get(user.getId()).remove(friend.getId())) {
             log.warn("Друг с ID {} не найден у пользователя {}", friendId, userId);
             throw new NotFoundException("Друг не найден");
         }
@@ -172,40 +213,48 @@ public class InMemoryUserStorage implements UserStorage {
     public List<User> getFriends(long userId) {
         log.info("Запрос списка друзей пользователя: {}", userId);
 
-        User user = getUserById(userId);
-        List<User> friends = user.getFriends().stream()
-                .map(this::getUserById)
-                .collect(Collectors.toList());
+        getUserById(userId);
+        List<User> result = toUsers(friends.get(userId).toArray());
+
+        log.info("Найдено друзей у пользователя {}: {}", userId, result.size());
+        return result;
+    }
+
+    @Override
+    public long[] getFriendIds(long userId) {
+        SortedLongSet userFriends = friends.get(userId);
+        return userFriends != null ? userFriends.toArray() : new long[0];
+    }
 
-        log.info("Найдено друзей у пользователя {}: {}", userId, friends.size());
-        return friends;
+    @Override
+    public Map<Long, long[]> getFriendIdsByUserIds(List<Long> userIds) {
+        Map<Long, long[]> result = new HashMap<>();
+        for (Long userId : userIds) {
+            result.put(userId, getFriendIds(userId));
+        }
+        return result;
     }
 
     @Override
     public List<User> getCommonFriends(long userId1, long userId2) {
         log.info("Запрос общих друзей пользователей: {} и {}", userId1, userId2);
 
-        User user1 = getUserById(userId1);
-        User user2 = getUserById(userId2);
+        getUserById(userId1);
+        getUserById(userId2);
 
-        Set<Long> commonFriendIds = new HashSet<>(user1.getFriends());
-        commonFriendIds.retainAll(user2.getFriends());
-
-        List<User> commonFriends = commonFriendIds.stream()
-                .map(this::getUserById)
-                .collect(Collectors.toList());
+        // Пересечение отсортированных массивов без промежуточных Set<Long>
+        List<User> commonFriends = toUsers(friends.get(userId1).intersect(friends.get(userId2)));
 
         log.info("Найдено общих друзей у пользователей {} и {}: {}",
                 userId1, userId2, commonFriends.size());
         return commonFriends;
     }
 
-    private long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    private List<User> toUsers(long[] ids) {
+        List<User> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(getUserById(id));
+        }
+        return result;
     }
-}
\ No newline at end of file
+}
@@ -1,30 +1,85 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.metrics.SqlStatementCreator;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.LiveIdFilter;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.stream.Collectors;
 
 @Component
 @Primary
 @Qualifier("dbUserStorage")
 public class UserDbStorage implements UserStorage {
 
+    // Сколько строк драйвер держит в памяти при потоковом обходе таблицы
+    private static final int STREAM_FETCH_SIZE = 1000;
+    // Строк в одном пакете вставки или удаления друзей
+    private static final int BATCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final RowMapper<User> userRowMapper;
+    // ID живых пользователей: запросы к несуществующим отсекаются до SQL
+    private final LiveIdFilter userIds = new LiveIdFilter("users");
+    private final boolean idFilterEnabled;
 
+    // Без фильтра ID: для хранилищ, созданных вручную, например в замерах
     public UserDbStorage(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, false);
+    }
+
+    // Фильтр ID верен, только пока все вставки идут через это хранилище. Если в ту же БД
+    // пишут другие экземпляры приложения или внешние процессы, фильтр нужно выключить
+    @Autowired
+    public UserDbStorage(JdbcTemplate jdbcTemplate,
+                         @Value("${filmorate.id-filter.enabled:true}") boolean idFilterEnabled) {
         this.jdbcTemplate = jdbcTemplate;
         this.userRowMapper = createUserRowMapper();
+        this.idFilterEnabled = idFilterEnabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIdFilter() {
+        if (!idFilterEnabled) {
+            return;
+        }
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        userIds.rebuild(count != null ? count : 0, consumer ->
+                jdbcTemplate.query("SELECT user_id FROM users", ps -> ps.setFetchSize(STREAM_FETCH_SIZE), rs -> {
+                    consumer.accept(rs.getLong(1));
+                }));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.id-filter.check-interval-ms:60000}",
+            initialDelayString = "${filmorate.id-filter.check-interval-ms:60000}")
+    public void rebuildIdFilterIfNeeded() {
+        if (userIds.needsRebuild()) {
+            rebuildIdFilter();
+        }
+    }
+
+    public LiveIdFilter.Stats getIdFilterStats() {
+        return userIds.getStats();
     }
 
     private RowMapper<User> createUserRowMapper() {
@@ -40,88 +95,199 @@ public class UserDbStorage implements UserStorage {
                 user.setBirthday(birthday.toLocalDate());
             }
 
-            // Загружаем друзей
-            Set<Long> friends = getFriendsIds(user.getId());
-            user.setFriends(friends);
-
+            // Друзья подгружаются одним запросом на весь результат в loadFriendsForUsers
+            user.setFriends(new HashSet<>());
             return user;
         };
     }
 
-    private Set<Long> getFriendsIds(long userId) {
-        String sql = "SELECT friend_id FROM friends WHERE user_id = ?";
-        List<Long> friendIds = jdbcTemplate.queryForList(sql, Long.class, userId);
-        return new HashSet<>(friendIds);
+    private List<User> loadFriendsForUsers(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        List<Long> userIds = users.stream()
+                .map(User::getId)
+                .collect(Collectors.toList());
+
+        String inClause = userIds.stream()
+                .map(id -> "?")
+                .collect(Collectors.joining(","));
+
+        String sql = "SELECT user_id, friend_id FROM friends WHERE user_id IN (" + inClause + ")";
+
+        Map<Long, Set<Long>> friendsByUserId = jdbcTemplate.query(sql, userIds.toArray(), this::extractFriends);
+
+        applyFriends(users, friendsByUserId);
+        return users;
+    }
+
+    private List<User> loadAllFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+
+        // Для полной выборки пользователей IN-список не нужен: читаем таблицу друзей целиком
+        Map<Long, Set<Long>> friendsByUserId = jdbcTemplate.query(
+                "SELECT user_id, friend_id FROM friends", this::extractFriends);
+
+        applyFriends(users, friendsByUserId);
+        return users;
+    }
+
+    private Map<Long, Set<Long>> extractFriends(ResultSet rs) throws SQLException {
+        Map<Long, Set<Long>> result = new HashMap<>();
+        while (rs.next()) {
+            result.computeIfAbsent(rs.getLong("user_id"), k -> new HashSet<>()).add(rs.getLong("friend_id"));
+        }
+        return result;
+    }
+
+    private void applyFriends(List<User> users, Map<Long, Set<Long>> friendsByUserId) {
+        for (User user : users) {
+            user.setFriends(friendsByUserId.getOrDefault(user.getId(), new HashSet<>()));
+        }
     }
 
-    private void saveFriends(long userId, Set<Long> friends) {
-        jdbcTemplate.update("DELETE FROM friends WHERE user_id = ?", userId);
-        if (friends == null || friends.isEmpty()) return;
+    // Пишется только разница с текущими строками, вставки и удаления — пакетами.
+    // Если друзья не изменились, в friends не уходит ни одной записи, а у сохранённых
+    // дружб остаются статус и дата. У нового пользователя строк ещё нет, чтение пропускается
+    private void saveFriends(long userId, Set<Long> friends, boolean newUser) {
+        Set<Long> target = new TreeSet<>();
+        if (friends != null) {
+            friends.stream().filter(Objects::nonNull).forEach(target::add);
+        }
+        Set<Long> current = new HashSet<>();
+        if (!newUser) {
+            for (long friendId : getFriendIds(userId)) {
+                current.add(friendId);
+            }
+        }
 
-        String insertFriendSql = "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)";
-        for (Long friendId : friends) {
-            jdbcTemplate.update(insertFriendSql, userId, friendId);
+        List<Long> toDelete = current.stream().filter(id -> !target.contains(id)).sorted().toList();
+        List<Long> toInsert = target.stream().filter(id -> !current.contains(id)).toList();
+        batchFriends("DELETE FROM friends WHERE user_id = ? AND friend_id = ?", userId, toDelete);
+        batchFriends("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", userId, toInsert);
+    }
+
+    private static Set<Long> normalizeFriends(Set<Long> friends) {
+        Set<Long> normalized = new HashSet<>();
+        if (friends != null) {
+            friends.stream().filter(Objects::nonNull).forEach(normalized::add);
         }
+        return normalized;
     }
 
+    private void batchFriends(String sql, long userId, List<Long> friendIds) {
+        if (friendIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(sql, friendIds, BATCH_SIZE, (ps, friendId) -> {
+            ps.setLong(1, userId);
+            ps.setLong(2, friendId);
+        });
+    }
+
+    // Одна транзакция из 1–2 запросов: INSERT и пакет друзей, если они есть.
+    // Возвращается записанный пользователь без повторного чтения
     @Override
+    @Transactional
     public User addUser(User user) {
         String sql = "INSERT INTO users (name, email, login, birthday) VALUES (?, ?, ?, ?)";
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        jdbcTemplate.update(new SqlStatementCreator(sql, (connection, insertSql) -> {
+            PreparedStatement ps = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
             ps.setString(1, user.getName());
             ps.setString(2, user.getEmail());
             ps.setString(3, user.getLogin());
             ps.setDate(4, user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null);
             return ps;
-        }, keyHolder);
+        }), keyHolder);
 
         long generatedId = keyHolder.getKey().longValue();
         user.setId(generatedId);
+        userIds.add(generatedId);
 
-        saveFriends(generatedId, user.getFriends());
+        user.setFriends(normalizeFriends(user.getFriends()));
+        saveFriends(generatedId, user.getFriends(), true);
 
-        return getUserById(generatedId);
+        return user;
     }
 
+    // 2–4 запроса в одной транзакции: UPDATE, чтение текущих друзей и пакеты их удаления
+    // и вставки, если набор изменился
     @Override
+    @Transactional
     public User updateUser(User user) {
         String sql = "UPDATE users SET name = ?, email = ?, login = ?, birthday = ? WHERE user_id = ?";
 
-        jdbcTemplate.update(sql,
+        int updated = jdbcTemplate.update(sql,
                 user.getName(),
                 user.getEmail(),
                 user.getLogin(),
                 user.getBirthday() != null ? Date.valueOf(user.getBirthday()) : null,
                 user.getId());
 
-        saveFriends(user.getId(), user.getFriends());
+        if (updated == 0) {
+            throw new NotFoundException("Пользователь с ID " + user.getId() + " не найден");
+        }
+
+        user.setFriends(normalizeFriends(user.getFriends()));
+        saveFriends(user.getId(), user.getFriends(), false);
 
-        return getUserById(user.getId());
+        return user;
     }
 
+    // 3 запроса в одной транзакции: ID друзей для ответа, счётчики лайков пользователя и DELETE,
+    // который сам отдаёт удалённую строку. Дружбы в обе стороны и лайки удаляет каскад внешних ключей
     @Override
+    @Transactional
     public User deleteUser(long id) {
-        User user = getUserById(id);
-        if (user != null) {
-            jdbcTemplate.update("DELETE FROM friends WHERE user_id = ? OR friend_id = ?", id, id);
-            jdbcTemplate.update("DELETE FROM likes WHERE user_id = ?", id);
-            jdbcTemplate.update("DELETE FROM users WHERE user_id = ?", id);
+        if (!userIds.mightContain(id)) {
+            return null;
         }
+        long[] friendIds = getFriendIds(id);
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)", id);
+        User user = jdbcTemplate.query("SELECT * FROM OLD TABLE (DELETE FROM users WHERE user_id = ?)",
+                        userRowMapper, id)
+                .stream().findFirst().orElse(null);
+
+        if (user == null) {
+            userIds.recordFalsePositive();
+            return null;
+        }
+        for (long friendId : friendIds) {
+            user.addFriend(friendId);
+        }
+        userIds.remove(id);
         return user;
     }
 
     @Override
     public List<User> getAllUsers() {
-        return jdbcTemplate.query("SELECT * FROM users", userRowMapper);
+        return loadAllFriends(jdbcTemplate.query("SELECT * FROM users", userRowMapper));
+    }
+
+    @Override
+    public List<User> getUsers(long afterId, int limit) {
+        // Keyset-пагинация: страница читается по первичному ключу без OFFSET
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        return loadFriendsForUsers(jdbcTemplate.query(sql, userRowMapper, afterId, limit));
     }
 
     @Override
     public User getUserById(long id) {
-        return jdbcTemplate.query("SELECT * FROM users WHERE user_id = ?", userRowMapper, id)
-                .stream().findFirst().orElse(null);
+        if (!userIds.mightContain(id)) {
+            return null;
+        }
+        List<User> users = jdbcTemplate.query("SELECT * FROM users WHERE user_id = ?", userRowMapper, id);
+        if (users.isEmpty()) {
+            userIds.recordFalsePositive();
+            return null;
+        }
+        return loadFriendsForUsers(users).get(0);
     }
 
     @Override
@@ -129,16 +295,96 @@ public class UserDbStorage implements UserStorage {
         return Optional.ofNullable(getUserById(id));
     }
 
+    @Override
+    public List<User> getUsersByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Все ID уходят одним параметром-массивом: два запроса при любом их количестве
+        // и один и тот же текст SQL, в отличие от IN-списка переменной длины
+        Object idArray = ids.toArray(new Long[0]);
+        List<User> users = jdbcTemplate.query("SELECT * FROM users WHERE user_id = ANY(?)",
+                userRowMapper, idArray);
+        Map<Long, Set<Long>> friendsByUserId = jdbcTemplate.query(
+                "SELECT user_id, friend_id FROM friends WHERE user_id = ANY(?)", this::extractFriends, idArray);
+        applyFriends(users, friendsByUserId);
+
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+
+        List<User> result = new ArrayList<>(usersById.size());
+        for (Long id : ids) {
+            User user = usersById.get(id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<Long> findExistingUserIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        String inClause = String.join(",", Collections.nCopies(ids.size(), "?"));
+        String sql = "SELECT user_id FROM users WHERE user_id IN (" + inClause + ")";
+        return new HashSet<>(jdbcTemplate.queryForList(sql, Long.class, ids.toArray()));
+    }
+
+    @Override
+    public boolean userExists(long id) {
+        return userIds.mightContain(id) && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users WHERE user_id = ?)", Boolean.class, id));
+    }
+
+    // Условная вставка: строка появляется, только если оба пользователя есть и дружбы ещё нет.
+    // Если не вставилось ничего, одним запросом выясняется, кого не хватило; иначе дружба уже была
     @Override
     public void addFriend(long userId, long friendId) {
-        String sql = "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+        requireKnownUsers(userId, friendId);
+        String sql = "INSERT INTO friends (user_id, friend_id) " +
+                "SELECT u.user_id, f.user_id FROM users u JOIN users f ON f.user_id = ? WHERE u.user_id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM friends WHERE user_id = ? AND friend_id = ?)";
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(sql, friendId, userId, userId, friendId);
+        } catch (DuplicateKeyException e) {
+            // Ту же дружбу успел добавить параллельный запрос
+            return;
+        }
+        if (inserted == 0) {
+            requireUsers(userId, friendId);
+        }
     }
 
     @Override
     public void removeFriend(long userId, long friendId) {
+        requireKnownUsers(userId, friendId);
         String sql = "DELETE FROM friends WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        if (jdbcTemplate.update(sql, userId, friendId) == 0) {
+            requireUsers(userId, friendId);
+        }
+    }
+
+    private void requireKnownUsers(long userId, long friendId) {
+        for (long id : new long[]{userId, friendId}) {
+            if (!userIds.mightContain(id)) {
+                throw new NotFoundException("Пользователь с ID " + id + " не найден");
+            }
+        }
+    }
+
+    private void requireUsers(long userId, long friendId) {
+        Set<Long> existing = findExistingUserIds(List.of(userId, friendId));
+        for (long id : new long[]{userId, friendId}) {
+            if (!existing.contains(id)) {
+                throw new NotFoundException("Пользователь с ID " + id + " не найден");
+            }
+        }
     }
 
     @Override
@@ -146,7 +392,61 @@ public class UserDbStorage implements UserStorage {
         String sql = "SELECT u.* FROM users u " +
                 "JOIN friends f ON u.user_id = f.friend_id " +
                 "WHERE f.user_id = ?";
-        return jdbcTemplate.query(sql, userRowMapper, userId);
+        return loadFriendsForUsers(jdbcTemplate.query(sql, userRowMapper, userId));
+    }
+
+    @Override
+    public long[] getFriendIds(long userId) {
+        // Порядок отдаёт индекс уникального ограничения (user_id, friend_id), ID не упаковываются
+        String sql = "SELECT friend_id FROM friends WHERE user_id = ? ORDER BY friend_id";
+        return jdbcTemplate.query(sql, rs -> {
+            long[] ids = new long[16];
+            int size = 0;
+            while (rs.next()) {
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = rs.getLong(1);
+            }
+            return Arrays.copyOf(ids, size);
+        }, userId);
+    }
+
+    @Override
+    public Map<Long, long[]> getFriendIdsByUserIds(List<Long> userIds) {
+        Map<Long, long[]> result = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT user_id, friend_id FROM friends WHERE user_id = ANY(?) ORDER BY user_id, friend_id";
+        jdbcTemplate.query(sql, rs -> {
+            long currentUser = 0;
+            long[] ids = new long[16];
+            int size = 0;
+            while (rs.next()) {
+                long userId = rs.getLong(1);
+                if (userId != currentUser) {
+                    if (size > 0) {
+                        result.put(currentUser, Arrays.copyOf(ids, size));
+                    }
+                    currentUser = userId;
+                    size = 0;
+                }
+                if (size == ids.length) {
+                    ids = Arrays.copyOf(ids, size * 2);
+                }
+                ids[size++] = rs.getLong(2);
+            }
+            if (size > 0) {
+                result.put(currentUser, Arrays.copyOf(ids, size));
+            }
+            return null;
+        }, (Object) userIds.toArray(new Long[0]));
+
+        for (Long userId : userIds) {
+            result.putIfAbsent(userId, new long[0]);
+        }
+        return result;
     }
 
     @Override
@@ -155,6 +455,6 @@ public class UserDbStorage implements UserStorage {
                 "JOIN friends f1 ON u.user_id = f1.friend_id " +
                 "JOIN friends f2 ON u.user_id = f2.friend_id " +
                 "WHERE f1.user_id = ? AND f2.user_id = ?";
-        return jdbcTemplate.query(sql, userRowMapper, userId1, userId2);
+        return loadFriendsForUsers(jdbcTemplate.query(sql, userRowMapper, userId1, userId2));
     }
 }
\ No newline at end of file
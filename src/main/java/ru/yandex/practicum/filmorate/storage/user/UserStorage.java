@@ -2,8 +2,11 @@ package ru.yandex.practicum.filmorate.storage.user;
 
 import ru.yandex.practicum.filmorate.model.User;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 public interface UserStorage {
 
@@ -15,15 +18,32 @@ public interface UserStorage {
 
     List<User> getAllUsers();
 
+    List<User> getUsers(long afterId, int limit);
+
     User getUserById(long id);
 
     Optional<User> findUserById(long id);
 
+    // Пользователи в порядке переданных ID, отсутствующие пропускаются
+    List<User> getUsersByIds(List<Long> ids);
+
+    // ID из переданных, для которых пользователь существует
+    Set<Long> findExistingUserIds(Collection<Long> ids);
+
+    boolean userExists(long id);
+
+    // NotFoundException, если нет кого-то из двух пользователей
     void addFriend(long userId, long friendId);
 
     void removeFriend(long userId, long friendId);
 
     List<User> getFriends(long userId);
 
+    // ID друзей пользователя по возрастанию
+    long[] getFriendIds(long userId);
+
+    // То же для нескольких пользователей сразу; у пользователей без друзей пустой массив
+    Map<Long, long[]> getFriendIdsByUserIds(List<Long> userIds);
+
     List<User> getCommonFriends(long userId1, long userId2);
 }
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Фильтр Блума для ключей long: «точно нет» или «возможно есть».
+// Биты в AtomicLongArray, установка через CAS, поэтому параллельные put не теряют биты друг друга
+// и ложноотрицательных ответов не бывает. Удаления нет: удалённый ключ остаётся ложноположительным
+public class LongBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitMask;
+    private final int hashes;
+
+    // Размер под expectedKeys ключей с долей ложноположительных не выше falsePositiveRate;
+    // число бит округляется вверх до степени двойки
+    public LongBloomFilter(long expectedKeys, double falsePositiveRate) {
+        long keys = Math.max(1, expectedKeys);
+        double optimalBits = -keys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long bits = Math.max(64, Long.highestOneBit((long) Math.ceil(optimalBits) - 1) << 1);
+        words = new AtomicLongArray(Math.toIntExact(bits >>> 6));
+        bitMask = bits - 1;
+        hashes = (int) Math.max(1, Math.min(16, Math.round((double) bits / keys * Math.log(2))));
+    }
+
+    public void put(long key) {
+        long hash1 = mix(key);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (hash1 + i * hash2) & bitMask;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(long key) {
+        long hash1 = mix(key);
+        long hash2 = mix(hash1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (hash1 + i * hash2) & bitMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitMask + 1;
+    }
+
+    public int hashCount() {
+        return hashes;
+    }
+
+    // Ожидаемая доля ложноположительных после добавления keys различных ключей
+    public double expectedFalsePositiveRate(long keys) {
+        return Math.pow(1 - Math.exp(-(double) hashes * keys / bitSize()), hashes);
+    }
+
+    // Финальное перемешивание MurmurHash3: последовательные ID расходятся по всем битам
+    private static long mix(long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.util;
+
+// Счётчики int по ключам long на открытой адресации с линейным пробированием, без упаковки.
+// Ключ 0 занят под пустую ячейку, поэтому карта хранит только ненулевые ключи (ID из БД)
+public class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public void add(long key, int delta) {
+        if (key == 0) {
+            throw new IllegalArgumentException("Ключ 0 не поддерживается");
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == key) {
+            values[slot] += delta;
+            return;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size * 2 > keys.length) {
+            resize();
+        }
+    }
+
+    public int get(long key) {
+        if (key == 0) {
+            return 0;
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0;
+    }
+
+    // Удаляет ключ со сдвигом следующих элементов цепочки назад, без меток удаления
+    public void remove(long key) {
+        if (key == 0) {
+            return;
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            // Элемент переносится в дырку, если его домашняя ячейка не лежит между дыркой и им
+            int home = slot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+        size--;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void addAll(LongIntHashMap other) {
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.keys[slot] != 0) {
+                add(other.keys[slot], other.values[slot]);
+            }
+        }
+    }
+
+    public void forEach(EntryVisitor visitor) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != 0) {
+                visitor.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    // До limit ключей с наибольшими значениями, при равенстве значений меньший ключ раньше
+    public long[] topKeys(int limit) {
+        int heapSize = 0;
+        int[] heap = new int[Math.max(0, Math.min(limit, size))];
+        if (heap.length == 0) {
+            return new long[0];
+        }
+        // Куча слотов с худшим из отобранных в корне
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (better(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        return result;
+    }
+
+    private boolean better(int slot, int otherSlot) {
+        if (values[slot] != values[otherSlot]) {
+            return values[slot] > values[otherSlot];
+        }
+        return keys[slot] < keys[otherSlot];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!better(heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int worst = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && better(heap[worst], heap[left])) {
+                worst = left;
+            }
+            if (right < heapSize && better(heap[worst], heap[right])) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(heap, index, worst);
+            index = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != 0) {
+                add(oldKeys[slot], oldValues[slot]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    @FunctionalInterface
+    public interface EntryVisitor {
+        void accept(long key, int value);
+    }
+}
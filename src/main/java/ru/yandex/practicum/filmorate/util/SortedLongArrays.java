@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.Arrays;
+
+// Операции над отсортированными по возрастанию массивами long без упаковки в Long
+public final class SortedLongArrays {
+
+    // Во сколько раз один массив должен быть длиннее другого, чтобы галоп выиграл у слияния
+    private static final int GALLOP_RATIO = 16;
+
+    private SortedLongArrays() {
+    }
+
+    // Пересечение a[0..aSize) и b[0..bSize): слияние при близких размерах,
+    // галоп по большему массиву, если один сильно длиннее другого
+    public static long[] intersect(long[] a, int aSize, long[] b, int bSize) {
+        if (aSize > bSize) {
+            return intersect(b, bSize, a, aSize);
+        }
+        long[] result = new long[aSize];
+        int count = 0;
+
+        if ((long) aSize * GALLOP_RATIO < bSize) {
+            int from = 0;
+            for (int i = 0; i < aSize && from < bSize; i++) {
+                long value = a[i];
+                from = gallop(b, from, bSize, value);
+                if (from < bSize && b[from] == value) {
+                    result[count++] = value;
+                    from++;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < aSize && j < bSize) {
+                long left = a[i];
+                long right = b[j];
+                if (left < right) {
+                    i++;
+                } else if (left > right) {
+                    j++;
+                } else {
+                    result[count++] = left;
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public static long[] intersect(long[] a, long[] b) {
+        return intersect(a, a.length, b, b.length);
+    }
+
+    // Первая позиция в values[from..to) со значением не меньше key:
+    // шаги 1, 2, 4, ... до перелёта, затем двоичный поиск в последнем отрезке
+    static int gallop(long[] values, int from, int to, long key) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < to && values[high] < key) {
+            low = high + 1;
+            high = from + step;
+            step <<= 1;
+        }
+        high = Math.min(high, to);
+        int index = Arrays.binarySearch(values, low, high, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Детерминированная равномерная выборка не больше max элементов, порядок сохраняется.
+    // Если выборка не нужна, возвращается тот же массив
+    public static long[] sample(long[] values, int max) {
+        if (values.length <= max) {
+            return values;
+        }
+        long[] sampled = new long[max];
+        for (int i = 0; i < max; i++) {
+            sampled[i] = values[(int) ((long) values.length * i / max)];
+        }
+        return sampled;
+    }
+}
@@ -0,0 +1,138 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Множество long на отсортированном массиве: 8 байт на элемент вместо Long и узла HashMap.
+// Вставка и удаление сдвигают хвост массива, поэтому рассчитано на списки до десятков тысяч
+// элементов; ID обычно растут, и новые элементы дописываются в конец без сдвига
+public class SortedLongSet {
+
+    private static final long[] EMPTY = new long[0];
+
+    private long[] values = EMPTY;
+    private int size;
+
+    public boolean add(long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+        }
+        System.arraycopy(values, index, values, index + 1, size - index);
+        values[index] = value;
+        size++;
+        return true;
+    }
+
+    public boolean remove(long value) {
+        int index = Arrays.binarySearch(values, 0, size, value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return values[index];
+    }
+
+    public void clear() {
+        values = EMPTY;
+        size = 0;
+    }
+
+    // Отпускает запас ёмкости после массовой загрузки
+    public void trimToSize() {
+        if (values.length != size) {
+            values = size == 0 ? EMPTY : Arrays.copyOf(values, size);
+        }
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+
+    public long[] intersect(SortedLongSet other) {
+        return SortedLongArrays.intersect(values, size, other.values, other.size);
+    }
+
+    // Пересечение с отсортированным по возрастанию массивом
+    public long[] intersect(long[] sorted) {
+        return SortedLongArrays.intersect(values, size, sorted, sorted.length);
+    }
+
+    // Живое представление в виде Set<Long>: значения упаковываются только при обходе
+    public Set<Long> asSet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Long> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Long next() {
+                        if (next >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        return values[next++];
+                    }
+
+                    @Override
+                    public void remove() {
+                        SortedLongSet.this.remove(values[--next]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Long value && SortedLongSet.this.contains(value);
+            }
+
+            @Override
+            public boolean add(Long value) {
+                return SortedLongSet.this.add(value);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return o instanceof Long value && SortedLongSet.this.remove(value);
+            }
+
+            @Override
+            public void clear() {
+                SortedLongSet.this.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Разбиение текста на слова для поиска: словом считается последовательность букв и цифр
+// любого алфавита, регистр не важен, «ё» приравнивается к «е». Остальные символы разделители
+public final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(normalize(c));
+            } else if (!token.isEmpty()) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (!token.isEmpty()) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // Приводит строку к виду, в котором хранятся слова; разделители не трогает
+    public static String normalize(String text) {
+        StringBuilder result = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            result.append(normalize(text.charAt(i)));
+        }
+        return result.toString();
+    }
+
+    private static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+}
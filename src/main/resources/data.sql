@@ -13,4 +13,13 @@ MERGE INTO genres (genre_id, genre_name) KEY (genre_id) VALUES
     (3, 'Мультфильм'),
     (4, 'Триллер'),
     (5, 'Документальный'),
-    (6, 'Боевик');
\ No newline at end of file
+    (6, 'Боевик');
+
+-- Заполнение счётчика лайков у баз, созданных до его появления. Выполняется один раз:
+-- флаг проверяется первым, и на следующих запусках подсчёт по likes не идёт.
+-- Дальнейшие расхождения исправляет FilmDbStorage.reconcileLikeCounts
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
+WHERE NOT EXISTS (SELECT 1 FROM schema_migrations WHERE migration_id = 'films_likes_count')
+  AND likes_count <> (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id);
+
+MERGE INTO schema_migrations (migration_id) KEY (migration_id) VALUES ('films_likes_count');
\ No newline at end of file
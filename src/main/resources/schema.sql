@@ -1,3 +1,9 @@
+-- Однократные миграции данных из data.sql: строка появляется после первого применения
+CREATE TABLE IF NOT EXISTS schema_migrations (
+    migration_id VARCHAR(100) PRIMARY KEY,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    );
+
 CREATE TABLE IF NOT EXISTS users (
     user_id BIGINT PRIMARY KEY AUTO_INCREMENT,
     name VARCHAR(150) NOT NULL,
@@ -19,9 +25,19 @@ CREATE TABLE IF NOT EXISTS films (
     release_date DATE NOT NULL,
     duration INT NOT NULL,
     mpa_rating_id BIGINT,
+    likes_count BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT fk_films_mpa FOREIGN KEY (mpa_rating_id) REFERENCES mpa_ratings(rating_id)
     );
 
+-- Счётчик лайков для баз, созданных до его появления
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS idx_films_likes_count ON films (likes_count DESC, film_id);
+
+-- Популярность с фильтром по рейтингу или году, пока индекс в памяти не построен
+CREATE INDEX IF NOT EXISTS idx_films_mpa_likes ON films (mpa_rating_id, likes_count DESC, film_id);
+CREATE INDEX IF NOT EXISTS idx_films_release_date ON films (release_date);
+
 CREATE TABLE IF NOT EXISTS genres (
     genre_id BIGINT PRIMARY KEY AUTO_INCREMENT,
     genre_name VARCHAR(100) NOT NULL
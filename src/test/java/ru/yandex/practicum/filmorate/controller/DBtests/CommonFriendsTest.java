@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.FriendAdjacencyCache;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(UserDbStorage.class)
+class CommonFriendsTest {
+
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private UserService userService;
+    private FriendAdjacencyCache friendAdjacencyCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM users");
+        friendAdjacencyCache = new FriendAdjacencyCache(1_000_000);
+        userService = new UserService(userStorage, friendAdjacencyCache,
+                new FriendSuggestionEngine(1000, 1000, 256));
+    }
+
+    @Test
+    void testCommonFriendsOfHighDegreeUsers() {
+        // Размер достаточен для слияния длинных отсортированных списков; задержки на
+        // десятках тысяч друзей меряет CommonFriendsBenchmark
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 600)");
+        long base = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class) - 1;
+        long first = createUser("first");
+        long second = createUser("second");
+        // У первого друзья с 1-го по 400-го, у второго с 201-го по 600-го: общих 200
+        jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) " +
+                "SELECT ?, user_id FROM users WHERE user_id BETWEEN ? AND ?", first, base + 1, base + 400);
+        jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) " +
+                "SELECT ?, user_id FROM users WHERE user_id BETWEEN ? AND ?", second, base + 201, base + 600);
+
+        List<User> common = userService.getCommonFriends(first, second);
+        List<User> warmCommon = userService.getCommonFriends(first, second);
+
+        assertEquals(200, common.size());
+        assertEquals(common, warmCommon);
+        assertTrue(common.stream().allMatch(user -> Integer.parseInt(user.getName()) > 200
+                && Integer.parseInt(user.getName()) <= 400));
+        // Повторный запрос берёт списки друзей из кэша
+        assertEquals(2, friendAdjacencyCache.getStats().users());
+        assertEquals(2, friendAdjacencyCache.getStats().hits());
+    }
+
+    @Test
+    void testCommonFriendsSeeFriendshipChanges() {
+        long first = createUser("first");
+        long second = createUser("second");
+        long friend = createUser("friend");
+        userService.addFriend(first, friend);
+
+        assertTrue(userService.getCommonFriends(first, second).isEmpty());
+
+        userService.addFriend(second, friend);
+        assertEquals(List.of(friend), userService.getCommonFriends(first, second).stream()
+                .map(User::getId).toList());
+
+        userService.deleteFriend(first, friend);
+        assertTrue(userService.getCommonFriends(first, second).isEmpty());
+    }
+
+    @Test
+    void testCommonFriendsOfMissingUser() {
+        long first = createUser("first");
+
+        NotFoundException exception = assertThrows(NotFoundException.class,
+                () -> userService.getCommonFriends(first, 999_999));
+        assertEquals("Пользователь с ID 999999 не найден", exception.getMessage());
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setName(login);
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        return userStorage.addUser(user).getId();
+    }
+}
@@ -8,24 +8,37 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmFacets;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mpa_rating.MpaRatingDbStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import javax.sql.DataSource;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @JdbcTest
+@WithoutIdFilter
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
 @Import({FilmDbStorage.class, MpaRatingDbStorage.class, GenreDbStorage.class, UserDbStorage.class})
@@ -36,6 +49,7 @@ public class FilmDbStorageTest {
     private final GenreDbStorage genreDbStorage;
     private final UserDbStorage userDbStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
 
     private User testUser1;
     private User testUser2;
@@ -253,6 +267,68 @@ public class FilmDbStorageTest {
         assertTrue(updatedFilm.getGenres().isEmpty());
     }
 
+    @Test
+    void testUpdateFilmWritesOnlyChangedGenres() {
+        Film film = createTestFilm("Genres", "Desc", LocalDate.of(2019, 5, 5), 90, 1L,
+                Arrays.asList(1L, 2L, 3L));
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+
+        // Жанры не изменились: UPDATE фильма, чтение текущих жанров и загрузка результата
+        countingStorage.updateFilm(film);
+        int unchanged = countingTemplate.getStatementCount();
+
+        // Один жанр убран, один добавлен: ровно по одному пакету удаления и вставки
+        film.setGenres(new HashSet<>(Arrays.asList(
+                genreDbStorage.getGenreById(2L),
+                genreDbStorage.getGenreById(3L),
+                genreDbStorage.getGenreById(4L))));
+        countingTemplate.reset();
+        Film updated = countingStorage.updateFilm(film);
+        assertEquals(unchanged + 2, countingTemplate.getStatementCount());
+        assertEquals(Set.of(2L, 3L, 4L),
+                updated.getGenres().stream().map(Genre::getId).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testFilmWritesRoundTrips() {
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+        Film film = new Film();
+        film.setName("Round trips");
+        film.setDescription("Desc");
+        film.setReleaseDate(LocalDate.of(2019, 5, 5));
+        film.setDuration(90);
+        film.setMpa(mpaRatingDbStorage.getMpaById(2L));
+        film.setGenres(new HashSet<>(Arrays.asList(genreDbStorage.getGenreById(3L), genreDbStorage.getGenreById(1L))));
+
+        // INSERT фильма и пакет жанров; ответ собирается из записанного
+        Film added = countingStorage.addFilm(film);
+        assertEquals(2, countingTemplate.getStatementCount());
+        assertEquals(List.of(1L, 3L), added.getGenres().stream().map(Genre::getId).toList());
+        assertEquals(added.getGenres(), filmDbStorage.getFilmById(added.getId()).getGenres());
+        assertEquals("PG", added.getMpa().getName());
+
+        // UPDATE и чтение текущих жанров
+        countingTemplate.reset();
+        countingStorage.updateFilm(added);
+        assertEquals(2, countingTemplate.getStatementCount());
+
+        // Жанры фильма и DELETE с возвратом строки; лайки и жанры удаляет каскад
+        User user = createTestUser("Fan", "fan@example.com", "fan", LocalDate.of(1990, 1, 1));
+        filmDbStorage.addLike(added.getId(), user.getId());
+        countingTemplate.reset();
+        Film deleted = countingStorage.deleteFilm(added.getId());
+        assertEquals(2, countingTemplate.getStatementCount());
+        assertEquals("Round trips", deleted.getName());
+        assertEquals("PG", deleted.getMpa().getName());
+        assertEquals(2, deleted.getGenres().size());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM film_genres WHERE film_id = ?", Integer.class, added.getId()));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM likes WHERE film_id = ?", Integer.class, added.getId()));
+    }
+
     @Test
     void testUpdateFilmRemoveMpa() {
         Film film = createTestFilm(
@@ -353,4 +429,299 @@ public class FilmDbStorageTest {
                 Integer.class, film.getId(), testUser1.getId());
         assertEquals(0, likeCountAfterRemove);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testLikesCountMaintainedByLikes() {
+        Film film = createTestFilm("Counter Film", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+
+        filmDbStorage.addLike(film.getId(), testUser1.getId());
+        filmDbStorage.addLike(film.getId(), testUser2.getId());
+        assertEquals(2L, getLikesCount(film.getId()));
+
+        filmDbStorage.removeLike(film.getId(), testUser1.getId());
+        assertEquals(1L, getLikesCount(film.getId()));
+        assertTrue(filmDbStorage.findLikeCountMismatches().isEmpty());
+    }
+
+    @Test
+    void testDuplicateLikeDoesNotChangeCounter() {
+        Film film = createTestFilm("Duplicate Like", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+
+        filmDbStorage.addLike(film.getId(), testUser1.getId());
+        assertThrows(ValidationException.class, () -> filmDbStorage.addLike(film.getId(), testUser1.getId()));
+
+        assertEquals(1L, getLikesCount(film.getId()));
+    }
+
+    @Test
+    void testLikeWritesReportMissingSideInTwoStatements() {
+        Film film = createTestFilm("Round Trips", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+
+        // Условная вставка и счётчик, без загрузки фильма и пользователя
+        countingStorage.addLike(film.getId(), testUser1.getId());
+        assertEquals(2, countingTemplate.getStatementCount());
+
+        countingTemplate.reset();
+        countingStorage.removeLike(film.getId(), testUser1.getId());
+        assertEquals(2, countingTemplate.getStatementCount());
+        assertEquals(0L, getLikesCount(film.getId()));
+
+        NotFoundException noFilm = assertThrows(NotFoundException.class,
+                () -> countingStorage.addLike(9999L, testUser1.getId()));
+        assertEquals("Фильм с ID 9999 не найден", noFilm.getMessage());
+        NotFoundException noUser = assertThrows(NotFoundException.class,
+                () -> countingStorage.addLike(film.getId(), 9999L));
+        assertEquals("Пользователь с ID 9999 не найден", noUser.getMessage());
+        NotFoundException noLike = assertThrows(NotFoundException.class,
+                () -> countingStorage.removeLike(film.getId(), testUser2.getId()));
+        assertEquals("Лайк не найден", noLike.getMessage());
+        assertEquals(0L, getLikesCount(film.getId()));
+
+        assertTrue(filmDbStorage.filmExists(film.getId()));
+        assertFalse(filmDbStorage.filmExists(9999L));
+    }
+
+    @Test
+    void testGetPopularFilmsOrderedByCounter() {
+        Film film1 = createTestFilm("Film 1", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+        Film film2 = createTestFilm("Film 2", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, Arrays.asList(2L));
+        Film film3 = createTestFilm("Film 3", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+
+        filmDbStorage.addLike(film2.getId(), testUser1.getId());
+        filmDbStorage.addLike(film2.getId(), testUser2.getId());
+        filmDbStorage.addLike(film3.getId(), testUser1.getId());
+
+        List<Film> popular = filmDbStorage.getPopularFilms(2);
+        assertEquals(2, popular.size());
+        assertEquals(film2.getId(), popular.get(0).getId());
+        assertEquals(film3.getId(), popular.get(1).getId());
+        assertEquals(1, popular.get(0).getGenres().size());
+
+        List<Film> all = filmDbStorage.getPopularFilms(10);
+        assertEquals(film1.getId(), all.get(2).getId());
+    }
+
+    @Test
+    void testGetPopularFilmsWithFilter() {
+        Film drama1999 = createTestFilm("Drama 1999", "Desc", LocalDate.of(1999, 5, 1), 120, 3L, Arrays.asList(2L));
+        Film comedyDrama1999 = createTestFilm("Comedy 1999", "Desc", LocalDate.of(1999, 12, 31), 120, 1L, Arrays.asList(1L, 2L));
+        Film drama2000 = createTestFilm("Drama 2000", "Desc", LocalDate.of(2000, 1, 1), 120, 3L, Arrays.asList(2L));
+        filmDbStorage.addLike(comedyDrama1999.getId(), testUser1.getId());
+        filmDbStorage.addLike(comedyDrama1999.getId(), testUser2.getId());
+        filmDbStorage.addLike(drama2000.getId(), testUser1.getId());
+
+        assertEquals(List.of(comedyDrama1999.getId(), drama2000.getId(), drama1999.getId()),
+                ids(filmDbStorage.getPopularFilms(10, new PopularFilmsFilter(2L, null, null))));
+        assertEquals(List.of(comedyDrama1999.getId(), drama1999.getId()),
+                ids(filmDbStorage.getPopularFilms(10, new PopularFilmsFilter(2L, 1999, null))));
+        assertEquals(List.of(drama1999.getId()),
+                ids(filmDbStorage.getPopularFilms(10, new PopularFilmsFilter(2L, 1999, 3L))));
+        assertEquals(List.of(comedyDrama1999.getId()),
+                ids(filmDbStorage.getPopularFilms(1, new PopularFilmsFilter(null, 1999, null))));
+        assertTrue(filmDbStorage.getPopularFilms(10, new PopularFilmsFilter(6L, null, null)).isEmpty());
+        assertEquals(2, filmDbStorage.getPopularFilms(10, new PopularFilmsFilter(2L, 1999, null)).get(0).getGenres().size());
+    }
+
+    @Test
+    void testStreamFilmFacets() {
+        Film film1 = createTestFilm("Film 1", "Desc", LocalDate.of(1999, 5, 1), 120, 3L, Arrays.asList(4L, 2L));
+        Film film2 = createTestFilm("Film 2", "Desc", LocalDate.of(2001, 1, 1), 120, null, null);
+
+        List<FilmFacets> facets = new ArrayList<>();
+        filmDbStorage.streamFilmFacets(facets::add);
+
+        assertEquals(List.of(new FilmFacets(film1.getId(), 1999, 3L, new long[]{2L, 4L}),
+                new FilmFacets(film2.getId(), 2001, 0L, new long[0])), facets);
+    }
+
+    @Test
+    void testSearchFilmsMatchesAllTermsOrderedByLikes() {
+        Film hedgehog = createTestFilm("Ёжик в тумане", "Мультфильм", LocalDate.of(1975, 1, 1), 10, 1L, Arrays.asList(3L));
+        Film fog = createTestFilm("Туман", "Про ЁЖИКА в тумане", LocalDate.of(1980, 1, 1), 90, 1L, null);
+        createTestFilm("Другой фильм", "Без совпадений", LocalDate.of(1990, 1, 1), 90, 1L, null);
+        filmDbStorage.addLike(fog.getId(), testUser1.getId());
+
+        assertEquals(List.of(fog.getId(), hedgehog.getId()), ids(filmDbStorage.searchFilms(List.of("ежик", "тумане"), 10)));
+        assertEquals(List.of(hedgehog.getId()), ids(filmDbStorage.searchFilms(List.of("ежик", "мультфильм"), 10)));
+        assertEquals(List.of(fog.getId()), ids(filmDbStorage.searchFilms(List.of("туман"), 1)));
+        assertEquals(1, filmDbStorage.searchFilms(List.of("мультфильм"), 10).get(0).getGenres().size());
+        assertTrue(filmDbStorage.searchFilms(List.of(), 10).isEmpty());
+    }
+
+    @Test
+    void testGetFilmsByNamePrefix() {
+        Film kitten = createTestFilm("Котёнок", "Desc", LocalDate.of(1990, 1, 1), 90, 1L, null);
+        Film cat = createTestFilm("Кот в сапогах", "Desc", LocalDate.of(1990, 1, 1), 90, 1L, null);
+        Film percent = createTestFilm("100% кот", "Desc", LocalDate.of(1990, 1, 1), 90, 1L, null);
+        filmDbStorage.addLike(cat.getId(), testUser1.getId());
+
+        assertEquals(List.of(cat.getId(), kitten.getId()), ids(filmDbStorage.getFilmsByNamePrefix("КОТ", 10)));
+        assertEquals(List.of(kitten.getId()), ids(filmDbStorage.getFilmsByNamePrefix("котё", 10)));
+        assertEquals(List.of(cat.getId()), ids(filmDbStorage.getFilmsByNamePrefix("кот", 1)));
+        assertEquals(List.of(percent.getId()), ids(filmDbStorage.getFilmsByNamePrefix("100%", 10)));
+        assertTrue(filmDbStorage.getFilmsByNamePrefix("1_0", 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<Film> films) {
+        return films.stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testReconcileLikeCounts() {
+        Film film = createTestFilm("Drift Film", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+        filmDbStorage.addLike(film.getId(), testUser1.getId());
+
+        // Имитируем рассинхронизацию счётчика
+        jdbcTemplate.update("UPDATE films SET likes_count = 5 WHERE film_id = ?", film.getId());
+        assertEquals(List.of(film.getId()), filmDbStorage.findLikeCountMismatches());
+
+        assertEquals(1, filmDbStorage.reconcileLikeCounts());
+        assertEquals(1L, getLikesCount(film.getId()));
+        assertTrue(filmDbStorage.findLikeCountMismatches().isEmpty());
+    }
+
+    @Test
+    void testDeleteUserDecrementsLikesCount() {
+        Film film = createTestFilm("User Delete", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, null);
+        filmDbStorage.addLike(film.getId(), testUser1.getId());
+        filmDbStorage.addLike(film.getId(), testUser2.getId());
+
+        userDbStorage.deleteUser(testUser1.getId());
+
+        assertEquals(1L, getLikesCount(film.getId()));
+        assertTrue(filmDbStorage.findLikeCountMismatches().isEmpty());
+    }
+
+    private long getLikesCount(long filmId) {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM films WHERE film_id = ?", Long.class, filmId);
+    }
+
+    @Test
+    void testGetFilmsKeysetPages() {
+        Film film1 = createTestFilm("Film 1", "Desc", LocalDate.of(2020, 1, 1), 120, 1L, Arrays.asList(1L));
+        Film film2 = createTestFilm("Film 2", "Desc", LocalDate.of(2020, 1, 1), 120, 2L, null);
+        Film film3 = createTestFilm("Film 3", "Desc", LocalDate.of(2020, 1, 1), 120, 3L, Arrays.asList(2L, 3L));
+
+        List<Film> firstPage = filmDbStorage.getFilms(0, 2);
+        assertEquals(List.of(film1.getId(), film2.getId()), firstPage.stream().map(Film::getId).toList());
+        assertEquals(1, firstPage.get(0).getGenres().size());
+
+        List<Film> secondPage = filmDbStorage.getFilms(film2.getId(), 2);
+        assertEquals(List.of(film3.getId()), secondPage.stream().map(Film::getId).toList());
+        assertEquals(2, secondPage.get(0).getGenres().size());
+
+        assertTrue(filmDbStorage.getFilms(film3.getId(), 2).isEmpty());
+    }
+
+    @Test
+    void testAddFilmsInsertsBatchWithConstantStatementCount() {
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Film film = new Film();
+            film.setName("Batch " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(90);
+            film.setMpa(new Mpa(1, null));
+            if (i % 2 == 0) {
+                film.setGenres(Set.of(new Genre(1, null), new Genre(2, null)));
+            }
+            films.add(film);
+        }
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+        countingStorage.addFilms(films);
+
+        // По многострочному INSERT на каждые 500 строк: 2 в films и 2 в film_genres (1000 пар)
+        assertEquals(4, countingTemplate.getStatementCount());
+
+        Set<Long> ids = films.stream().map(Film::getId).collect(Collectors.toSet());
+        assertEquals(1000, ids.size());
+        assertFalse(ids.contains(0L));
+        assertEquals(1000, filmDbStorage.getAllFilms().size());
+
+        Film withGenres = filmDbStorage.getFilmById(films.get(0).getId());
+        assertEquals("Batch 0", withGenres.getName());
+        assertEquals("G", withGenres.getMpa().getName());
+        assertEquals(2, withGenres.getGenres().size());
+        assertTrue(filmDbStorage.getFilmById(films.get(1).getId()).getGenres().isEmpty());
+    }
+
+    @Test
+    void testApplyLikesReplaysOperationsInOrder() {
+        Film film1 = createTestFilm("Film 1", "Desc", LocalDate.of(2020, 1, 1), 100, 1L, null);
+        Film film2 = createTestFilm("Film 2", "Desc", LocalDate.of(2020, 1, 1), 100, 1L, null);
+        filmDbStorage.addLike(film2.getId(), testUser2.getId());
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+        boolean[] changed = countingStorage.applyLikes(List.of(
+                new LikeBatchItem(film1.getId(), testUser1.getId(), LikeOperation.ADD),
+                new LikeBatchItem(film1.getId(), testUser1.getId(), LikeOperation.ADD),
+                new LikeBatchItem(film2.getId(), testUser1.getId(), LikeOperation.ADD),
+                new LikeBatchItem(film2.getId(), testUser1.getId(), LikeOperation.REMOVE),
+                new LikeBatchItem(film2.getId(), testUser2.getId(), LikeOperation.REMOVE),
+                new LikeBatchItem(film1.getId(), testUser2.getId(), LikeOperation.REMOVE)));
+
+        assertArrayEquals(new boolean[]{true, false, true, true, true, false}, changed);
+        // Чтение состояния, batch INSERT, batch DELETE и batch обновления счётчиков
+        assertEquals(4, countingTemplate.getStatementCount());
+
+        assertEquals(List.of(testUser1.getId()), jdbcTemplate.queryForList(
+                "SELECT user_id FROM likes WHERE film_id = ?", Long.class, film1.getId()));
+        assertTrue(jdbcTemplate.queryForList(
+                "SELECT user_id FROM likes WHERE film_id = ?", Long.class, film2.getId()).isEmpty());
+        assertEquals(Map.of(film1.getId(), 1L, film2.getId(), 0L), filmDbStorage.getLikeCounts());
+        assertTrue(filmDbStorage.findLikeCountMismatches().isEmpty());
+    }
+
+    @Test
+    void testFindExistingFilmIds() {
+        Film film = createTestFilm("Film", "Desc", LocalDate.of(2020, 1, 1), 100, 1L, null);
+
+        assertEquals(Set.of(film.getId()), filmDbStorage.findExistingFilmIds(List.of(film.getId(), 999L)));
+        assertTrue(filmDbStorage.findExistingFilmIds(List.of()).isEmpty());
+    }
+
+    @Test
+    void testStreamAllFilmsHydratesInBoundedChunks() {
+        // Несколько порций и неполный хвост; поведение на больших объёмах меряет FilmStorageBenchmark
+        int filmCount = 3500;
+        int chunkSize = 1000;
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration, mpa_rating_id) " +
+                "SELECT 'Film ' || X, 'Synthetic', DATE '2000-01-01', 100, 1 FROM SYSTEM_RANGE(1, ?)", filmCount);
+        jdbcTemplate.update("INSERT INTO film_genres (film_id, genre_id) " +
+                "SELECT film_id, 1 FROM films WHERE MOD(film_id, 10) = 0");
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        FilmDbStorage countingStorage = new FilmDbStorage(countingTemplate);
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        Set<List<Film>> chunkInstances = Collections.newSetFromMap(new IdentityHashMap<>());
+        long[] withGenres = {0};
+        long[] lastId = {0};
+        countingStorage.streamAllFilms(chunkSize, chunk -> {
+            chunkSizes.add(chunk.size());
+            chunkInstances.add(chunk);
+            for (Film film : chunk) {
+                assertTrue(film.getId() > lastId[0]);
+                lastId[0] = film.getId();
+                if (!film.getGenres().isEmpty()) {
+                    withGenres[0]++;
+                }
+            }
+        });
+
+        assertEquals(List.of(1000, 1000, 1000, 500), chunkSizes);
+        assertEquals(filmCount / 10, withGenres[0]);
+        // Порции отдаются через один и тот же буфер: в памяти гидрируется не больше одной
+        assertEquals(1, chunkInstances.size());
+        // Курсор по films читает строки порциями размером с порцию фильмов
+        assertEquals(List.of(chunkSize), countingTemplate.getFetchSizes());
+        // Один курсор по films и по одному запросу жанров на порцию
+        assertEquals(1 + chunkSizes.size(), countingTemplate.getStatementCount());
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommendationIndex;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@WithoutIdFilter
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(FilmDbStorage.class)
+class FilmRecommendationIndexTest {
+
+    // Целевая задержка рекомендации из построенного индекса
+    private static final long RECOMMEND_SLO_MS = 100;
+
+    private final FilmDbStorage filmStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private long userBase;
+    private long filmBase;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM film_genres");
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+    }
+
+    @Test
+    void testRecommendationsRankedBySimilarity() {
+        createUsersAndFilms(4, 4);
+        like(1, 1);
+        like(1, 2);
+        like(2, 1);
+        like(2, 2);
+        like(2, 3);
+        like(3, 1);
+        like(3, 4);
+        like(4, 4);
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 500, 500);
+        index.rebuild();
+
+        // Фильм 3 лайкали вместе с обоими фильмами пользователя 1, фильм 4 — только с первым
+        assertArrayEquals(new long[]{film(3), film(4)}, index.recommend(user(1), 10));
+        assertArrayEquals(new long[]{film(3)}, index.recommend(user(1), 1));
+        // Уже лайкнутые фильмы не рекомендуются
+        assertArrayEquals(new long[]{film(1)}, index.recommend(user(4), 10));
+    }
+
+    @Test
+    void testIndexFollowsLikeChangesAndFilmDeletion() {
+        createUsersAndFilms(3, 3);
+        like(1, 1);
+        like(2, 1);
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 500, 500);
+        assertNull(index.recommend(user(1), 10));
+        index.rebuild();
+        assertArrayEquals(new long[0], index.recommend(user(1), 10));
+        assertArrayEquals(new long[0], index.recommend(user(3), 10));
+
+        filmStorage.addLike(film(2), user(2));
+        index.addLike(film(2), user(2));
+        assertArrayEquals(new long[]{film(2)}, index.recommend(user(1), 10));
+
+        filmStorage.removeLike(film(2), user(2));
+        index.removeLike(film(2), user(2));
+        assertArrayEquals(new long[0], index.recommend(user(1), 10));
+
+        filmStorage.addLike(film(3), user(2));
+        index.addLike(film(3), user(2));
+        filmStorage.deleteFilm(film(3));
+        index.removeFilm(film(3));
+        assertArrayEquals(new long[0], index.recommend(user(1), 10));
+    }
+
+    @Test
+    void testIncrementalUpdatesMatchFullRebuild() {
+        createUsersAndFilms(50, 40);
+        Random random = new Random(7);
+        for (int i = 0; i < 400; i++) {
+            likeIfAbsent(1 + random.nextInt(50), 1 + random.nextInt(40));
+        }
+        FilmRecommendationIndex incremental = new FilmRecommendationIndex(filmStorage, 500, 500);
+        incremental.rebuild();
+
+        for (int i = 0; i < 600; i++) {
+            long userId = user(1 + random.nextInt(50));
+            long filmId = film(1 + random.nextInt(40));
+            LikeOperation op = random.nextBoolean() ? LikeOperation.ADD : LikeOperation.REMOVE;
+            if (filmStorage.applyLikes(List.of(new LikeBatchItem(filmId, userId, op)))[0]) {
+                if (op == LikeOperation.ADD) {
+                    incremental.addLike(filmId, userId);
+                } else {
+                    incremental.removeLike(filmId, userId);
+                }
+            }
+        }
+
+        FilmRecommendationIndex rebuilt = new FilmRecommendationIndex(filmStorage, 500, 500);
+        rebuilt.rebuild();
+        for (int user = 1; user <= 50; user++) {
+            assertArrayEquals(rebuilt.recommend(user(user), 20), incremental.recommend(user(user), 20),
+                    "Рекомендации пользователя " + user + " разошлись с пересобранным индексом");
+        }
+    }
+
+    @Test
+    void testHeavyLikerPairsAreCapped() {
+        createUsersAndFilms(2, 61);
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 500, 10);
+        index.rebuild();
+
+        // Пары строятся только по первым десяти лайкам: 10 * 9 записей вместо 60 * 59
+        for (int film = 1; film <= 60; film++) {
+            index.addLike(film(film), user(1));
+        }
+        assertEquals(90, index.getStats().pairs());
+        assertEquals(1, index.getStats().cappedUsers());
+
+        index.addLike(film(1), user(2));
+        assertArrayEquals(new long[]{film(2), film(3), film(4), film(5), film(6), film(7), film(8), film(9),
+                film(10)}, index.recommend(user(2), 100));
+
+        // Снятый лайк освобождает место в парах для следующего
+        index.removeLike(film(5), user(1));
+        index.addLike(film(61), user(1));
+        assertArrayEquals(new long[]{film(2), film(3), film(4), film(6), film(7), film(8), film(9), film(10),
+                film(61)}, index.recommend(user(2), 100));
+    }
+
+    @Test
+    void testRecommendationsOnSyntheticLikesWithinSlo() {
+        createUsersAndFilms(5000, 2000);
+        // Популярность фильмов по степенному закону: лайки сосредоточены на первых фильмах
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (int user = 1; user <= 5000; user++) {
+            int likes = 5 + random.nextInt(40);
+            Set<Integer> films = new HashSet<>();
+            while (films.size() < likes) {
+                films.add(1 + (int) Math.min(1999, Math.floor(Math.pow(random.nextDouble(), 3) * 2000)));
+            }
+            for (int film : films) {
+                rows.add(new Object[]{user(user), film(film)});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", rows);
+
+        FilmRecommendationIndex index = new FilmRecommendationIndex(filmStorage, 500, 500);
+        index.rebuild();
+
+        long worstMs = 0;
+        for (int user = 1; user <= 200; user++) {
+            long start = System.nanoTime();
+            long[] recommended = index.recommend(user(user), 10);
+            worstMs = Math.max(worstMs, (System.nanoTime() - start) / 1_000_000);
+            assertEquals(10, recommended.length);
+        }
+        assertTrue(worstMs < RECOMMEND_SLO_MS, "Самая долгая рекомендация заняла " + worstMs + " мс");
+    }
+
+    private void createUsersAndFilms(int users, int films) {
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT 'user' || X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, ?)", users);
+        jdbcTemplate.update("INSERT INTO films (name, description, release_date, duration) " +
+                "SELECT 'film' || X, 'description', DATE '2000-01-01', 100 FROM SYSTEM_RANGE(1, ?)", films);
+        userBase = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class) - 1;
+        filmBase = jdbcTemplate.queryForObject("SELECT MIN(film_id) FROM films", Long.class) - 1;
+    }
+
+    private void like(int user, int film) {
+        filmStorage.addLike(film(film), user(user));
+    }
+
+    private void likeIfAbsent(int user, int film) {
+        jdbcTemplate.update("INSERT INTO likes (user_id, film_id) SELECT ?, ? WHERE NOT EXISTS " +
+                "(SELECT 1 FROM likes WHERE user_id = ? AND film_id = ?)", user(user), film(film), user(user), film(film));
+    }
+
+    private long user(int number) {
+        return userBase + number;
+    }
+
+    private long film(int number) {
+        return filmBase + number;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.user.FriendAdjacencyCache;
+import ru.yandex.practicum.filmorate.storage.user.FriendSuggestionEngine;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@WithoutIdFilter
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(UserDbStorage.class)
+class FriendSuggestionsTest {
+
+    // Целевые задержки рекомендаций для самого популярного пользователя степенного графа
+    private static final long COLD_SLO_MS = 3000;
+    private static final long WARM_SLO_MS = 250;
+
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    private UserService userService;
+    private FriendAdjacencyCache friendAdjacencyCache;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM users");
+        friendAdjacencyCache = new FriendAdjacencyCache(1_000_000);
+        userService = new UserService(userStorage, friendAdjacencyCache,
+                new FriendSuggestionEngine(1000, 1000, 256));
+    }
+
+    @Test
+    void testSuggestionsRankedByMutualFriends() {
+        long user = createUser("user");
+        long a = createUser("a");
+        long b = createUser("b");
+        long c = createUser("c");
+        long twoMutual = createUser("twoMutual");
+        long oneMutual = createUser("oneMutual");
+        userService.addFriend(user, a);
+        userService.addFriend(user, b);
+        userService.addFriend(user, c);
+        userService.addFriend(a, twoMutual);
+        userService.addFriend(b, twoMutual);
+        userService.addFriend(b, oneMutual);
+        // Уже друг и сам пользователь в рекомендации не попадают
+        userService.addFriend(a, c);
+        userService.addFriend(c, user);
+
+        assertEquals(List.of(twoMutual, oneMutual), ids(userService.getFriendSuggestions(user, 10)));
+        assertEquals(List.of(twoMutual), ids(userService.getFriendSuggestions(user, 1)));
+
+        userService.addFriend(user, twoMutual);
+        assertEquals(List.of(oneMutual), ids(userService.getFriendSuggestions(user, 10)));
+    }
+
+    @Test
+    void testSuggestionsForUserWithoutFriends() {
+        long user = createUser("user");
+
+        assertTrue(userService.getFriendSuggestions(user, 10).isEmpty());
+        assertThrows(NotFoundException.class, () -> userService.getFriendSuggestions(999_999, 10));
+    }
+
+    @Test
+    void testSuggestionsOnPowerLawGraphWithinSlo() {
+        jdbcTemplate.update("INSERT INTO users (name, email, login, birthday) " +
+                "SELECT X, 'user' || X || '@mail.ru', 'user' || X, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 20000)");
+        long base = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM users", Long.class) - 1;
+
+        // Предпочтительное присоединение: каждый новый пользователь дружит в обе стороны
+        // с 10 существующими, выбранными пропорционально их степени
+        Random random = new Random(42);
+        List<Long> endpoints = new ArrayList<>();
+        Set<Long> edges = new HashSet<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (long node = 1; node <= 20_000; node++) {
+            for (int i = 0; i < 10 && node > 1; i++) {
+                long target = endpoints.isEmpty() || random.nextInt(10) == 0
+                        ? 1 + random.nextInt((int) node - 1)
+                        : endpoints.get(random.nextInt(endpoints.size()));
+                if (target != node && edges.add(node * 100_000 + target)) {
+                    edges.add(target * 100_000 + node);
+                    rows.add(new Object[]{base + node, base + target});
+                    rows.add(new Object[]{base + target, base + node});
+                    endpoints.add(node);
+                    endpoints.add(target);
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", rows);
+        long hub = jdbcTemplate.queryForObject(
+                "SELECT user_id FROM friends GROUP BY user_id ORDER BY COUNT(*) DESC LIMIT 1", Long.class);
+
+        long start = System.nanoTime();
+        List<User> cold = userService.getFriendSuggestions(hub, 50);
+        long coldMs = (System.nanoTime() - start) / 1_000_000;
+
+        start = System.nanoTime();
+        List<User> warm = userService.getFriendSuggestions(hub, 50);
+        long warmMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(50, cold.size());
+        assertEquals(cold, warm);
+        Set<Long> hubFriends = new HashSet<>(ids(userService.getFriends(hub)));
+        assertTrue(cold.stream().noneMatch(user -> user.getId() == hub || hubFriends.contains(user.getId())));
+        assertTrue(coldMs < COLD_SLO_MS, "Холодный запрос занял " + coldMs + " мс");
+        assertTrue(warmMs < WARM_SLO_MS, "Повторный запрос занял " + warmMs + " мс");
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setName(login);
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        return userStorage.addUser(user).getId();
+    }
+}
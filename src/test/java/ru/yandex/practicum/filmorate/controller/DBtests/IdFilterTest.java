@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class IdFilterTest {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    private StatementCountingJdbcTemplate countingTemplate;
+    private FilmDbStorage filmStorage;
+    private UserDbStorage userStorage;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM film_genres");
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+
+        countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        filmStorage = new FilmDbStorage(countingTemplate, true);
+        userStorage = new UserDbStorage(countingTemplate, true);
+        filmStorage.rebuildIdFilter();
+        userStorage.rebuildIdFilter();
+    }
+
+    @Test
+    void unknownIdsShouldBeRejectedWithoutSql() {
+        User user = userStorage.addUser(newUser("user"));
+        Film film = filmStorage.addFilm(newFilm());
+
+        countingTemplate.reset();
+        assertNull(filmStorage.getFilmById(film.getId() + 1_000_000));
+        assertNull(userStorage.getUserById(user.getId() + 1_000_000));
+        assertFalse(filmStorage.filmExists(film.getId() + 1_000_000));
+        assertThrows(NotFoundException.class, () -> filmStorage.addLike(film.getId() + 1_000_000, user.getId()));
+        assertThrows(NotFoundException.class, () -> userStorage.addFriend(user.getId(), user.getId() + 1_000_000));
+        assertEquals(0, countingTemplate.getStatementCount());
+
+        // Добавленные через хранилище ID сразу проходят фильтр
+        assertNotNull(filmStorage.getFilmById(film.getId()));
+        assertNotNull(userStorage.getUserById(user.getId()));
+        assertEquals(1, filmStorage.getIdFilterStats().ids());
+        assertEquals(3, filmStorage.getIdFilterStats().rejected());
+        assertEquals(0, filmStorage.getIdFilterStats().falsePositives());
+    }
+
+    @Test
+    void deletedIdsShouldFallThroughToSqlUntilRebuild() {
+        Film film = filmStorage.addFilm(newFilm());
+        filmStorage.deleteFilm(film.getId());
+
+        assertNull(filmStorage.getFilmById(film.getId()));
+        assertEquals(1, filmStorage.getIdFilterStats().falsePositives());
+        assertEquals(1, filmStorage.getIdFilterStats().removedSinceRebuild());
+
+        filmStorage.rebuildIdFilter();
+        countingTemplate.reset();
+        assertNull(filmStorage.getFilmById(film.getId()));
+        assertEquals(0, countingTemplate.getStatementCount());
+        assertEquals(0, filmStorage.getIdFilterStats().ids());
+    }
+
+    private static User newUser(String login) {
+        User user = new User();
+        user.setName(login);
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return user;
+    }
+
+    private static Film newFilm() {
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.metrics.InstrumentedJdbcTemplate;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.ANY)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class InstrumentedJdbcTemplateTest {
+
+    private static final Pattern COUNT_LINE = Pattern.compile("filmorate_sql_query_seconds_count\\{sql=\"(.*)\"} (\\d+)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    private LatencyMetrics metrics;
+
+    @BeforeEach
+    void setup() {
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM film_genres");
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+        metrics = new LatencyMetrics();
+    }
+
+    @Test
+    void everyStatementShouldBeRecordedOnceUnderItsSql() {
+        // Нулевой порог: каждый запрос считается медленным и попадает в счётчик
+        CountingTemplate template = new CountingTemplate(dataSource, metrics);
+        FilmDbStorage filmStorage = new FilmDbStorage(template);
+        UserDbStorage userStorage = new UserDbStorage(template);
+
+        User user = new User();
+        user.setEmail("user@mail.ru");
+        user.setLogin("user");
+        user.setName("User");
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        long userId = userStorage.addUser(user).getId();
+
+        Film film = new Film();
+        film.setName("Film");
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new Mpa(1, null));
+        long filmId = filmStorage.addFilm(film).getId();
+        filmStorage.addFilms(List.of(copy(film), copy(film)));
+        filmStorage.addLike(filmId, userId);
+        filmStorage.getFilmById(filmId);
+        filmStorage.streamLikes((likeUserId, likeFilmId) -> { });
+        template.update("DELETE FROM likes WHERE user_id = -1");
+
+        long recorded = 0;
+        Matcher matcher = COUNT_LINE.matcher(metrics.toPrometheusText());
+        while (matcher.find()) {
+            assertNotEquals("unknown", matcher.group(1));
+            recorded += Long.parseLong(matcher.group(2));
+        }
+        // Каждый выполненный оператор замерен ровно один раз
+        assertEquals(template.statements, recorded);
+        assertTrue(metrics.toPrometheusText().contains("filmorate_sql_query_seconds_count{sql=\"" +
+                "INSERT INTO films (name, description, release_date, duration, mpa_rating_id) VALUES (?, ?, ?, ?, ?)\"} 1\n"));
+        assertTrue(metrics.toPrometheusText().contains(
+                "filmorate_sql_query_seconds_count{sql=\"SELECT user_id, film_id FROM likes ORDER BY user_id, film_id\"} 1\n"));
+        assertTrue(metrics.toPrometheusText().contains("filmorate_sql_slow_queries_total " + recorded + "\n"));
+    }
+
+    // Считает операторы так же, как StatementCountingJdbcTemplate
+    private static class CountingTemplate extends InstrumentedJdbcTemplate {
+
+        private int statements;
+
+        CountingTemplate(DataSource dataSource, LatencyMetrics metrics) {
+            super(dataSource, metrics, 0);
+        }
+
+        @Override
+        protected void applyStatementSettings(Statement stmt) throws SQLException {
+            statements++;
+            super.applyStatementSettings(stmt);
+        }
+    }
+
+    private static Film copy(Film film) {
+        Film copy = new Film();
+        copy.setName(film.getName());
+        copy.setDescription(film.getDescription());
+        copy.setReleaseDate(film.getReleaseDate());
+        copy.setDuration(film.getDuration());
+        copy.setMpa(film.getMpa());
+        return copy;
+    }
+}
@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.controller.GenreController;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.service.GenreService;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa_rating.MpaRatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({GenreDbStorage.class, MpaRatingDbStorage.class, ReferenceDataCache.class})
+class ReferenceDataCacheTest {
+
+    private final ReferenceDataCache referenceDataCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        referenceDataCache.refresh();
+    }
+
+    @Test
+    void testSnapshotContainsReferenceData() {
+        assertEquals(6, referenceDataCache.getAllGenres().size());
+        assertEquals(5, referenceDataCache.getAllMpa().size());
+        assertEquals("Драма", referenceDataCache.getGenreById(2).getName());
+        assertEquals("PG-13", referenceDataCache.getMpaById(3).getName());
+        assertNull(referenceDataCache.getGenreById(99));
+        assertNull(referenceDataCache.getMpaById(-1));
+    }
+
+    @Test
+    void testSnapshotIsImmutable() {
+        List<Genre> genres = referenceDataCache.getAllGenres();
+        assertThrows(UnsupportedOperationException.class, () -> genres.add(new Genre(7, "Вестерн")));
+    }
+
+    @Test
+    void testRefreshPicksUpChangesAndChangesEtag() {
+        String etag = referenceDataCache.getGenresEtag();
+        jdbcTemplate.update("INSERT INTO genres (genre_id, genre_name) VALUES (7, 'Вестерн')");
+
+        // Без refresh снимок не меняется
+        assertNull(referenceDataCache.getGenreById(7));
+        assertEquals(etag, referenceDataCache.getGenresEtag());
+
+        referenceDataCache.refresh();
+        assertEquals("Вестерн", referenceDataCache.getGenreById(7).getName());
+        assertNotEquals(etag, referenceDataCache.getGenresEtag());
+    }
+
+    @Test
+    void testGenresEndpointHonoursIfNoneMatch() {
+        GenreController controller = new GenreController(new GenreService(referenceDataCache));
+
+        MockHttpServletRequest firstRequest = new MockHttpServletRequest("GET", "/genres");
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        ResponseEntity<List<Genre>> first = controller.getAllGenres(new ServletWebRequest(firstRequest, firstResponse));
+        assertNotNull(first);
+        String etag = first.getHeaders().getETag();
+        assertEquals(referenceDataCache.getGenresEtag(), etag);
+        assertTrue(first.getHeaders().getCacheControl().contains("max-age=86400"));
+
+        MockHttpServletRequest secondRequest = new MockHttpServletRequest("GET", "/genres");
+        secondRequest.addHeader("If-None-Match", etag);
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+        assertNull(controller.getAllGenres(new ServletWebRequest(secondRequest, secondResponse)));
+        assertEquals(304, secondResponse.getStatus());
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// JdbcTemplate, считающий каждый отправленный в БД statement (batch считается одним)
+// и запоминающий fetch size потоковых запросов с построчной обработкой
+public class StatementCountingJdbcTemplate extends JdbcTemplate {
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private final List<Integer> fetchSizes = new CopyOnWriteArrayList<>();
+
+    public StatementCountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        statements.incrementAndGet();
+        super.applyStatementSettings(stmt);
+    }
+
+    // Fetch size читается после параметров запроса: его выставляет setter вызывающего кода
+    @Override
+    public void query(String sql, PreparedStatementSetter pss, RowCallbackHandler rch) {
+        super.query(sql, ps -> {
+            if (pss != null) {
+                pss.setValues(ps);
+            }
+            fetchSizes.add(ps.getFetchSize());
+        }, rch);
+    }
+
+    public List<Integer> getFetchSizes() {
+        return fetchSizes;
+    }
+
+    public int getStatementCount() {
+        return statements.get();
+    }
+
+    public void reset() {
+        statements.set(0);
+        fetchSizes.clear();
+    }
+}
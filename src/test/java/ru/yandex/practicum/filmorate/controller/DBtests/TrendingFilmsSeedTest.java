@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex.Window;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class})
+class TrendingFilmsSeedTest {
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+
+    private final List<Long> films = new ArrayList<>();
+    private final List<Long> users = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DELETE FROM likes");
+        jdbcTemplate.execute("DELETE FROM film_genres");
+        jdbcTemplate.execute("DELETE FROM friends");
+        jdbcTemplate.execute("DELETE FROM films");
+        jdbcTemplate.execute("DELETE FROM users");
+        for (int i = 0; i < 3; i++) {
+            Film film = new Film();
+            film.setName("Film " + i);
+            film.setDescription("Description");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            films.add(filmStorage.addFilm(film).getId());
+
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@mail.ru");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.of(1990, 1, 1));
+            users.add(userStorage.addUser(user).getId());
+        }
+    }
+
+    @Test
+    void seedReadsLikesOfTheLongestWindowInOneStatement() {
+        long now = System.currentTimeMillis();
+        like(0, 0, now - TimeUnit.MINUTES.toMillis(20));
+        like(0, 1, now - TimeUnit.DAYS.toMillis(10));
+        like(1, 0, now - TimeUnit.HOURS.toMillis(5));
+        like(1, 1, now - TimeUnit.HOURS.toMillis(6));
+        like(2, 0, now - TimeUnit.DAYS.toMillis(3));
+        like(2, 1, now - TimeUnit.DAYS.toMillis(4));
+        like(2, 2, now - TimeUnit.DAYS.toMillis(5));
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        TrendingFilmsIndex index = new TrendingFilmsIndex(new FilmDbStorage(countingTemplate), () -> now);
+        index.seed();
+
+        assertEquals(1, countingTemplate.getStatementCount());
+        assertEquals(List.of(films.get(0)), index.getTopFilmIds(Window.HOUR, 10));
+        assertEquals(List.of(films.get(1), films.get(0)), index.getTopFilmIds(Window.DAY, 10));
+        assertEquals(List.of(films.get(2), films.get(1), films.get(0)), index.getTopFilmIds(Window.WEEK, 10));
+        assertEquals(6, index.getStats().trackedLikes());
+
+        // Снятие лайка, загруженного из таблицы, вычитается из его корзины
+        index.removeLike(films.get(1), users.get(0));
+        assertEquals(List.of(films.get(0), films.get(1)), index.getTopFilmIds(Window.DAY, 10));
+    }
+
+    private void like(int film, int user, long createdAtMillis) {
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id, created_at) VALUES (?, ?, ?)",
+                films.get(film), users.get(user), new Timestamp(createdAtMillis));
+    }
+}
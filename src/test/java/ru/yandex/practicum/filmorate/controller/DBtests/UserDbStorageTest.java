@@ -8,12 +8,16 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
+import javax.sql.DataSource;
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +30,7 @@ class UserDbStorageTest {
 
     private final UserDbStorage userStorage;
     private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
 
     private User testUser1;
     private User testUser2;
@@ -197,6 +202,104 @@ class UserDbStorageTest {
         assertThat(user1WithoutFriend.getFriends()).isEmpty();
     }
 
+    @Test
+    void testFriendWritesTakeOneStatementAndReportMissingUser() {
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(countingTemplate);
+
+        countingStorage.addFriend(testUser1.getId(), testUser2.getId());
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(1);
+
+        // Повторное добавление ничего не меняет и не считается ошибкой
+        countingStorage.addFriend(testUser1.getId(), testUser2.getId());
+        assertThat(userStorage.getFriendIds(testUser1.getId())).containsExactly(testUser2.getId());
+
+        countingTemplate.reset();
+        countingStorage.removeFriend(testUser1.getId(), testUser2.getId());
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(1);
+        assertThat(userStorage.getFriendIds(testUser1.getId())).isEmpty();
+
+        NotFoundException missingFriend = assertThrows(NotFoundException.class,
+                () -> countingStorage.addFriend(testUser1.getId(), 9999L));
+        assertThat(missingFriend.getMessage()).isEqualTo("Пользователь с ID 9999 не найден");
+        NotFoundException missingUser = assertThrows(NotFoundException.class,
+                () -> countingStorage.removeFriend(9998L, testUser2.getId()));
+        assertThat(missingUser.getMessage()).isEqualTo("Пользователь с ID 9998 не найден");
+
+        assertThat(userStorage.userExists(testUser1.getId())).isTrue();
+        assertThat(userStorage.userExists(9999L)).isFalse();
+    }
+
+    @Test
+    void testUpdateUserWritesOnlyChangedFriends() {
+        Set<Long> friends = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            friends.add(createTestUser("Friend" + i, "friend" + i + "@example.com", "friend" + i,
+                    LocalDate.of(1990, 1, 1)).getId());
+        }
+        testUser1.setFriends(new HashSet<>(friends));
+        userStorage.updateUser(testUser1);
+        List<Long> rowIds = jdbcTemplate.queryForList(
+                "SELECT friendship_id FROM friends WHERE user_id = ? ORDER BY friendship_id", Long.class,
+                testUser1.getId());
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(countingTemplate);
+
+        // Друзья не изменились: строки friends остаются прежними
+        countingStorage.updateUser(testUser1);
+        int unchanged = countingTemplate.getStatementCount();
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT friendship_id FROM friends WHERE user_id = ? ORDER BY friendship_id", Long.class,
+                testUser1.getId())).isEqualTo(rowIds);
+
+        // Два друга убраны, один добавлен: по одному пакету удаления и вставки
+        Long[] current = friends.toArray(new Long[0]);
+        testUser1.removeFriend(current[0]);
+        testUser1.removeFriend(current[1]);
+        testUser1.addFriend(testUser2.getId());
+        countingTemplate.reset();
+        User updated = countingStorage.updateUser(testUser1);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(unchanged + 2);
+        assertThat(updated.getFriends()).hasSize(49).contains(testUser2.getId())
+                .doesNotContain(current[0], current[1]);
+    }
+
+    @Test
+    void testUserWritesRoundTrips() {
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(countingTemplate);
+        User user = new User();
+        user.setName("Dave");
+        user.setEmail("dave@example.com");
+        user.setLogin("dave");
+        user.setBirthday(LocalDate.of(1991, 3, 3));
+        user.setFriends(new HashSet<>(List.of(testUser1.getId(), testUser2.getId())));
+
+        // INSERT пользователя и пакет друзей
+        User added = countingStorage.addUser(user);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+        assertThat(userStorage.getFriendIds(added.getId())).containsExactly(testUser1.getId(), testUser2.getId());
+
+        // UPDATE и чтение текущих друзей
+        countingTemplate.reset();
+        countingStorage.updateUser(added);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+
+        // Друзья для ответа, счётчики лайков и DELETE с возвратом строки; дружбы удаляет каскад
+        countingStorage.addFriend(testUser1.getId(), added.getId());
+        countingTemplate.reset();
+        User deleted = countingStorage.deleteUser(added.getId());
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(3);
+        assertThat(deleted.getLogin()).isEqualTo("dave");
+        assertThat(deleted.getFriends()).containsExactlyInAnyOrder(testUser1.getId(), testUser2.getId());
+        assertThat(userStorage.getFriendIds(testUser1.getId())).isEmpty();
+
+        User missing = new User();
+        missing.setId(9999L);
+        assertThrows(NotFoundException.class, () -> userStorage.updateUser(missing));
+    }
+
     @Test
     void testGetFriends() {
         User user1 = userStorage.getAllUsers().get(0);
@@ -261,4 +364,55 @@ class UserDbStorageTest {
         User saved = userStorage.addUser(user);
         assertThat(saved.getFriends()).isEmpty();
     }
-}
\ No newline at end of file
+
+    @Test
+    void testReadsIssueConstantNumberOfStatements() {
+        User user1 = userStorage.getAllUsers().get(0);
+        User user2 = userStorage.getAllUsers().get(1);
+        for (int i = 0; i < 20; i++) {
+            User friend = createTestUser("Friend " + i, "friend" + i + "@example.com", "friend" + i,
+                    LocalDate.of(1990, 1, 1));
+            userStorage.addFriend(user1.getId(), friend.getId());
+            userStorage.addFriend(user2.getId(), friend.getId());
+            userStorage.addFriend(friend.getId(), user1.getId());
+        }
+
+        StatementCountingJdbcTemplate countingTemplate = new StatementCountingJdbcTemplate(dataSource);
+        UserDbStorage countingStorage = new UserDbStorage(countingTemplate);
+
+        List<User> all = countingStorage.getAllUsers();
+        assertThat(all).hasSize(22);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+
+        countingTemplate.reset();
+        List<User> friends = countingStorage.getFriends(user1.getId());
+        assertThat(friends).hasSize(20);
+        assertThat(friends).allSatisfy(friend -> assertThat(friend.getFriends()).containsExactly(user1.getId()));
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+
+        countingTemplate.reset();
+        List<User> common = countingStorage.getCommonFriends(user1.getId(), user2.getId());
+        assertThat(common).hasSize(20);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+
+        countingTemplate.reset();
+        User withFriends = countingStorage.getUserById(user1.getId());
+        assertThat(withFriends.getFriends()).hasSize(20);
+        assertThat(countingTemplate.getStatementCount()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetUsersKeysetPages() {
+        User user3 = createTestUser("Charlie", "charlie@example.com", "charlie123", LocalDate.of(1995, 5, 5));
+        userStorage.addFriend(user3.getId(), testUser1.getId());
+
+        List<User> firstPage = userStorage.getUsers(0, 2);
+        assertThat(firstPage).extracting(User::getId).containsExactly(testUser1.getId(), testUser2.getId());
+
+        List<User> secondPage = userStorage.getUsers(testUser2.getId(), 2);
+        assertThat(secondPage).extracting(User::getId).containsExactly(user3.getId());
+        assertThat(secondPage.get(0).getFriends()).containsExactly(testUser1.getId());
+
+        assertThat(userStorage.getUsers(user3.getId(), 2)).isEmpty();
+    }
+}
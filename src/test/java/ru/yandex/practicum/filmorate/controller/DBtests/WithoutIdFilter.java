@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.controller.DBtests;
+
+import org.springframework.test.context.TestPropertySource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Выключает фильтры ID у хранилищ из контекста. Нужен тестам, которые пишут строки прямо
+// через JdbcTemplate: фильтр хранилища о таких строках не знает и до пересборки отвечал бы
+// на их ID «не найден». Сам фильтр проверяет IdFilterTest на хранилищах, созданных вручную
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@TestPropertySource(properties = "filmorate.id-filter.enabled=false")
+public @interface WithoutIdFilter {
+}
@@ -0,0 +1,215 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmAutocompleteIndex;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmAutocompleteIndexTest {
+
+    private InMemoryFilmStorage filmStorage;
+    private PopularFilmsIndex popularFilmsIndex;
+    private FilmAutocompleteIndex index;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        popularFilmsIndex = new PopularFilmsIndex(filmStorage, 100);
+        popularFilmsIndex.rebuild(Map.of());
+        index = new FilmAutocompleteIndex(filmStorage, popularFilmsIndex, 2);
+    }
+
+    @Test
+    void complete_NotReady_ShouldReturnNull() {
+        assertNull(index.complete("кот", 10));
+    }
+
+    @Test
+    void complete_ShouldMatchTitleStartIgnoringCaseAndYo() {
+        Film kitten = add("Котёнок");
+        Film cat = add("Кот в сапогах");
+        Film cow = add("Корова");
+        add("Пёс");
+        index.rebuild();
+
+        assertEquals(List.of(kitten.getId(), cat.getId()), index.complete("кот", 10));
+        assertEquals(List.of(kitten.getId()), index.complete("КОТЕ", 10));
+        assertEquals(List.of(kitten.getId(), cat.getId()), index.complete("ко", 10));
+        assertEquals(List.of(cow.getId()), index.complete("кор", 10));
+        assertEquals(List.of(cat.getId()), index.complete("кот в", 10));
+        assertEquals(List.of(kitten.getId()), index.complete("ко", 1));
+        assertEquals(List.of(), index.complete("котик", 10));
+        assertEquals(List.of(), index.complete("в", 10));
+    }
+
+    @Test
+    void complete_ShouldRankByLikesAndFollowChanges() {
+        Film first = add("Кот");
+        Film second = add("Кошка");
+        Film third = add("Коты");
+        index.rebuild();
+
+        like(third, 2);
+        like(second, 1);
+        assertEquals(List.of(third.getId(), second.getId()), index.complete("ко", 10));
+
+        like(third, -2);
+        assertEquals(List.of(second.getId(), first.getId()), index.complete("ко", 10));
+
+        first.setName("Собака");
+        filmStorage.updateFilm(first);
+        index.updateFilm(first);
+        assertEquals(List.of(second.getId(), third.getId()), index.complete("ко", 10));
+        assertEquals(List.of(first.getId()), index.complete("с", 10));
+
+        filmStorage.deleteFilm(second.getId());
+        index.removeFilm(second.getId());
+        assertEquals(List.of(third.getId()), index.complete("ко", 10));
+    }
+
+    @Test
+    void complete_TopFilmLosesLikes_ShouldRefillRootFromChildLists() {
+        // Фильмов больше, чем вмещают списки узлов: корень пересчитывается из списков потомков
+        Map<Long, String> titles = new HashMap<>();
+        Map<Long, Long> likes = new HashMap<>();
+        String[] names = {"Кот", "Кошка", "Кино", "Танк", "Такси", "Акула", "Арка", "Аист"};
+        List<Film> films = new ArrayList<>();
+        for (String name : names) {
+            Film film = add(name);
+            films.add(film);
+            titles.put(film.getId(), film.getName().toLowerCase());
+            likes.put(film.getId(), 0L);
+        }
+        index.rebuild();
+        for (int i = 0; i < films.size(); i++) {
+            like(films.get(i), i + 1);
+            likes.put(films.get(i).getId(), (long) i + 1);
+        }
+        Film top = films.get(films.size() - 1);
+        assertEquals(top.getId(), index.complete("", 1).get(0));
+
+        for (Film film : List.of(top, films.get(films.size() - 2), films.get(2))) {
+            like(film, -likes.get(film.getId()));
+            likes.put(film.getId(), 0L);
+            for (String prefix : List.of("", "а", "к", "т")) {
+                assertEquals(scan(titles, likes, prefix), index.complete(prefix, 2), "Префикс " + prefix);
+            }
+        }
+    }
+
+    @Test
+    void likesChanged_Concurrently_ShouldKeepLatestCount() throws InterruptedException {
+        Film liked = add("Кот");
+        Film rival = add("Кошка");
+        index.rebuild();
+        like(rival, 999);
+
+        // Последним в дерево должно попасть итоговое число лайков, а не прочитанное раньше
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 250; j++) {
+                    like(liked, 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, popularFilmsIndex.getLikes(liked.getId()));
+        assertEquals(List.of(liked.getId(), rival.getId()), index.complete("ко", 2));
+    }
+
+    @Test
+    void complete_ShouldMatchFullScanUnderRandomChanges() {
+        // Маленький алфавит даёт много общих префиксов и делений рёбер, top-n = 2 — частые пересчёты
+        Random random = new Random(11);
+        String[] syllables = {"ка", "кот", "ко", "т", "а", " "};
+        Map<Long, String> titles = new HashMap<>();
+        Map<Long, Long> likes = new HashMap<>();
+        List<Film> films = new ArrayList<>();
+        index.rebuild();
+
+        for (int step = 0; step < 3000; step++) {
+            int action = random.nextInt(10);
+            if (action < 3 || films.isEmpty()) {
+                Film film = add(randomTitle(random, syllables));
+                index.addFilm(film);
+                films.add(film);
+                titles.put(film.getId(), film.getName());
+                likes.put(film.getId(), 0L);
+            } else if (action < 4) {
+                Film film = films.get(random.nextInt(films.size()));
+                film.setName(randomTitle(random, syllables));
+                index.updateFilm(film);
+                titles.put(film.getId(), film.getName());
+            } else if (action < 5) {
+                Film film = films.remove(random.nextInt(films.size()));
+                index.removeFilm(film.getId());
+                popularFilmsIndex.removeFilm(film.getId());
+                titles.remove(film.getId());
+                likes.remove(film.getId());
+            } else {
+                Film film = films.get(random.nextInt(films.size()));
+                long delta = likes.get(film.getId()) > 0 && random.nextBoolean() ? -1 : 1;
+                like(film, delta);
+                likes.merge(film.getId(), delta, Long::sum);
+            }
+
+            if (step % 50 == 0) {
+                for (String prefix : List.of("к", "ка", "ко", "кот", "кото", "т", "а", "ак", "кака", "ко т")) {
+                    assertEquals(scan(titles, likes, prefix), index.complete(prefix, 2), "Префикс " + prefix);
+                }
+            }
+        }
+        assertEquals(titles.size(), index.getStats().films());
+    }
+
+    private static List<Long> scan(Map<Long, String> titles, Map<Long, Long> likes, String prefix) {
+        return titles.entrySet().stream()
+                .filter(entry -> entry.getValue().strip().startsWith(prefix))
+                .map(Map.Entry::getKey)
+                .sorted(Comparator.comparingLong((Long id) -> likes.get(id)).reversed().thenComparingLong(id -> id))
+                .limit(2)
+                .toList();
+    }
+
+    private static String randomTitle(Random random, String[] syllables) {
+        StringBuilder title = new StringBuilder("к");
+        int length = random.nextInt(5);
+        for (int i = 0; i < length; i++) {
+            title.append(syllables[random.nextInt(syllables.length)]);
+        }
+        return random.nextInt(4) == 0 ? title.substring(1) + "а" : title.toString();
+    }
+
+    private void like(Film film, long delta) {
+        popularFilmsIndex.changeLikes(film.getId(), delta);
+        index.likesChanged(film.getId());
+    }
+
+    private Film add(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Film added = filmStorage.addFilm(film);
+        popularFilmsIndex.addFilm(added.getId());
+        return added;
+    }
+}
@@ -0,0 +1,110 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private FilmCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new FilmCache(2, 1000, clock::get);
+    }
+
+    @Test
+    void get_RepeatedRead_ShouldHitCache() {
+        cache.get(1, this::load);
+        cache.get(1, this::load);
+
+        assertEquals(1, loads.get());
+        FilmCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void get_MissingFilm_ShouldNotBeCached() {
+        assertNull(cache.get(1, id -> null));
+        assertEquals(0, cache.getStats().size());
+    }
+
+    @Test
+    void get_ExpiredEntry_ShouldReload() {
+        cache.get(1, this::load);
+        clock.addAndGet(1001);
+        cache.get(1, this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.getStats().evictions());
+    }
+
+    @Test
+    void get_OverMaxSize_ShouldEvictLeastRecentlyUsed() {
+        cache.get(1, this::load);
+        cache.get(2, this::load);
+        cache.get(1, this::load);
+        cache.get(3, this::load);
+
+        cache.get(1, this::load);
+        assertEquals(3, loads.get());
+        cache.get(2, this::load);
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.getStats().size());
+    }
+
+    @Test
+    void invalidate_ShouldForceReload() {
+        cache.get(1, this::load);
+        cache.invalidate(1);
+        cache.get(1, this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_InvalidatedDuringLoad_ShouldNotStoreStaleFilm() {
+        // Писатель инвалидирует фильм, пока читатель ещё загружает старую версию
+        cache.get(1, id -> {
+            cache.invalidate(id);
+            return load(id);
+        });
+
+        assertEquals(0, cache.getStats().size());
+        cache.get(1, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getAll_ShouldLoadOnlyMissesInOneBatch() {
+        cache.get(2, this::load);
+        AtomicInteger batches = new AtomicInteger();
+
+        List<Film> films = cache.getAll(List.of(1L, 2L, 3L), ids -> {
+            batches.incrementAndGet();
+            assertEquals(List.of(1L, 3L), ids);
+            return ids.stream().map(this::load).collect(Collectors.toList());
+        });
+
+        assertEquals(List.of(1L, 2L, 3L), films.stream().map(Film::getId).collect(Collectors.toList()));
+        assertEquals(1, batches.get());
+    }
+
+    private Film load(long id) {
+        loads.incrementAndGet();
+        Film film = new Film();
+        film.setId(id);
+        return film;
+    }
+}
@@ -1,19 +1,40 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmBatchResult;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeBatchResult;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.film.FilmAutocompleteIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmCache;
+import ru.yandex.practicum.filmorate.storage.film.FilmRecommendationIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
 import ru.yandex.practicum.filmorate.storage.genre.InMemoryGenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa_rating.InMemoryMpaRatingStorage;
+import ru.yandex.practicum.filmorate.storage.reference.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
 
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -21,15 +42,28 @@ import static org.junit.jupiter.api.Assertions.*;
 class FilmControllerTest {
 
     private FilmController filmController;
+    private InMemoryUserStorage userStorage;
+    private FilmSearchIndex searchIndex;
+    private FilmAutocompleteIndex autocompleteIndex;
 
     @BeforeEach
     void setUp() {
         InMemoryFilmStorage filmStorage = new InMemoryFilmStorage();
-        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        userStorage = new InMemoryUserStorage();
         InMemoryGenreStorage genreStorage = new InMemoryGenreStorage();
         InMemoryMpaRatingStorage mpaRatingStorage = new InMemoryMpaRatingStorage();
-        FilmService filmService = new FilmService(filmStorage, userStorage, genreStorage, mpaRatingStorage);
-        filmController = new FilmController(filmService);
+        PopularFilmsIndex popularFilmsIndex = new PopularFilmsIndex(filmStorage, 100);
+        FilmCache filmCache = new FilmCache(100, 300);
+        ReferenceDataCache referenceDataCache = new ReferenceDataCache(genreStorage, mpaRatingStorage);
+        searchIndex = new FilmSearchIndex(filmStorage, popularFilmsIndex);
+        autocompleteIndex = new FilmAutocompleteIndex(filmStorage, popularFilmsIndex, 10);
+        FilmService filmService = new FilmService(filmStorage, userStorage, referenceDataCache,
+                popularFilmsIndex, filmCache, new LikeWriteBuffer(false, 100, 10, Runnable::run, new LatencyMetrics()),
+                new FilmRecommendationIndex(filmStorage, 500, 500), searchIndex, autocompleteIndex,
+                new TrendingFilmsIndex(filmStorage));
+        filmController = new FilmController(filmService, Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build());
     }
 
     @Test
@@ -114,6 +148,128 @@ class FilmControllerTest {
         assertEquals(LocalDate.of(1895, Month.DECEMBER, 28), result.getReleaseDate());
     }
 
+    @Test
+    void getAllFilms_WithCursor_ShouldReturnNextPage() {
+        Film first = filmController.addFilm(createValidFilm());
+        Film second = filmController.addFilm(createValidFilm());
+        Film third = filmController.addFilm(createValidFilm());
+
+        assertEquals(3, filmController.getAllFilms(null, null).size());
+        assertEquals(List.of(first, second), List.copyOf(filmController.getAllFilms(null, 2)));
+        assertEquals(List.of(third), List.copyOf(filmController.getAllFilms(second.getId(), 2)));
+    }
+
+    @Test
+    void getAllFilms_InvalidLimit_ShouldThrowException() {
+        assertThrows(ValidationException.class, () -> filmController.getAllFilms(0L, 0));
+        assertThrows(ValidationException.class, () -> filmController.getAllFilms(0L, 1001));
+        assertThrows(ValidationException.class, () -> filmController.getAllFilms(-1L, 10));
+    }
+
+    @Test
+    void streamAllFilms_ShouldWriteJsonArrayOfAllFilms() throws Exception {
+        Film first = filmController.addFilm(createValidFilm());
+        Film second = filmController.addFilm(createValidFilm());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filmController.streamAllFilms().getBody().writeTo(out);
+
+        JsonNode json = new ObjectMapper().readTree(out.toByteArray());
+        assertTrue(json.isArray());
+        assertEquals(2, json.size());
+        assertEquals(first.getId(), json.get(0).get("id").asLong());
+        assertEquals(second.getId(), json.get(1).get("id").asLong());
+        assertEquals("2000-01-01", json.get(0).get("releaseDate").asText());
+    }
+
+    @Test
+    void addFilms_ShouldReportResultPerItem() {
+        Film invalid = createValidFilm();
+        invalid.setDuration(-1);
+        Film unknownMpa = createValidFilm();
+        unknownMpa.setMpa(new Mpa(99, null));
+
+        List<FilmBatchResult> results = filmController.addFilms(
+                List.of(createValidFilm(), invalid, unknownMpa, createValidFilm()));
+
+        assertEquals(4, results.size());
+        assertNotNull(results.get(0).getId());
+        assertNull(results.get(0).getError());
+        assertNull(results.get(1).getId());
+        assertEquals("Продолжительность фильма должна быть положительной!", results.get(1).getError());
+        assertEquals(2, results.get(2).getIndex());
+        assertEquals("Рейтинг MPA с ID 99 не найден", results.get(2).getError());
+        assertNotNull(results.get(3).getId());
+        assertEquals(2, filmController.getAllFilms(null, null).size());
+    }
+
+    @Test
+    void applyLikes_ShouldReportStatusPerOperation() {
+        Film film = filmController.addFilm(createValidFilm());
+        User user = createUser();
+
+        List<LikeBatchResult> results = filmController.applyLikes(List.of(
+                new LikeBatchItem(film.getId(), user.getId(), LikeOperation.ADD),
+                new LikeBatchItem(film.getId(), user.getId(), LikeOperation.ADD),
+                new LikeBatchItem(999L, user.getId(), LikeOperation.ADD),
+                new LikeBatchItem(film.getId(), 999L, LikeOperation.REMOVE),
+                new LikeBatchItem(film.getId(), null, LikeOperation.ADD)));
+
+        assertEquals(List.of(
+                LikeBatchResult.Status.APPLIED,
+                LikeBatchResult.Status.UNCHANGED,
+                LikeBatchResult.Status.FILM_NOT_FOUND,
+                LikeBatchResult.Status.USER_NOT_FOUND,
+                LikeBatchResult.Status.INVALID), results.stream().map(LikeBatchResult::getStatus).toList());
+        assertEquals(List.of(film), filmController.getPopularFilms(1, null, null, null));
+    }
+
+    @Test
+    void searchFilms_SameResultBeforeAndAfterIndexBuild() {
+        Film film = filmController.addFilm(createValidFilm());
+        Film other = createValidFilm();
+        other.setName("Другое кино");
+        filmController.addFilm(other);
+
+        // До построения индекса поиск идёт по хранилищу
+        assertEquals(List.of(film), filmController.searchFilms("НОВЫЙ", 10));
+        searchIndex.rebuild();
+        assertEquals(List.of(film), filmController.searchFilms("новый, фильм!", 10));
+        assertEquals(List.of(), filmController.searchFilms("новый кино", 10));
+    }
+
+    @Test
+    void searchFilms_InvalidQuery_ShouldThrowValidationException() {
+        assertThrows(ValidationException.class, () -> filmController.searchFilms(" ", 10));
+        assertThrows(ValidationException.class, () -> filmController.searchFilms("?!", 10));
+        assertThrows(ValidationException.class, () -> filmController.searchFilms("фильм", 101));
+    }
+
+    @Test
+    void autocompleteFilms_SameResultBeforeAndAfterIndexBuild() {
+        Film film = filmController.addFilm(createValidFilm());
+        Film other = createValidFilm();
+        other.setName("Другое кино");
+        filmController.addFilm(other);
+
+        // До построения индекса автодополнение идёт по хранилищу
+        assertEquals(List.of(film), filmController.autocompleteFilms("нов", 10));
+        autocompleteIndex.rebuild();
+        assertEquals(List.of(film), filmController.autocompleteFilms(" НОВЫЙ Ф", 10));
+        assertEquals(List.of(), filmController.autocompleteFilms("фильм", 10));
+        assertThrows(ValidationException.class, () -> filmController.autocompleteFilms(" ", 10));
+        assertThrows(ValidationException.class, () -> filmController.autocompleteFilms("н", 11));
+    }
+
+    private User createUser() {
+        User user = new User();
+        user.setEmail("user@mail.ru");
+        user.setLogin("user");
+        user.setName("Пользователь");
+        user.setBirthday(LocalDate.of(1990, Month.JANUARY, 1));
+        return userStorage.addUser(user);
+    }
+
     private Film createValidFilm() {
         Film film = new Film();
         film.setName("Новый фильм");
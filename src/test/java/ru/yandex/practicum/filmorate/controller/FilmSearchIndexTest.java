@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmSearchIndexTest {
+
+    private static final String[] WORDS = {"кот", "пёс", "дом", "лес", "река", "город", "ночь", "день",
+            "star", "war", "love", "story", "2049", "Бегущий", "лезвию", "Ёлка"};
+
+    private InMemoryFilmStorage filmStorage;
+    private PopularFilmsIndex popularFilmsIndex;
+    private FilmSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        filmStorage = new InMemoryFilmStorage();
+        popularFilmsIndex = new PopularFilmsIndex(filmStorage, 100);
+        index = new FilmSearchIndex(filmStorage, popularFilmsIndex);
+    }
+
+    @Test
+    void search_NotReady_ShouldReturnNull() {
+        assertNull(index.search(List.of("кот"), 10));
+    }
+
+    @Test
+    void search_ShouldIgnoreCaseAndYo() {
+        Film film = add("Ёжик в тумане", "Мультфильм про ёжика и медвежонка");
+        index.rebuild();
+
+        assertEquals(List.of(film.getId()), index.search(FilmSearchIndex.queryTerms("ЕЖИК"), 10));
+        assertEquals(List.of(film.getId()), index.search(FilmSearchIndex.queryTerms("ёжика, медвежонка"), 10));
+        assertEquals(List.of(), index.search(FilmSearchIndex.queryTerms("ёж"), 10));
+    }
+
+    @Test
+    void search_NameMatchOutranksDescriptionMatch() {
+        Film inDescription = add("Фильм", "Кот");
+        Film inName = add("Кот", "Фильм");
+        Film twice = add("Кот", "Кот и ещё раз кот");
+        index.rebuild();
+
+        assertEquals(List.of(twice.getId(), inName.getId(), inDescription.getId()),
+                index.search(List.of("кот"), 10));
+        assertEquals(List.of(twice.getId()), index.search(List.of("кот"), 1));
+    }
+
+    @Test
+    void search_SameTextShouldRankByLikes() {
+        Film first = add("Кот", "");
+        Film second = add("Кот", "");
+        Film third = add("Кот", "");
+        popularFilmsIndex.rebuild(Map.of(first.getId(), 1L, second.getId(), 10L, third.getId(), 0L));
+        index.rebuild();
+
+        assertEquals(List.of(second.getId(), first.getId(), third.getId()), index.search(List.of("кот"), 10));
+    }
+
+    @Test
+    void search_ShouldFollowUpdateAndDelete() {
+        Film film = add("Старое название", "");
+        Film other = add("Другое название", "");
+        index.rebuild();
+
+        film.setName("Новое название");
+        filmStorage.updateFilm(film);
+        index.updateFilm(film);
+        assertEquals(List.of(), index.search(List.of("старое"), 10));
+        assertEquals(List.of(film.getId()), index.search(List.of("новое"), 10));
+
+        filmStorage.deleteFilm(other.getId());
+        index.removeFilm(other.getId());
+        assertEquals(List.of(film.getId()), index.search(List.of("название"), 10));
+
+        Film added = add("Новое кино", "");
+        index.addFilm(added);
+        assertEquals(List.of(film.getId(), added.getId()), index.search(List.of("новое"), 10));
+    }
+
+    @Test
+    void rebuild_ShouldMatchIncrementalIndexAndStorageScan() {
+        // Фильмов больше одной порции пересборки, чтобы порции разбирались параллельно
+        Random random = new Random(17);
+        FilmSearchIndex incremental = new FilmSearchIndex(filmStorage, popularFilmsIndex);
+        incremental.rebuild();
+        for (int i = 0; i < 5000; i++) {
+            Film film = add(randomText(random, 1 + random.nextInt(3)), randomText(random, random.nextInt(8)));
+            incremental.addFilm(film);
+        }
+        index.rebuild();
+
+        for (int i = 0; i < 200; i++) {
+            List<String> terms = FilmSearchIndex.queryTerms(randomText(random, 1 + random.nextInt(2)));
+            List<Long> found = index.search(terms, 100);
+            assertEquals(found, incremental.search(terms, 100), "Запрос " + terms);
+
+            List<Long> all = index.search(terms, 10_000);
+            List<Long> scanned = filmStorage.searchFilms(terms, 10_000).stream().map(Film::getId).toList();
+            assertEquals(new HashSet<>(scanned), new HashSet<>(all), "Запрос " + terms);
+        }
+    }
+
+    private String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextBoolean() ? " " : ", ");
+        }
+        return text.toString();
+    }
+
+    private Film add(String name, String description) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription(description);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return filmStorage.addFilm(film);
+    }
+}
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryFilmStorageConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    private final InMemoryFilmStorage storage = new InMemoryFilmStorage();
+
+    @Test
+    void addFilm_Concurrently_ShouldAssignUniqueIds() throws Exception {
+        List<Film> added = runConcurrently(thread -> {
+            List<Film> films = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                films.add(storage.addFilm(createFilm("Фильм " + thread + "-" + i)));
+            }
+            return films;
+        }).stream().flatMap(List::stream).collect(Collectors.toList());
+
+        Set<Long> ids = added.stream().map(Film::getId).collect(Collectors.toSet());
+        assertEquals(THREADS * 500, ids.size());
+        assertEquals(THREADS * 500, storage.getAllFilms().size());
+    }
+
+    @Test
+    void likes_UnderContention_ShouldKeepCountersConsistent() throws Exception {
+        int filmCount = 20;
+        int usersPerThread = 200;
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < filmCount; i++) {
+            filmIds.add(storage.addFilm(createFilm("Фильм " + i)).getId());
+        }
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Future<?> readerResult = reader.submit(() -> {
+            // Чтение топа параллельно с записью не должно падать и видеть мусор
+            while (writing.get()) {
+                List<Film> popular = storage.getPopularFilms(5);
+                assertTrue(popular.size() <= 5);
+            }
+            return null;
+        });
+
+        runConcurrently(thread -> {
+            long firstUser = (long) thread * usersPerThread;
+            for (long userId = firstUser; userId < firstUser + usersPerThread; userId++) {
+                for (long filmId : filmIds) {
+                    storage.addLike(filmId, userId);
+                    // Все потоки ставят один и тот же лайк, засчитаться должен один
+                    storage.addLike(filmId, -1L);
+                }
+            }
+            for (long userId = firstUser; userId < firstUser + usersPerThread; userId += 2) {
+                for (long filmId : filmIds) {
+                    storage.removeLike(filmId, userId);
+                }
+            }
+            return null;
+        });
+        writing.set(false);
+        readerResult.get();
+        reader.shutdown();
+
+        long expected = (long) THREADS * usersPerThread / 2 + 1;
+        Map<Long, Long> counts = storage.getLikeCounts();
+        for (long filmId : filmIds) {
+            assertEquals(expected, counts.get(filmId));
+            assertEquals(expected, storage.getFilmById(filmId).getLikes().size());
+        }
+    }
+
+    @Test
+    void updateFilm_Concurrently_ReadersShouldNeverSeeMixedFields() throws Exception {
+        long filmId = storage.addFilm(version(0)).getId();
+
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Future<?> readerResult = reader.submit(() -> {
+            while (writing.get()) {
+                assertConsistent(storage.getFilmById(filmId));
+                storage.getAllFilms().forEach(InMemoryFilmStorageConcurrencyTest::assertConsistent);
+            }
+            return null;
+        });
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < 2000; i++) {
+                Film update = version(1 + (thread + i) % 2);
+                update.setId(filmId);
+                storage.updateFilm(update);
+            }
+            return null;
+        });
+        writing.set(false);
+        readerResult.get();
+        reader.shutdown();
+        assertConsistent(storage.getFilmById(filmId));
+    }
+
+    @Test
+    void updateFilm_InvalidField_ShouldLeaveFilmUnchanged() {
+        Film added = storage.addFilm(version(1));
+        Film update = version(2);
+        update.setId(added.getId());
+        update.setDuration(-1);
+
+        assertThrows(ValidationException.class, () -> storage.updateFilm(update));
+        assertEquals("Версия 1", storage.getFilmById(added.getId()).getName());
+        assertEquals("Описание 1", storage.getFilmById(added.getId()).getDescription());
+    }
+
+    @Test
+    void getPopularFilms_ShouldOrderByLikesThenId() {
+        Film first = storage.addFilm(createFilm("Первый"));
+        Film second = storage.addFilm(createFilm("Второй"));
+        Film third = storage.addFilm(createFilm("Третий"));
+        storage.addLike(second.getId(), 1L);
+        storage.addLike(second.getId(), 2L);
+        storage.addLike(third.getId(), 1L);
+
+        assertEquals(List.of(second, third, first), storage.getPopularFilms(10));
+        assertEquals(List.of(second, third), storage.getPopularFilms(2));
+    }
+
+    private <T> List<T> runConcurrently(ThreadTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int threadNumber = thread;
+                Callable<T> callable = () -> {
+                    start.await();
+                    return task.run(threadNumber);
+                };
+                futures.add(executor.submit(callable));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // Все поля версии выводятся из её номера, поэтому смешанную версию видно по любой паре полей
+    private static Film version(int number) {
+        Film film = new Film();
+        film.setName("Версия " + number);
+        film.setDescription("Описание " + number);
+        film.setReleaseDate(LocalDate.of(2000 + number, 1, 1));
+        film.setDuration(100 + number);
+        return film;
+    }
+
+    private static void assertConsistent(Film film) {
+        int number = film.getDuration() - 100;
+        assertEquals("Версия " + number, film.getName());
+        assertEquals("Описание " + number, film.getDescription());
+        assertEquals(LocalDate.of(2000 + number, 1, 1), film.getReleaseDate());
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        return film;
+    }
+
+    private interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+}
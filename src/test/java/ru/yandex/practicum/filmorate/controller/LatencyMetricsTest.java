@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.metrics.LatencyHistogram;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyMetricsTest {
+
+    @Test
+    void quantiles_ShouldStayWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(5);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // От наносекунд до секунд, с тяжёлым хвостом
+            values[i] = (long) Math.pow(10, random.nextDouble() * 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        double[] quantiles = {0.5, 0.99, 0.999};
+        long[] estimates = histogram.quantiles(quantiles);
+        for (int q = 0; q < quantiles.length; q++) {
+            long exact = values[(int) Math.ceil(quantiles[q] * values.length) - 1];
+            assertTrue(estimates[q] >= exact, "оценка сверху для " + quantiles[q]);
+            assertTrue(estimates[q] <= exact + exact / 16 + 1, "погрешность для " + quantiles[q]);
+        }
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(Arrays.stream(values).sum(), histogram.getTotalNanos());
+        assertArrayEquals(new long[]{0}, new LatencyHistogram().quantiles(0.5));
+    }
+
+    @Test
+    void toPrometheusText_ShouldExposeSummariesWithEscapedLabels() {
+        LatencyMetrics metrics = new LatencyMetrics();
+        metrics.recordSql("SELECT * FROM films\nWHERE name = \"x\"", 2_000_000);
+        metrics.recordSql(null, 1_000);
+        metrics.recordRequest("GET", "/films/{id}", 200, 1_500_000);
+        metrics.recordRequest("GET", "/films/{id}", 404, 500_000);
+        metrics.recordRequest("PUT", null, 404, 100_000);
+        metrics.recordSlowQuery();
+
+        String text = metrics.toPrometheusText();
+
+        assertTrue(text.contains("# TYPE filmorate_http_server_requests_seconds summary\n"));
+        assertTrue(text.contains("filmorate_http_server_requests_seconds_count" +
+                "{method=\"GET\",uri=\"/films/{id}\",status=\"2xx\"} 1\n"));
+        assertTrue(text.contains("filmorate_http_server_requests_seconds_count" +
+                "{method=\"GET\",uri=\"/films/{id}\",status=\"4xx\"} 1\n"));
+        assertTrue(text.contains("filmorate_http_server_requests_seconds_count" +
+                "{method=\"PUT\",uri=\"UNMATCHED\",status=\"4xx\"} 1\n"));
+        assertTrue(text.contains("filmorate_sql_query_seconds" +
+                "{sql=\"SELECT * FROM films WHERE name = \\\"x\\\"\",quantile=\"0.99\"} 0.002"));
+        assertTrue(text.contains("filmorate_sql_query_seconds_sum" +
+                "{sql=\"SELECT * FROM films WHERE name = \\\"x\\\"\"} 0.002000000\n"));
+        assertTrue(text.contains("filmorate_sql_query_seconds_count{sql=\"unknown\"} 1\n"));
+        assertTrue(text.contains("filmorate_sql_slow_queries_total 1\n"));
+    }
+
+    @Test
+    void recordSql_ShouldFoldStatementsBeyondLimitIntoOther() {
+        LatencyMetrics metrics = new LatencyMetrics();
+        for (int i = 0; i < 600; i++) {
+            metrics.recordSql("SELECT * FROM films WHERE film_id IN (" + "?,".repeat(i) + "?)", 1_000);
+        }
+        metrics.recordSql("SELECT * FROM films WHERE film_id IN (?)", 1_000);
+
+        String text = metrics.toPrometheusText();
+
+        assertTrue(text.contains("filmorate_sql_query_seconds_count{sql=\"other\"} 100\n"));
+        assertTrue(text.contains("filmorate_sql_query_seconds_count{sql=\"SELECT * FROM films WHERE film_id IN (?)\"} 2\n"));
+    }
+
+    @Test
+    void record_ShouldNotAllocateForKnownKeys() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        LatencyMetrics metrics = new LatencyMetrics();
+        String sql = "SELECT * FROM films WHERE film_id = ?";
+        for (int i = 0; i < 20_000; i++) {
+            metrics.recordSql(sql, i);
+            metrics.recordRequest("GET", "/films/{id}", 200, i);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            metrics.recordSql(sql, i);
+            metrics.recordRequest("GET", "/films/{id}", 200, i);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Допуск на сам вызов измерения, на каждую запись не приходится ни байта
+        assertTrue(allocated < 1024, "выделено байт: " + allocated);
+    }
+}
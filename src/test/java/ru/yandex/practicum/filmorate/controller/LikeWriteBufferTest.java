@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.metrics.LatencyMetrics;
+import ru.yandex.practicum.filmorate.model.LikeBatchItem;
+import ru.yandex.practicum.filmorate.model.LikeOperation;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikeWriteBufferTest {
+
+    private final List<List<LikeBatchItem>> flushed = new ArrayList<>();
+    private final LatencyMetrics metrics = new LatencyMetrics();
+    private LikeWriteBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new LikeWriteBuffer(true, 3, 2, Runnable::run, metrics);
+        buffer.setFlushHandler(flushed::add);
+    }
+
+    @Test
+    void submit_LikeThenUnlike_ShouldKeepOnlyLastOperation() {
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.REMOVE));
+
+        assertTrue(flushed.isEmpty());
+        buffer.flush();
+
+        assertEquals(List.of(List.of(new LikeBatchItem(1L, 1L, LikeOperation.REMOVE))), flushed);
+        assertEquals(1, buffer.getStats().coalesced());
+    }
+
+    @Test
+    void submit_FlushSizeReached_ShouldFlush() {
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.submit(new LikeBatchItem(2L, 1L, LikeOperation.ADD));
+
+        assertEquals(1, flushed.size());
+        assertEquals(2, flushed.get(0).size());
+        assertEquals(0, buffer.getStats().queueDepth());
+    }
+
+    @Test
+    void submit_QueueFull_ShouldFlushOnCallerThread() {
+        // Сброс по размеру уходит в исполнитель, который ничего не запускает
+        buffer = new LikeWriteBuffer(true, 2, 100, runnable -> {
+        }, metrics);
+        buffer.setFlushHandler(flushed::add);
+
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.submit(new LikeBatchItem(2L, 1L, LikeOperation.ADD));
+        buffer.submit(new LikeBatchItem(3L, 1L, LikeOperation.ADD));
+
+        assertEquals(1, flushed.size());
+        assertEquals(1, buffer.getStats().queueDepth());
+    }
+
+    @Test
+    void submit_QueueFullAndFlushFails_ShouldRejectInsteadOfWaiting() {
+        buffer = new LikeWriteBuffer(true, 2, 100, runnable -> {
+        }, metrics);
+        buffer.setFlushHandler(batch -> {
+            throw new IllegalStateException("БД недоступна");
+        });
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.submit(new LikeBatchItem(2L, 1L, LikeOperation.ADD));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertThrows(ServiceUnavailableException.class,
+                () -> buffer.submit(new LikeBatchItem(3L, 1L, LikeOperation.ADD))));
+
+        // Повтор лайка, уже стоящего в очереди, место не занимает и проходит
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.REMOVE));
+        LikeWriteBuffer.Stats stats = buffer.getStats();
+        assertEquals(2, stats.queueDepth());
+        assertEquals(1, stats.rejected());
+        assertEquals(1, stats.failedFlushes());
+
+        String text = metrics.toPrometheusText();
+        assertTrue(text.contains("filmorate_like_buffer_queue_depth 2\n"));
+        assertTrue(text.contains("filmorate_like_buffer_flush_seconds_count 1\n"));
+        assertTrue(text.contains("filmorate_like_buffer_failed_flushes_total 1\n"));
+        assertTrue(text.contains("filmorate_like_buffer_rejected_total 1\n"));
+    }
+
+    @Test
+    void flush_HandlerFails_ShouldRequeueWithoutOverwritingNewerOperations() {
+        buffer = new LikeWriteBuffer(true, 10, 100, Runnable::run, metrics);
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.setFlushHandler(batch -> {
+            buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.REMOVE));
+            throw new IllegalStateException("БД недоступна");
+        });
+
+        buffer.flush();
+
+        buffer.setFlushHandler(flushed::add);
+        buffer.flush();
+        assertEquals(List.of(List.of(new LikeBatchItem(1L, 1L, LikeOperation.REMOVE))), flushed);
+        LikeWriteBuffer.Stats stats = buffer.getStats();
+        assertEquals(1, stats.failedFlushes());
+        assertEquals(1, stats.flushedOperations());
+    }
+
+    @Test
+    void shutdown_ShouldFlushPendingOperations() {
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+
+        buffer.shutdown();
+
+        assertEquals(1, flushed.size());
+    }
+
+    @Test
+    void stop_ShouldFlushAfterAsyncFlushCompletes() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        buffer = new LikeWriteBuffer(true, 10, 1, executor, metrics);
+        buffer.setFlushHandler(flushed::add);
+        buffer.start();
+
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.stop();
+
+        assertTrue(executor.isTerminated());
+        assertFalse(buffer.isRunning());
+        assertEquals(List.of(List.of(new LikeBatchItem(1L, 1L, LikeOperation.ADD))), flushed);
+    }
+
+    @Test
+    void shutdown_FlushFails_ShouldKeepOperationsQueued() {
+        buffer.submit(new LikeBatchItem(1L, 1L, LikeOperation.ADD));
+        buffer.setFlushHandler(batch -> {
+            throw new IllegalStateException("БД недоступна");
+        });
+
+        buffer.shutdown();
+
+        assertEquals(1, buffer.getStats().queueDepth());
+        assertEquals(1, buffer.getStats().failedFlushes());
+    }
+}
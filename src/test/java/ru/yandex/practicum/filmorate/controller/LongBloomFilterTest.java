@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.LiveIdFilter;
+import ru.yandex.practicum.filmorate.util.LongBloomFilter;
+
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongBloomFilterTest {
+
+    @Test
+    void mightContain_ShouldHaveNoFalseNegativesAndBoundedFalsePositives() {
+        LongBloomFilter filter = new LongBloomFilter(100_000, 0.01);
+        for (long id = 1; id <= 100_000; id++) {
+            filter.put(id);
+        }
+
+        for (long id = 1; id <= 100_000; id++) {
+            assertTrue(filter.mightContain(id));
+        }
+        long falsePositives = LongStream.rangeClosed(1_000_001, 1_100_000).filter(filter::mightContain).count();
+        // Число бит округлено вверх до степени двойки, поэтому доля заметно ниже целевой
+        assertTrue(falsePositives < 1_000, "ложноположительных: " + falsePositives);
+        assertTrue(filter.expectedFalsePositiveRate(100_000) < 0.01);
+    }
+
+    @Test
+    void liveIdFilter_ShouldPassEverythingUntilBuiltAndKeepIdsAddedDuringRebuild() {
+        LiveIdFilter filter = new LiveIdFilter("test");
+        assertTrue(filter.mightContain(42));
+        assertFalse(filter.getStats().ready());
+
+        filter.rebuild(3, consumer -> {
+            consumer.accept(1);
+            consumer.accept(2);
+            // Вставка, зафиксированная после выборки пересборки
+            filter.add(100);
+            consumer.accept(3);
+        });
+
+        assertTrue(filter.mightContain(1));
+        assertTrue(filter.mightContain(100));
+        assertFalse(filter.mightContain(42));
+        LiveIdFilter.Stats stats = filter.getStats();
+        assertTrue(stats.ready());
+        assertEquals(1, stats.rejected());
+        assertEquals(3, stats.lookups());
+        assertTrue(stats.memoryBytes() > 0);
+
+        // Удалено больше четверти: пора пересобирать
+        filter.remove(1);
+        assertFalse(filter.needsRebuild());
+        for (int i = 0; i < 200; i++) {
+            filter.remove(2);
+        }
+        assertTrue(filter.needsRebuild());
+    }
+}
@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.LongIntHashMap;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntHashMapTest {
+
+    @Test
+    void add_ShouldAccumulateAndGrow() {
+        LongIntHashMap map = new LongIntHashMap(2);
+
+        for (long key = 1; key <= 1000; key++) {
+            map.add(key, 1);
+            map.add(key, (int) key);
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals(501, map.get(500));
+        assertEquals(0, map.get(1001));
+        assertThrows(IllegalArgumentException.class, () -> map.add(0, 1));
+    }
+
+    @Test
+    void topKeys_ShouldOrderByValueThenKey() {
+        LongIntHashMap map = new LongIntHashMap(8);
+        map.add(10, 2);
+        map.add(3, 5);
+        map.add(7, 2);
+        map.add(1, 1);
+
+        assertArrayEquals(new long[]{3, 7, 10}, map.topKeys(3));
+        assertArrayEquals(new long[]{3, 7, 10, 1}, map.topKeys(100));
+        assertArrayEquals(new long[0], map.topKeys(0));
+    }
+
+    @Test
+    void topKeysAndAddAll_ShouldMatchHashMap() {
+        Random random = new Random(42);
+        LongIntHashMap left = new LongIntHashMap(16);
+        LongIntHashMap right = new LongIntHashMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = 1 + random.nextInt(3000);
+            (i % 2 == 0 ? left : right).add(key, 1);
+            expected.merge(key, 1, Integer::sum);
+        }
+        left.addAll(right);
+
+        long[] expectedTop = expected.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.naturalOrder())))
+                .limit(50)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+        assertEquals(expected.size(), left.size());
+        assertArrayEquals(expectedTop, left.topKeys(50));
+    }
+
+    @Test
+    void remove_ShouldKeepCollidingKeysReachable() {
+        Random random = new Random(7);
+        LongIntHashMap map = new LongIntHashMap(16);
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = 1 + random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.add(key, 1);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 500; key++) {
+            assertEquals(expected.getOrDefault(key, 0), map.get(key));
+        }
+        map.remove(0);
+        map.remove(501);
+        assertEquals(expected.size(), map.size());
+    }
+}
@@ -0,0 +1,249 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.PopularFilmsFilter;
+import ru.yandex.practicum.filmorate.storage.film.FilmFacets;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.PopularFilmsIndex;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularFilmsIndexTest {
+
+    private PopularFilmsIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PopularFilmsIndex(new InMemoryFilmStorage(), 3);
+    }
+
+    @Test
+    void getTopFilmIds_NotReady_ShouldReturnNull() {
+        assertNull(index.getTopFilmIds(3));
+    }
+
+    @Test
+    void getTopFilmIds_CountAboveMaxK_ShouldReturnNull() {
+        index.rebuild(Map.of(1L, 1L));
+
+        assertNull(index.getTopFilmIds(4));
+    }
+
+    @Test
+    void rebuild_ShouldOrderByLikesThenId() {
+        index.rebuild(Map.of(1L, 5L, 2L, 7L, 3L, 5L, 4L, 1L));
+
+        assertEquals(List.of(2L, 1L, 3L), index.getTopFilmIds(3));
+        assertEquals(List.of(2L), index.getTopFilmIds(1));
+    }
+
+    @Test
+    void changeLikes_FilmOutsideTop_ShouldEnterTop() {
+        index.rebuild(Map.of(1L, 3L, 2L, 2L, 3L, 1L, 4L, 0L));
+
+        index.changeLikes(4L, 1);
+        index.changeLikes(4L, 1);
+        index.changeLikes(4L, 1);
+        index.changeLikes(4L, 1);
+
+        assertEquals(List.of(4L, 1L, 2L), index.getTopFilmIds(3));
+    }
+
+    @Test
+    void changeLikes_TopMemberDrops_ShouldBeReplacedByOutsider() {
+        index.rebuild(Map.of(1L, 5L, 2L, 4L, 3L, 3L, 4L, 2L));
+
+        index.changeLikes(1L, -1);
+        index.changeLikes(1L, -1);
+        index.changeLikes(1L, -1);
+        index.changeLikes(1L, -1);
+
+        assertEquals(List.of(2L, 3L, 4L), index.getTopFilmIds(3));
+    }
+
+    @Test
+    void changeLikes_TiesAtBoundary_ShouldMatchFullScan() {
+        // Мало различных счётчиков: граница топа всё время проходит по равным значениям
+        Random random = new Random(3);
+        Map<Long, Long> counts = new HashMap<>();
+        for (long filmId = 1; filmId <= 30; filmId++) {
+            counts.put(filmId, (long) random.nextInt(3));
+        }
+        index.rebuild(counts);
+
+        for (int step = 0; step < 5000; step++) {
+            long filmId = 1 + random.nextInt(40);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                index.removeFilm(filmId);
+                counts.remove(filmId);
+            } else if (action == 1) {
+                index.addFilm(filmId);
+                counts.putIfAbsent(filmId, 0L);
+            } else if (counts.containsKey(filmId)) {
+                long delta = counts.get(filmId) > 0 && random.nextBoolean() ? -1 : 1;
+                index.changeLikes(filmId, delta);
+                counts.merge(filmId, delta, Long::sum);
+            }
+            List<Long> expected = counts.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Long>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey()))
+                    .limit(3)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertEquals(expected, index.getTopFilmIds(3), "Шаг " + step);
+        }
+    }
+
+    @Test
+    void addFilm_ShouldAppearWithZeroLikes() {
+        index.rebuild(Map.of(1L, 2L));
+
+        index.addFilm(2L);
+
+        assertEquals(List.of(1L, 2L), index.getTopFilmIds(3));
+    }
+
+    @Test
+    void resync_ShouldKeepChangesMadeWhileReadingSnapshot() {
+        PopularFilmsIndex[] resynced = new PopularFilmsIndex[1];
+        // Снимок прочитан до лайков, которые индекс получает, пока идёт пересборка
+        InMemoryFilmStorage storage = new InMemoryFilmStorage() {
+            @Override
+            public Map<Long, Long> getLikeCounts() {
+                Map<Long, Long> snapshot = Map.of(1L, 5L, 2L, 4L, 3L, 1L);
+                resynced[0].changeLikes(3L, 10);
+                resynced[0].removeFilm(2L);
+                return snapshot;
+            }
+        };
+        resynced[0] = new PopularFilmsIndex(storage, 3);
+        resynced[0].rebuild(Map.of(1L, 5L, 2L, 4L, 3L, 1L));
+
+        resynced[0].resync();
+
+        assertEquals(List.of(3L, 1L), resynced[0].getTopFilmIds(3));
+        assertEquals(11, resynced[0].getLikes(3L));
+    }
+
+    @Test
+    void getTopFilmIdsWithFilter_ShouldRankMatchingFilmsOnly() {
+        index.rebuild(Map.of(1L, 5L, 2L, 7L, 3L, 5L, 4L, 1L, 5L, 9L));
+        index.rebuildFacets(List.of(
+                new FilmFacets(1L, 1999, 3L, new long[]{2L}),
+                new FilmFacets(2L, 2000, 3L, new long[]{1L, 2L}),
+                new FilmFacets(3L, 1999, 1L, new long[]{2L}),
+                new FilmFacets(4L, 1999, 3L, new long[]{2L, 6L}),
+                new FilmFacets(5L, 1999, 3L, new long[0])));
+
+        assertEquals(List.of(2L, 1L, 3L, 4L), index.getTopFilmIds(10, new PopularFilmsFilter(2L, null, null)));
+        assertEquals(List.of(1L, 3L), index.getTopFilmIds(2, new PopularFilmsFilter(2L, 1999, null)));
+        assertEquals(List.of(5L, 1L, 4L), index.getTopFilmIds(10, new PopularFilmsFilter(null, 1999, 3L)));
+        assertEquals(List.of(), index.getTopFilmIds(10, new PopularFilmsFilter(5L, null, null)));
+        // Без фильтра ответ даёт общий топ
+        assertEquals(List.of(5L, 2L, 1L), index.getTopFilmIds(3, new PopularFilmsFilter(null, null, null)));
+    }
+
+    @Test
+    void getTopFilmIdsWithFilter_ShouldFollowFilmChanges() {
+        index.rebuild(Map.of());
+        index.rebuildFacets(List.of());
+        index.addFilm(film(1L, 1999, 2L));
+        index.addFilm(film(2L, 1999, 2L));
+        index.changeLikes(2L, 1);
+
+        assertEquals(List.of(2L, 1L), index.getTopFilmIds(10, new PopularFilmsFilter(2L, 1999, null)));
+
+        index.updateFilm(film(2L, 2000, 2L));
+        assertEquals(List.of(1L), index.getTopFilmIds(10, new PopularFilmsFilter(2L, 1999, null)));
+        assertEquals(List.of(2L), index.getTopFilmIds(10, new PopularFilmsFilter(null, 2000, null)));
+
+        index.removeFilm(1L);
+        assertEquals(List.of(), index.getTopFilmIds(10, new PopularFilmsFilter(2L, 1999, null)));
+    }
+
+    @Test
+    void getTopFilmIdsWithFilter_FacetsNotLoaded_ShouldReturnNull() {
+        index.rebuild(Map.of(1L, 1L));
+
+        assertNull(index.getTopFilmIds(3, new PopularFilmsFilter(1L, null, null)));
+    }
+
+    @Test
+    void getTopFilmIdsWithFilter_ShouldMatchFullScan() {
+        Random random = new Random(42);
+        Map<Long, Long> counts = new HashMap<>();
+        List<FilmFacets> facets = new ArrayList<>();
+        for (long filmId = 1; filmId <= 5000; filmId++) {
+            counts.put(filmId, (long) random.nextInt(50));
+            facets.add(new FilmFacets(filmId, 1990 + random.nextInt(10), 1 + random.nextInt(5),
+                    random.nextBoolean() ? new long[]{1 + random.nextInt(3)} : new long[]{1, 4 + random.nextInt(3)}));
+        }
+        index.rebuild(counts);
+        index.rebuildFacets(facets);
+
+        PopularFilmsFilter filter = new PopularFilmsFilter(1L, 1995, 2L);
+        List<Long> expected = facets.stream()
+                .filter(f -> f.year() == 1995 && f.mpaId() == 2L && Arrays.binarySearch(f.genreIds(), 1L) >= 0)
+                .sorted(Comparator.comparingLong((FilmFacets f) -> counts.get(f.filmId())).reversed()
+                        .thenComparingLong(FilmFacets::filmId))
+                .limit(20)
+                .map(FilmFacets::filmId)
+                .toList();
+        assertEquals(expected, index.getTopFilmIds(20, filter));
+    }
+
+    @Test
+    void getTopFilmIdsWithFilter_EveryCombination_ShouldMatchFullScan() {
+        // Каждое сочетание фильтров отбирает больше count фильмов, так что куча вытесняет
+        // кандидатов; задержки на большом каталоге меряет PopularFilmsIndexBenchmark
+        Random random = new Random(1);
+        Map<Long, Long> counts = new HashMap<>();
+        List<FilmFacets> facets = new ArrayList<>();
+        for (long filmId = 1; filmId <= 400; filmId++) {
+            counts.put(filmId, (long) random.nextInt(20));
+            facets.add(new FilmFacets(filmId, 2000 + random.nextInt(2), 1 + random.nextInt(2),
+                    random.nextBoolean() ? new long[]{1} : new long[]{1, 2}));
+        }
+        index.rebuild(counts);
+        index.rebuildFacets(facets);
+
+        for (int combination = 1; combination <= 7; combination++) {
+            Long genreId = (combination & 1) != 0 ? 2L : null;
+            Integer year = (combination & 2) != 0 ? 2001 : null;
+            Long mpaId = (combination & 4) != 0 ? 1L : null;
+            List<Long> expected = facets.stream()
+                    .filter(f -> genreId == null || Arrays.binarySearch(f.genreIds(), genreId) >= 0)
+                    .filter(f -> year == null || f.year() == year)
+                    .filter(f -> mpaId == null || f.mpaId() == mpaId)
+                    .sorted(Comparator.comparingLong((FilmFacets f) -> counts.get(f.filmId())).reversed()
+                            .thenComparingLong(FilmFacets::filmId))
+                    .limit(10)
+                    .map(FilmFacets::filmId)
+                    .toList();
+            assertEquals(expected, index.getTopFilmIds(10, new PopularFilmsFilter(genreId, year, mpaId)),
+                    "Сочетание фильтров " + combination);
+        }
+    }
+
+    private static Film film(long id, int year, long genreId) {
+        Film film = new Film();
+        film.setId(id);
+        film.setReleaseDate(LocalDate.of(year, 1, 1));
+        film.setGenres(Set.of(new Genre(genreId, null)));
+        return film;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.util.SortedLongArrays;
+import ru.yandex.practicum.filmorate.util.SortedLongSet;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedLongSetTest {
+
+    @Test
+    void addAndRemove_ShouldKeepValuesSortedAndUnique() {
+        SortedLongSet set = new SortedLongSet();
+
+        assertTrue(set.add(5));
+        assertTrue(set.add(1));
+        assertTrue(set.add(3));
+        assertFalse(set.add(3));
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+
+        assertArrayEquals(new long[]{3, 5}, set.toArray());
+        assertTrue(set.contains(5));
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    void asSet_ShouldBeLiveView() {
+        SortedLongSet set = new SortedLongSet();
+        Set<Long> view = set.asSet();
+
+        view.add(2L);
+        set.add(1L);
+        view.removeIf(value -> value == 2L);
+
+        assertEquals(List.of(1L), List.copyOf(view));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void intersect_ShouldMatchTreeSetForMergeAndGallop() {
+        Random random = new Random(42);
+        for (int[] sizes : new int[][]{{100, 120}, {10, 50_000}, {0, 10}}) {
+            long[] a = randomSorted(random, sizes[0]);
+            long[] b = randomSorted(random, sizes[1]);
+
+            TreeSet<Long> expected = new TreeSet<>();
+            LongStream.of(a).forEach(expected::add);
+            expected.retainAll(LongStream.of(b).boxed().toList());
+
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(),
+                    SortedLongArrays.intersect(a, b));
+            assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(),
+                    SortedLongArrays.intersect(b, a));
+        }
+    }
+
+    private long[] randomSorted(Random random, int size) {
+        return random.longs(size, 0, 100_000).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex;
+import ru.yandex.practicum.filmorate.storage.film.TrendingFilmsIndex.Window;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrendingFilmsIndexTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(20_000));
+    private TrendingFilmsIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrendingFilmsIndex(new InMemoryFilmStorage(), now::get);
+    }
+
+    @Test
+    void getTopFilmIds_NotSeeded_ShouldReturnNull() {
+        assertNull(index.getTopFilmIds(Window.DAY, 10));
+        index.seed();
+        assertEquals(List.of(), index.getTopFilmIds(Window.DAY, 10));
+    }
+
+    @Test
+    void getTopFilmIds_ShouldRankInsideEachWindowAndSlide() {
+        index.seed();
+        like(1, 1, 2, 3);
+        advance(TimeUnit.HOURS, 2);
+        like(2, 1, 2);
+        advance(TimeUnit.DAYS, 2);
+        like(3, 1);
+
+        assertEquals(List.of(3L), index.getTopFilmIds(Window.HOUR, 10));
+        assertEquals(List.of(3L), index.getTopFilmIds(Window.DAY, 10));
+        assertEquals(List.of(1L, 2L, 3L), index.getTopFilmIds(Window.WEEK, 10));
+        assertEquals(List.of(1L), index.getTopFilmIds(Window.WEEK, 1));
+
+        // Через неделю после первых лайков они выходят из самого длинного окна
+        advance(TimeUnit.HOURS, 5 * 24 - 1);
+        index.roll();
+        assertEquals(List.of(2L, 3L), index.getTopFilmIds(Window.WEEK, 10));
+        advance(TimeUnit.DAYS, 8);
+        assertEquals(List.of(), index.getTopFilmIds(Window.WEEK, 10));
+        assertEquals(0, index.getStats().trackedLikes());
+        assertEquals(0, index.getStats().buckets());
+    }
+
+    @Test
+    void removeLike_ShouldSubtractFromBucketOfTheLike() {
+        index.seed();
+        like(1, 1, 2);
+        advance(TimeUnit.HOURS, 3);
+        like(2, 3);
+
+        // Снятый лайк поставлен три часа назад: часовое окно его не содержало
+        index.removeLike(1, 1);
+        assertEquals(List.of(2L), index.getTopFilmIds(Window.HOUR, 10));
+        assertEquals(List.of(1L, 2L), index.getTopFilmIds(Window.DAY, 10));
+        index.removeLike(1, 2);
+        assertEquals(List.of(2L), index.getTopFilmIds(Window.DAY, 10));
+
+        // Повторный лайк считается один раз, снятие неизвестного ничего не меняет
+        like(2, 3);
+        index.removeLike(2, 99);
+        assertEquals(1, index.getStats().trackedLikes());
+
+        index.removeFilm(2);
+        assertEquals(List.of(), index.getTopFilmIds(Window.WEEK, 10));
+    }
+
+    @Test
+    void roll_ShouldSubtractExpiredBucketsOneAtATime() {
+        index.seed();
+        // Каждые полчаса лайк новому фильму, тридцать часов подряд
+        for (long filmId = 1; filmId <= 60; filmId++) {
+            like(filmId, 1);
+            advance(TimeUnit.MINUTES, 30);
+            index.roll();
+        }
+        like(61, 1, 2);
+        index.removeLike(61, 2);
+
+        // Лайк часовой давности уже на границе окна и вышел из него
+        assertEquals(List.of(60L, 61L), index.getTopFilmIds(Window.HOUR, 10));
+        assertEquals(2, index.getStats().hourFilms());
+        assertEquals(48, index.getStats().dayFilms());
+        assertEquals(61, index.getStats().weekFilms());
+
+        // Снятый последний лайк убирает фильм из сумм сразу, не дожидаясь сдвига
+        index.removeLike(61, 1);
+        assertEquals(1, index.getStats().hourFilms());
+        assertEquals(List.of(60L), index.getTopFilmIds(Window.HOUR, 10));
+    }
+
+    @Test
+    void seed_ShouldReplayLikesArrivingDuringSeed() {
+        like(1, 1);
+        index.removeLike(1, 1);
+        like(2, 1);
+        index.seed();
+
+        assertEquals(List.of(2L), index.getTopFilmIds(Window.HOUR, 10));
+    }
+
+    private void like(long filmId, long... userIds) {
+        for (long userId : userIds) {
+            index.addLike(filmId, userId);
+        }
+    }
+
+    private void advance(TimeUnit unit, long amount) {
+        now.addAndGet(unit.toMillis(amount));
+    }
+}